@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.ComputeBackend;
+import com.javierorbe.neuron.ComputeBackends;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the kernels of each {@link ComputeBackend} on a dense layer.
+ * The vector backend needs the JVM to run with {@code --add-modules jdk.incubator.vector},
+ * for example with {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}; without it,
+ * its runs fail instead of measuring the scalar backend under its name.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeBackendBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String backendName;
+
+    @Param({"64x128", "512x256"})
+    public String shape;
+
+    @Param({"1", "32"})
+    public int batch;
+
+    private ComputeBackend backend;
+    private int rows;
+    private int cols;
+    private double[] parameters;
+    private double[] gradients;
+    private double[] in;
+    private double[] out;
+    private double[] error;
+
+    @Setup
+    public void setUp() {
+        if ("vector".equals(backendName) && !ComputeBackends.isVectorAvailable()) {
+            throw new IllegalStateException("The vector backend is not available; run with --add-modules jdk.incubator.vector");
+        }
+        backend = "vector".equals(backendName) ? ComputeBackends.vector() : ComputeBackends.scalar();
+        String[] sizes = shape.split("x");
+        rows = Integer.parseInt(sizes[0]);
+        cols = Integer.parseInt(sizes[1]);
+
+        Random random = new Random(42);
+        parameters = NeuralNetworkBenchmark.randomSamples(random, 1, rows * cols + rows)[0];
+        gradients = new double[parameters.length];
+        in = NeuralNetworkBenchmark.randomSamples(random, 1, batch * cols)[0];
+        out = new double[batch * rows];
+        error = new double[batch * cols];
+    }
+
+    @Benchmark
+    public double[] forward() {
+        backend.forward(parameters, 0, rows, cols, in, out, batch);
+        return out;
+    }
+
+    @Benchmark
+    public double[] accumulateGradients() {
+        backend.accumulateGradients(out, in, gradients, 0, rows, cols, batch);
+        return gradients;
+    }
+
+    @Benchmark
+    public double[] backpropagate() {
+        backend.backpropagate(parameters, 0, rows, cols, out, error, batch);
+        return error;
+    }
+}
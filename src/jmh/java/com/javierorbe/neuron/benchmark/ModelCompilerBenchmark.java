@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.inference.InferenceModel;
+import com.javierorbe.neuron.inference.ModelCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the evaluation of a network with the evaluation of the model compiled
+ * by {@link ModelCompiler}, which gives the same outputs.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelCompilerBenchmark {
+
+    @Param({"2,5,1", "16,32,8", "64,128,64,10"})
+    public String topology;
+
+    @Param({"SIGMOID", "RELU"})
+    public ActivationFunction activationFunction;
+
+    private NeuralNetwork network;
+    private InferenceModel model;
+    private double[] input;
+    private double[] output;
+
+    @Setup
+    public void setUp() {
+        int[] layers = NeuralNetworkBenchmark.parseLayers(topology);
+        Random random = new Random(42);
+
+        network = new NeuralNetwork(layers, activationFunction, 0.1, random);
+        model = ModelCompiler.compile(network);
+        input = NeuralNetworkBenchmark.randomSamples(random, 1, layers[0])[0];
+        output = new double[layers[layers.length - 1]];
+    }
+
+    @Benchmark
+    public double[] interpreted() {
+        network.evaluate(input, output);
+        return output;
+    }
+
+    @Benchmark
+    public double[] compiled() {
+        model.evaluate(input, output);
+        return output;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the operations of a {@link NeuralNetwork} across topologies.
+ * The batch evaluation and training benchmarks process {@value #SAMPLES} samples
+ * per invocation, so their scores are in samples per second.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkBenchmark {
+
+    static final int SAMPLES = 256;
+
+    @Param({"2,5,1", "16,32,8", "64,128,64,10", "256,512,256,10"})
+    public String topology;
+
+    @Param({"32"})
+    public int batchSize;
+
+    private NeuralNetwork network;
+    private double[][] inputs;
+    private double[][] targets;
+    private double[] output;
+    private double[] batchOutput;
+
+    @Setup
+    public void setUp() {
+        int[] layers = parseLayers(topology);
+        Random random = new Random(42);
+
+        network = new NeuralNetwork(layers, ActivationFunction.SIGMOID, 0.1, random);
+        inputs = randomSamples(random, SAMPLES, layers[0]);
+        targets = randomSamples(random, SAMPLES, layers[layers.length - 1]);
+        output = new double[layers[layers.length - 1]];
+        batchOutput = new double[SAMPLES * layers[layers.length - 1]];
+    }
+
+    @Benchmark
+    public double[] evaluate() {
+        return network.evaluate(inputs[0]);
+    }
+
+    @Benchmark
+    public double[] evaluateInto() {
+        network.evaluate(inputs[0], output);
+        return output;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] evaluateBatch() {
+        network.evaluate(inputs, batchOutput);
+        return batchOutput;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public NeuralNetwork train() {
+        for (int n = 0; n < SAMPLES; n++) {
+            network.train(inputs[n], targets[n]);
+        }
+        return network;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public NeuralNetwork trainBatch() {
+        network.train(inputs, targets, batchSize);
+        return network;
+    }
+
+    @Benchmark
+    public NeuralNetwork copy() {
+        return network.copy();
+    }
+
+    @Benchmark
+    public NeuralNetwork mutate() {
+        network.mutate(0.1);
+        return network;
+    }
+
+    static int[] parseLayers(String topology) {
+        String[] values = topology.split(",");
+        int[] layers = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            layers[i] = Integer.parseInt(values[i].trim());
+        }
+        return layers;
+    }
+
+    static double[][] randomSamples(Random random, int count, int size) {
+        double[][] samples = new double[count][size];
+        for (double[] sample : samples) {
+            for (int i = 0; i < size; i++) {
+                sample[i] = random.nextDouble();
+            }
+        }
+        return samples;
+    }
+}
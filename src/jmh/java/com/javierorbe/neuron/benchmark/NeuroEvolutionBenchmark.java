@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.neuroevolution.Evolvable;
+import com.javierorbe.neuron.neuroevolution.NeuroEvolution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link NeuroEvolution#nextGeneration()} across population sizes,
+ * with and without a parameter arena.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuroEvolutionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int populationSize;
+
+    @Param({"4,8,2", "16,32,8"})
+    public String topology;
+
+    @Param({"false", "true"})
+    public boolean arena;
+
+    private Environment environment;
+
+    @Setup
+    public void setUp() {
+        environment = new Environment(NeuralNetworkBenchmark.parseLayers(topology), populationSize);
+        if (arena) {
+            environment.useParameterArena(0.1);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void score() {
+        environment.evaluate(agent -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Benchmark
+    public NeuroEvolution<Agent> nextGeneration() {
+        environment.nextGeneration();
+        return environment;
+    }
+
+    public static class Agent extends Evolvable<Agent> {
+
+        Agent(NeuralNetwork brain) {
+            super(brain);
+        }
+
+        @Override
+        protected Agent getMutatedCopy() {
+            NeuralNetwork brain = getBrain().copy();
+            brain.mutate(0.1);
+            return new Agent(brain);
+        }
+
+        @Override
+        protected Agent createChild(NeuralNetwork brain) {
+            return new Agent(brain);
+        }
+    }
+
+    static class Environment extends NeuroEvolution<Agent> {
+
+        Environment(int[] layers, int size) {
+            for (int i = 0; i < size; i++) {
+                getPopulation().add(new Agent(new NeuralNetwork(layers)));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.Optimizer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the time and the number of epochs that each optimizer needs to fit
+ * the function of a random teacher network, compared to the default update rule.
+ * The number of epochs of each run is reported as the {@code epochs} counter.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OptimizerBenchmark {
+
+    private static final int[] LAYERS = {8, 16, 4};
+    private static final int SAMPLES = 256;
+    private static final int BATCH_SIZE = 16;
+    private static final int MAX_EPOCHS = 5000;
+    private static final double TARGET_LOSS = 1e-4;
+
+    @Param({"none", "momentum", "rmsprop", "adam"})
+    public String optimizer;
+
+    private double[][] inputs;
+    private double[][] targets;
+    private NeuralNetwork network;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Epochs {
+
+        public long epochs;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        NeuralNetwork teacher = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0, random);
+        inputs = NeuralNetworkBenchmark.randomSamples(random, SAMPLES, LAYERS[0]);
+        targets = teacher.evaluate(inputs);
+    }
+
+    @Setup(Level.Invocation)
+    public void createNetwork() {
+        switch (optimizer) {
+            case "none":
+                network = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 2, new Random(7));
+                break;
+            case "momentum":
+                network = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.2, new Random(7));
+                network.setOptimizer(Optimizer.momentum(0.9));
+                break;
+            case "rmsprop":
+                network = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.003, new Random(7));
+                network.setOptimizer(Optimizer.rmsProp(0.9, 1e-8));
+                break;
+            case "adam":
+                network = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.01, new Random(7));
+                network.setOptimizer(Optimizer.adam());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown optimizer: " + optimizer);
+        }
+    }
+
+    @Benchmark
+    public NeuralNetwork converge(Epochs counters) {
+        for (int epoch = 1; epoch <= MAX_EPOCHS; epoch++) {
+            network.train(inputs, targets, BATCH_SIZE);
+
+            if (meanLoss() < TARGET_LOSS) {
+                counters.epochs += epoch;
+                return network;
+            }
+        }
+        counters.epochs += MAX_EPOCHS;
+        return network;
+    }
+
+    private double meanLoss() {
+        double[][] outputs = network.evaluate(inputs);
+        double loss = 0;
+        for (int n = 0; n < SAMPLES; n++) {
+            for (int j = 0; j < LAYERS[LAYERS.length - 1]; j++) {
+                double error = targets[n][j] - outputs[n][j];
+                loss += error * error;
+            }
+        }
+        return loss / SAMPLES;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.benchmark.NeuroEvolutionBenchmark.Agent;
+import com.javierorbe.neuron.neuroevolution.NeuroEvolution;
+import com.javierorbe.neuron.neuroevolution.SteadyStateEvolution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of generational and steady-state evolution with a fitness function whose
+ * cost varies a lot between elements, like an episode that can end early. The scores
+ * are in evaluations per second.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SteadyStateBenchmark {
+
+    static final int POPULATION = 256;
+
+    @Param({"4"})
+    public int threads;
+
+    private ExecutorService executor;
+    private NeuroEvolution<Agent> generational;
+    private SteadyStateEvolution<Agent> steadyState;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(threads);
+
+        List<Agent> population = new ArrayList<>();
+        for (int i = 0; i < POPULATION; i++) {
+            population.add(new Agent(new NeuralNetwork(new int[] {16, 32, 8})));
+        }
+
+        generational = new NeuroEvolution<Agent>(executor) {};
+        generational.getPopulation().addAll(population);
+        steadyState = new SteadyStateEvolution<>(population, SteadyStateBenchmark::play, executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public NeuroEvolution<Agent> generational() {
+        generational.evaluate(SteadyStateBenchmark::play);
+        generational.nextGeneration();
+        return generational;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public SteadyStateEvolution<Agent> steadyState() {
+        steadyState.run(POPULATION, threads);
+        return steadyState;
+    }
+
+    /**
+     * An episode of 1 to 64 steps, most of them short.
+     */
+    static double play(Agent agent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int steps = 1 << random.nextInt(7);
+        double[] input = new double[16];
+        double[] output = new double[8];
+        double score = 0;
+        for (int s = 0; s < steps; s++) {
+            input[s & 15] = random.nextDouble();
+            agent.getBrain().evaluate(input, output);
+            score += output[0];
+        }
+        return score / steps;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.benchmark;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.TrainingWorkspace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recomputing the outputs of the layers between checkpoints
+ * in the backward pass. The working set of each workspace is printed on setup.
+ *
+ * @author Javier Orbe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainingWorkspaceBenchmark {
+
+    static final int SAMPLES = 64;
+
+    @Param({"32,256,256,256,256,256,256,256,256,10"})
+    public String topology;
+
+    @Param({"1", "2", "3"})
+    public int checkpointInterval;
+
+    private NeuralNetwork network;
+    private double[][] inputs;
+    private double[][] targets;
+
+    @Setup
+    public void setUp() {
+        int[] layers = NeuralNetworkBenchmark.parseLayers(topology);
+        Random random = new Random(42);
+
+        network = new NeuralNetwork(layers, ActivationFunction.TANH, 0.01, random);
+        TrainingWorkspace workspace = new TrainingWorkspace(network, SAMPLES, checkpointInterval);
+        network.setTrainingWorkspace(workspace);
+        inputs = NeuralNetworkBenchmark.randomSamples(random, SAMPLES, layers[0]);
+        targets = NeuralNetworkBenchmark.randomSamples(random, SAMPLES, layers[layers.length - 1]);
+
+        System.out.println("Working set of " + Arrays.toString(layers) + " with checkpoint interval "
+                + checkpointInterval + ": " + workspace.getWorkingSetBytes() + " bytes");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public NeuralNetwork trainBatch() {
+        network.train(inputs, targets, SAMPLES);
+        return network;
+    }
+}
@@ -22,11 +22,20 @@
 
 package com.javierorbe.neuron;
 
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 /**
  * Activation functions for a neural network.
  *
+ * <p>Derivatives are expressed in terms of the output of the function,
+ * {@code y = f(x)}, which is what the network keeps after a forward pass.
+ *
+ * <p>Every constant implements its own bulk kernels, so the loops in
+ * {@link #apply(double[], double[], int, int)} and
+ * {@link #derivative(double[], double[], int, int)} are monomorphic and
+ * can be inlined and vectorized by the JIT.
+ *
  * @author Javier Orbe
  */
 public enum ActivationFunction {
@@ -36,48 +45,414 @@ public enum ActivationFunction {
      *
      * @see <a href="https://en.wikipedia.org/wiki/Sigmoid_function" target="_top">Sigmoid function in Wikipedia</a>
      */
-    SIGMOID(
-            x -> 1 / (1 + Math.exp(-x)),
-            y -> y * (1 - y)
-    ),
+    SIGMOID {
+        @Override
+        public double apply(double x) {
+            return 1 / (1 + Math.exp(-x));
+        }
+
+        @Override
+        public double derivative(double y) {
+            return y * (1 - y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
 
     /**
      * Hyperbolic tangent.
      */
-    TANH(
-            Math::tanh,
-            y -> 1 - (y * y)
-    );
+    TANH {
+        @Override
+        public double apply(double x) {
+            return Math.tanh(x);
+        }
+
+        @Override
+        public double derivative(double y) {
+            return 1 - (y * y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
+
+    /**
+     * Rectified linear unit, {@code max(0, x)}.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Rectifier_(neural_networks)" target="_top">Rectifier in Wikipedia</a>
+     */
+    RELU {
+        @Override
+        public double apply(double x) {
+            return x > 0 ? x : 0;
+        }
+
+        @Override
+        public double derivative(double y) {
+            return y > 0 ? 1 : 0;
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
+
+    /**
+     * Leaky rectified linear unit, with a slope of 0.01 for negative values.
+     */
+    LEAKY_RELU {
+        @Override
+        public double apply(double x) {
+            return x > 0 ? x : 0.01 * x;
+        }
+
+        @Override
+        public double derivative(double y) {
+            return y > 0 ? 1 : 0.01;
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
+
+    /**
+     * Softplus function, {@code ln(1 + e^x)}.
+     */
+    SOFTPLUS {
+        @Override
+        public double apply(double x) {
+            // Rearranged to avoid overflowing exp for large inputs
+            return x > 0 ? x + Math.log1p(Math.exp(-x)) : Math.log1p(Math.exp(x));
+        }
+
+        @Override
+        public double derivative(double y) {
+            return 1 - Math.exp(-y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
+
+    /**
+     * Identity function.
+     */
+    LINEAR {
+        @Override
+        public double apply(double x) {
+            return x;
+        }
+
+        @Override
+        public double derivative(double y) {
+            return 1;
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            if (src != dst) {
+                System.arraycopy(src, from, dst, from, to - from);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = 1;
+            }
+        }
+    },
+
+    /**
+     * Softmax function. It normalizes a whole layer into a probability
+     * distribution, so it can only be applied through
+     * {@link #apply(double[], double[], int, int)}.
+     *
+     * <p>The derivative is the diagonal of the Jacobian, {@code y * (1 - y)}. Since every
+     * output depends on every input, training uses the whole Jacobian through
+     * {@link #backpropagate(double[], double[], int, int)}.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Softmax_function" target="_top">Softmax function in Wikipedia</a>
+     */
+    SOFTMAX {
+        @Override
+        public double apply(double x) {
+            throw new UnsupportedOperationException("Softmax can only be applied to a whole layer");
+        }
+
+        @Override
+        public double derivative(double y) {
+            return y * (1 - y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, src[i]);
+            }
+
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                double e = Math.exp(src[i] - max);
+                dst[i] = e;
+                sum += e;
+            }
+
+            for (int i = from; i < to; i++) {
+                dst[i] /= sum;
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+
+        @Override
+        public void backpropagate(double[] outputs, double[] gradients, int from, int to) {
+            // The Jacobian is diag(y) - y * y^T
+            double dot = 0;
+            for (int i = from; i < to; i++) {
+                dot += gradients[i] * outputs[i];
+            }
+            for (int i = from; i < to; i++) {
+                gradients[i] = outputs[i] * (gradients[i] - dot);
+            }
+        }
+
+        @Override
+        public boolean isElementWise() {
+            return false;
+        }
+    },
+
+    /**
+     * Sigmoid function computed with a fast approximation of {@code exp}.
+     * The absolute error with respect to {@link #SIGMOID} is below {@code 1e-6}.
+     */
+    FAST_SIGMOID {
+        @Override
+        public double apply(double x) {
+            return 1 / (1 + FastMath.exp(-x));
+        }
+
+        @Override
+        public double derivative(double y) {
+            return y * (1 - y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    },
+
+    /**
+     * Hyperbolic tangent computed with a fast approximation of {@code exp}.
+     * The absolute error with respect to {@link #TANH} is below {@code 2e-6}.
+     */
+    FAST_TANH {
+        @Override
+        public double apply(double x) {
+            return FastMath.tanh(x);
+        }
+
+        @Override
+        public double derivative(double y) {
+            return 1 - (y * y);
+        }
+
+        @Override
+        public void apply(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = apply(src[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] src, double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = derivative(src[i]);
+            }
+        }
+    };
+
+    private final DoubleUnaryOperator operator = this::apply;
+    private final DoubleUnaryOperator derivativeOperator = this::derivative;
+
+    /**
+     * Returns the value of the function at {@code x}.
+     *
+     * @param x the input value.
+     * @return the value of the function.
+     * @throws UnsupportedOperationException if the function is not element-wise.
+     */
+    public abstract double apply(double x);
+
+    /**
+     * Returns the value of the derivative of the function.
+     *
+     * @param y the output of the function.
+     * @return the value of the derivative.
+     */
+    public abstract double derivative(double y);
+
+    /**
+     * Apply the function to the range {@code [from, to)} of {@code src},
+     * writing the results in the same range of {@code dst}.
+     * {@code src} and {@code dst} may be the same array.
+     *
+     * @param src the input values.
+     * @param dst the array where the results are written.
+     * @param from the first index, inclusive.
+     * @param to the last index, exclusive.
+     */
+    public abstract void apply(double[] src, double[] dst, int from, int to);
+
+    /**
+     * Apply the derivative of the function to the range {@code [from, to)} of {@code src},
+     * writing the results in the same range of {@code dst}.
+     * {@code src} and {@code dst} may be the same array.
+     *
+     * @param src the outputs of the function.
+     * @param dst the array where the results are written.
+     * @param from the first index, inclusive.
+     * @param to the last index, exclusive.
+     */
+    public abstract void derivative(double[] src, double[] dst, int from, int to);
 
-    private Function<Double, Double> function;
-    private Function<Double, Double> derivative;
+    /**
+     * Turn the derivatives of the loss with respect to the outputs of the function in
+     * the range {@code [from, to)} into derivatives with respect to its inputs, multiplying
+     * them by the Jacobian of the function. For an element-wise function it is the same as
+     * multiplying each one by {@link #derivative(double)}. A function that is not element-wise
+     * must be given the outputs of a whole layer.
+     *
+     * @param outputs the outputs of the function.
+     * @param gradients the derivatives with respect to the outputs, replaced by those with respect to the inputs.
+     * @param from the first index, inclusive.
+     * @param to the last index, exclusive.
+     */
+    public void backpropagate(double[] outputs, double[] gradients, int from, int to) {
+        for (int i = from; i < to; i++) {
+            gradients[i] *= derivative(outputs[i]);
+        }
+    }
 
     /**
-     * Construct an activation function.
+     * Returns whether the function can be applied to each value independently.
      *
-     * @param function the function.
-     * @param derivative the derivative of the function.
+     * @return {@code true} if the function is element-wise.
+     */
+    public boolean isElementWise() {
+        return true;
+    }
+
+    /**
+     * Returns the function.
+     *
+     * @return the function.
+     */
+    public DoubleUnaryOperator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the derivative of the function.
+     *
+     * @return the derivative of the function.
      */
-    ActivationFunction(Function<Double, Double> function, Function<Double, Double> derivative) {
-        this.function = function;
-        this.derivative = derivative;
+    public DoubleUnaryOperator getDerivativeOperator() {
+        return derivativeOperator;
     }
 
     /**
      * Returns the function.
      *
      * @return the function.
+     * @deprecated boxes every value, use {@link #getOperator()} instead.
      */
+    @Deprecated
     public Function<Double, Double> getFunction() {
-        return function;
+        return this::apply;
     }
 
     /**
      * Returns the derivative of the function.
      *
      * @return the derivative of the function.
+     * @deprecated boxes every value, use {@link #getDerivativeOperator()} instead.
      */
+    @Deprecated
     public Function<Double, Double> getDerivative() {
-        return derivative;
+        return this::derivative;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * The kernels of a {@link DenseLayer}: matrix products over row-major {@code double[]} buffers.
+ *
+ * <p>Batches are stored sample after sample, so the values of sample {@code b}
+ * of a layer with {@code n} nodes are in {@code [b * n, (b + 1) * n)}. The weights of
+ * a layer are {@code rows * cols} values, one row per output node, followed by the biases.
+ * Implementations must compute the outputs of a sample the same way whatever the size
+ * of the batch, so that batch evaluation is identical to evaluating each sample on its own.
+ *
+ * @author Javier Orbe
+ * @see ComputeBackends
+ */
+public interface ComputeBackend {
+
+    /**
+     * Returns the name of the backend.
+     *
+     * @return the name of the backend.
+     */
+    String getName();
+
+    /**
+     * Compute {@code out = in * W^T + b} for every sample of the batch.
+     *
+     * @param parameters the parameter array.
+     * @param offset the offset of the weights in {@code parameters}, which are followed by the biases.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param in the input values, {@code batch * cols} of them.
+     * @param out the array where the {@code batch * rows} output values are written.
+     * @param batch the number of samples.
+     */
+    void forward(double[] parameters, int offset, int rows, int cols, double[] in, double[] out, int batch);
+
+    /**
+     * Accumulate the gradients of a layer: {@code dW += delta^T * in} and {@code db += sum(delta)}.
+     *
+     * @param delta the derivative of the loss with respect to the layer outputs before activation, {@code batch * rows} values.
+     * @param in the input values of the layer, {@code batch * cols} values.
+     * @param gradients the gradient array, with the same layout as the parameter array.
+     * @param offset the offset of the weights of the layer in {@code gradients}.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param batch the number of samples.
+     */
+    void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int rows, int cols, int batch);
+
+    /**
+     * Propagate the error of a layer to its inputs, {@code error = delta * W},
+     * without building the transpose of the weights.
+     *
+     * @param parameters the parameter array.
+     * @param offset the offset of the weights of the layer in {@code parameters}.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param delta the derivative of the loss with respect to the layer outputs before activation, {@code batch * rows} values.
+     * @param error the array where the {@code batch * cols} propagated values are written.
+     * @param batch the number of samples.
+     */
+    void backpropagate(double[] parameters, int offset, int rows, int cols, double[] delta, double[] error, int batch);
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * The available {@link ComputeBackend}s and the one used by dense layers.
+ *
+ * <p>The scalar backend runs on any Java version. The vector backend uses the incubating
+ * Vector API ({@code jdk.incubator.vector}) to compute several values per instruction. It is
+ * compiled by the {@code vector} build profile, which is active when building on Java 16 or
+ * later, and it needs the module at runtime ({@code --add-modules jdk.incubator.vector}).
+ * When it is not available, the scalar backend is used instead.
+ *
+ * <p>The default backend is the scalar one, unless the system property {@code neuron.backend}
+ * is {@code vector}. The vector backend adds the products of a dot product in a different
+ * order, so its results may differ from those of the scalar backend in the last bits.
+ *
+ * @author Javier Orbe
+ */
+public final class ComputeBackends {
+
+    /**
+     * Name of the system property that selects the default backend.
+     */
+    public static final String PROPERTY = "neuron.backend";
+
+    private static final String VECTOR_CLASS = "com.javierorbe.neuron.VectorBackend";
+
+    private static final ComputeBackend SCALAR = new ScalarBackend();
+    private static final ComputeBackend VECTOR = loadVector();
+
+    private static volatile ComputeBackend current =
+            "vector".equalsIgnoreCase(System.getProperty(PROPERTY)) ? vector() : SCALAR;
+
+    private ComputeBackends() {}
+
+    /**
+     * Returns the portable scalar backend.
+     *
+     * @return the scalar backend.
+     */
+    public static ComputeBackend scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Returns the Vector API backend, or the scalar backend if it is not available.
+     *
+     * @return the vector backend if it is available, or else the scalar backend.
+     */
+    public static ComputeBackend vector() {
+        return (VECTOR != null) ? VECTOR : SCALAR;
+    }
+
+    /**
+     * Returns whether the Vector API backend is available.
+     *
+     * @return {@code true} if the vector backend is available.
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Returns the backend used by dense layers.
+     *
+     * @return the current backend.
+     */
+    public static ComputeBackend getDefault() {
+        return current;
+    }
+
+    /**
+     * Set the backend used by dense layers from now on.
+     *
+     * @param backend the backend.
+     */
+    public static void setDefault(ComputeBackend backend) {
+        if (backend == null) {
+            throw new NullPointerException("backend");
+        }
+        current = backend;
+    }
+
+    /**
+     * Load the vector backend and check that it works, which fails if the class was not
+     * compiled, if the Java version is too old or if the module is not available.
+     *
+     * @return the vector backend, or {@code null} if it is not available.
+     */
+    private static ComputeBackend loadVector() {
+        try {
+            ComputeBackend backend = (ComputeBackend) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+            double[] out = new double[1];
+            backend.forward(new double[] {2, 3, 1}, 0, 1, 2, new double[] {4, 5}, out, 1);
+            return (out[0] == 24) ? backend : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * The kernels of {@link Kernels}.
+     */
+    private static final class ScalarBackend implements ComputeBackend {
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public void forward(double[] parameters, int offset, int rows, int cols, double[] in, double[] out, int batch) {
+            Kernels.forward(parameters, offset, rows, cols, in, out, batch);
+        }
+
+        @Override
+        public void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int rows, int cols, int batch) {
+            Kernels.accumulateGradients(delta, in, gradients, offset, rows, cols, batch);
+        }
+
+        @Override
+        public void backpropagate(double[] parameters, int offset, int rows, int cols, double[] delta, double[] error, int batch) {
+            Kernels.backpropagate(parameters, offset, rows, cols, delta, error, batch);
+        }
+    }
+}
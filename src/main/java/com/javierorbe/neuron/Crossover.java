@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Crossover operators, which combine the weights and biases of two
+ * networks with the same layers into a new network.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://en.wikipedia.org/wiki/Crossover_(genetic_algorithm)" target="_top">Crossover in Wikipedia</a>
+ */
+public enum Crossover {
+
+    /**
+     * Each parameter is taken from either parent with the same probability.
+     */
+    UNIFORM {
+        @Override
+        void cross(double[] first, int firstBase, double[] second, int secondBase,
+                   double[] child, int childBase, int[] offsets, Random random) {
+            final int count = offsets[offsets.length - 1];
+            for (int i = 0; i < count; i += Long.SIZE) {
+                // One random bit per parameter
+                long bits = random.nextLong();
+                final int end = Math.min(count, i + Long.SIZE);
+                for (int k = i; k < end; k++, bits >>>= 1) {
+                    child[childBase + k] = ((bits & 1) == 0) ? first[firstBase + k] : second[secondBase + k];
+                }
+            }
+        }
+    },
+
+    /**
+     * For each layer, the parameters before a random point are taken from the
+     * first parent and the rest from the second parent.
+     */
+    SINGLE_POINT {
+        @Override
+        void cross(double[] first, int firstBase, double[] second, int secondBase,
+                   double[] child, int childBase, int[] offsets, Random random) {
+            for (int i = 0; i < offsets.length - 1; i++) {
+                final int start = offsets[i];
+                final int point = start + random.nextInt(offsets[i + 1] - start + 1);
+                System.arraycopy(first, firstBase + start, child, childBase + start, point - start);
+                System.arraycopy(second, secondBase + point, child, childBase + point, offsets[i + 1] - point);
+            }
+        }
+    },
+
+    /**
+     * Each parameter is the weighted mean {@code a * x + (1 - a) * y} of the
+     * parameters of both parents, with a random weight {@code a} in {@code [0, 1)}
+     * for the whole network.
+     */
+    BLEND {
+        @Override
+        void cross(double[] first, int firstBase, double[] second, int secondBase,
+                   double[] child, int childBase, int[] offsets, Random random) {
+            final int count = offsets[offsets.length - 1];
+            final double a = random.nextDouble();
+            final double b = 1 - a;
+            for (int k = 0; k < count; k++) {
+                child[childBase + k] = a * first[firstBase + k] + b * second[secondBase + k];
+            }
+        }
+    };
+
+    /**
+     * Create a network that combines the parameters of two networks. It has the
+     * activation functions, learning rate and listener of the first network.
+     *
+     * @param first the first parent.
+     * @param second the second parent.
+     * @param random the random number generator.
+     * @return a new network.
+     * @throws IllegalArgumentException if the layers of the parents do not match.
+     */
+    public NeuralNetwork apply(NeuralNetwork first, NeuralNetwork second, Random random) {
+        double[] parameters = new double[first.getParameterCount()];
+        cross(first, second, parameters, 0, random);
+
+        NeuralNetwork child = new NeuralNetwork(first.getLayerArray(), first.getLearningRate(), parameters);
+        child.setListener(first.getListener());
+        return child;
+    }
+
+    /**
+     * Write the combination of the parameters of two networks into an array.
+     *
+     * @param first the first parent.
+     * @param second the second parent.
+     * @param child the array where the parameters are written.
+     * @param childBase the index of the first parameter in {@code child}.
+     * @param random the random number generator.
+     * @throws IllegalArgumentException if the layers of the parents do not match.
+     */
+    void cross(NeuralNetwork first, NeuralNetwork second, double[] child, int childBase, Random random) {
+        if (!first.hasSameStructure(second)) {
+            throw new IllegalArgumentException("Cannot cross networks with layers " + Arrays.toString(first.getLayerArray())
+                    + " and " + Arrays.toString(second.getLayerArray()));
+        }
+
+        cross(first.getParameterArray(), first.getParameterOffset(), second.getParameterArray(), second.getParameterOffset(),
+                child, childBase, first.getLayerOffsets(), random);
+    }
+
+    /**
+     * Write the combination of two parameter ranges into an array.
+     *
+     * @param first the parameter array of the first parent.
+     * @param firstBase the index of the first parameter of the first parent.
+     * @param second the parameter array of the second parent.
+     * @param secondBase the index of the first parameter of the second parent.
+     * @param child the array where the parameters are written.
+     * @param childBase the index of the first parameter in {@code child}.
+     * @param offsets the offset of each layer, with the number of parameters as the last element.
+     * @param random the random number generator.
+     */
+    abstract void cross(double[] first, int firstBase, double[] second, int secondBase,
+                        double[] child, int childBase, int[] offsets, Random random);
+}
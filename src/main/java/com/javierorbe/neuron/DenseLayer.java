@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Objects;
+
+/**
+ * A fully connected layer. Its parameters are the weights, row-major with one row
+ * per output node, followed by the biases. The products are computed by the
+ * {@linkplain ComputeBackends#getDefault() default compute backend}.
+ *
+ * @author Javier Orbe
+ */
+public final class DenseLayer implements Layer {
+
+    private final int inputs;
+    private final int outputs;
+    private final ActivationFunction activationFunction;
+
+    /**
+     * Construct a dense layer.
+     *
+     * @param inputs the number of input nodes.
+     * @param outputs the number of output nodes.
+     * @param activationFunction the activation function.
+     * @throws IllegalArgumentException if a size is not positive.
+     */
+    public DenseLayer(int inputs, int outputs, ActivationFunction activationFunction) {
+        if (inputs <= 0 || outputs <= 0) {
+            throw new IllegalArgumentException("The sizes of a layer must be positive: " + inputs + ", " + outputs);
+        }
+
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.activationFunction = Objects.requireNonNull(activationFunction);
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputs;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputs;
+    }
+
+    @Override
+    public int getParameterCount() {
+        return outputs * inputs + outputs;
+    }
+
+    @Override
+    public ActivationFunction getActivationFunction() {
+        return activationFunction;
+    }
+
+    @Override
+    public void forward(double[] parameters, int offset, double[] in, double[] out, int batch) {
+        ComputeBackends.getDefault().forward(parameters, offset, outputs, inputs, in, out, batch);
+    }
+
+    @Override
+    public void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int batch) {
+        ComputeBackends.getDefault().accumulateGradients(delta, in, gradients, offset, outputs, inputs, batch);
+    }
+
+    @Override
+    public void backpropagate(double[] parameters, int offset, double[] delta, double[] error, int batch) {
+        ComputeBackends.getDefault().backpropagate(parameters, offset, outputs, inputs, delta, error, batch);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof DenseLayer)) {
+            return false;
+        }
+        DenseLayer other = (DenseLayer) obj;
+        return inputs == other.inputs && outputs == other.outputs && activationFunction == other.activationFunction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inputs, outputs, activationFunction);
+    }
+
+    @Override
+    public String toString() {
+        return "DenseLayer[" + inputs + " -> " + outputs + ", " + activationFunction + "]";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * Fast approximations of elementary functions used by the activation functions.
+ *
+ * @author Javier Orbe
+ */
+final class FastMath {
+
+    private static final double LOG2E = 1.4426950408889634;
+    private static final double LN2_HI = 0.6931471803691238;
+    private static final double LN2_LO = 1.9082149292705877e-10;
+
+    private FastMath() {}
+
+    /**
+     * Returns an approximation of {@code e^x}.
+     * The relative error with respect to {@link Math#exp(double)} is below {@code 4e-6}.
+     *
+     * <p>The argument is reduced to {@code x = k ln(2) + r}, with {@code |r| <= ln(2) / 2},
+     * {@code e^r} is approximated with a degree 5 polynomial and the result is scaled
+     * by {@code 2^k} writing the exponent bits directly.
+     *
+     * @param x the exponent.
+     * @return an approximation of {@code e^x}.
+     */
+    static double exp(double x) {
+        if (x > 709) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (x < -708) {
+            return 0;
+        }
+
+        double k = Math.floor(x * LOG2E + 0.5);
+        double r = (x - k * LN2_HI) - k * LN2_LO;
+        double p = 1 + r * (1 + r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120)))));
+        return p * Double.longBitsToDouble(((long) k + 1023) << 52);
+    }
+
+    /**
+     * Returns an approximation of the hyperbolic tangent of {@code x}.
+     * The absolute error with respect to {@link Math#tanh(double)} is below {@code 2e-6}.
+     *
+     * @param x the input value.
+     * @return an approximation of {@code tanh(x)}.
+     */
+    static double tanh(double x) {
+        if (x > 20) {
+            return 1;
+        }
+        if (x < -20) {
+            return -1;
+        }
+        return 1 - 2 / (1 + exp(2 * x));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+
+/**
+ * Dense layer kernels over row-major {@code double[]} buffers.
+ *
+ * <p>Batches are stored sample after sample, so the values of sample {@code b}
+ * of a layer with {@code n} nodes are in {@code [b * n, (b + 1) * n)}.
+ * The loops are blocked so that a tile of the weights stays in cache while
+ * it is applied to several samples of the batch. The forward kernel never
+ * reorders the additions of a dot product, so the outputs of a batch are
+ * identical to the outputs of evaluating each sample on its own.
+ *
+ * @author Javier Orbe
+ */
+final class Kernels {
+
+    /**
+     * Number of weight rows in a tile.
+     */
+    private static final int ROW_BLOCK = 64;
+
+    /**
+     * Number of weight columns in a tile.
+     */
+    private static final int COLUMN_BLOCK = 256;
+
+    private Kernels() {}
+
+    /**
+     * Compute {@code out = in * W^T + b} for every sample of the batch.
+     *
+     * @param parameters the parameter array.
+     * @param offset the offset of the weights in {@code parameters}, which are followed by the biases.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param in the input values, {@code batch * cols} of them.
+     * @param out the array where the {@code batch * rows} output values are written.
+     * @param batch the number of samples.
+     */
+    static void forward(double[] parameters, int offset, int rows, int cols, double[] in, double[] out, int batch) {
+        final int biasOffset = offset + rows * cols;
+
+        for (int k0 = 0; k0 < cols; k0 += COLUMN_BLOCK) {
+            final int k1 = Math.min(cols, k0 + COLUMN_BLOCK);
+
+            for (int j0 = 0; j0 < rows; j0 += ROW_BLOCK) {
+                final int j1 = Math.min(rows, j0 + ROW_BLOCK);
+
+                int b = 0;
+
+                // Four samples at a time, so that each weight is loaded once for all of them
+                for (; b + 4 <= batch; b += 4) {
+                    final int x0 = b * cols;
+                    final int x1 = x0 + cols;
+                    final int x2 = x1 + cols;
+                    final int x3 = x2 + cols;
+                    final int o0 = b * rows;
+                    final int o1 = o0 + rows;
+                    final int o2 = o1 + rows;
+                    final int o3 = o2 + rows;
+
+                    for (int j = j0; j < j1; j++) {
+                        final int row = offset + j * cols;
+                        double sum0 = (k0 == 0) ? 0 : out[o0 + j];
+                        double sum1 = (k0 == 0) ? 0 : out[o1 + j];
+                        double sum2 = (k0 == 0) ? 0 : out[o2 + j];
+                        double sum3 = (k0 == 0) ? 0 : out[o3 + j];
+                        for (int k = k0; k < k1; k++) {
+                            final double w = parameters[row + k];
+                            sum0 += w * in[x0 + k];
+                            sum1 += w * in[x1 + k];
+                            sum2 += w * in[x2 + k];
+                            sum3 += w * in[x3 + k];
+                        }
+                        out[o0 + j] = sum0;
+                        out[o1 + j] = sum1;
+                        out[o2 + j] = sum2;
+                        out[o3 + j] = sum3;
+                    }
+                }
+
+                for (; b < batch; b++) {
+                    final int x = b * cols;
+                    final int o = b * rows;
+
+                    for (int j = j0; j < j1; j++) {
+                        final int row = offset + j * cols;
+                        double sum = (k0 == 0) ? 0 : out[o + j];
+                        for (int k = k0; k < k1; k++) {
+                            sum += parameters[row + k] * in[x + k];
+                        }
+                        out[o + j] = sum;
+                    }
+                }
+            }
+        }
+
+        for (int b = 0; b < batch; b++) {
+            final int o = b * rows;
+            for (int j = 0; j < rows; j++) {
+                out[o + j] += parameters[biasOffset + j];
+            }
+        }
+    }
+
+    /**
+     * Accumulate the gradients of a layer: {@code dW += delta^T * in} and {@code db += sum(delta)}.
+     *
+     * @param delta the derivative of the loss with respect to the layer outputs before activation, {@code batch * rows} values.
+     * @param in the input values of the layer, {@code batch * cols} values.
+     * @param gradients the gradient array, with the same layout as the parameter array.
+     * @param offset the offset of the weights of the layer in {@code gradients}.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param batch the number of samples.
+     */
+    static void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int rows, int cols, int batch) {
+        final int biasOffset = offset + rows * cols;
+
+        for (int j = 0; j < rows; j++) {
+            final int row = offset + j * cols;
+            int b = 0;
+
+            // The gradient row stays in cache while the samples are added four at a time
+            for (; b + 4 <= batch; b += 4) {
+                final double d0 = delta[b * rows + j];
+                final double d1 = delta[(b + 1) * rows + j];
+                final double d2 = delta[(b + 2) * rows + j];
+                final double d3 = delta[(b + 3) * rows + j];
+                final int x0 = b * cols;
+                final int x1 = x0 + cols;
+                final int x2 = x1 + cols;
+                final int x3 = x2 + cols;
+                for (int k = 0; k < cols; k++) {
+                    gradients[row + k] += d0 * in[x0 + k] + d1 * in[x1 + k] + d2 * in[x2 + k] + d3 * in[x3 + k];
+                }
+                gradients[biasOffset + j] += d0 + d1 + d2 + d3;
+            }
+
+            for (; b < batch; b++) {
+                final double value = delta[b * rows + j];
+                final int x = b * cols;
+                for (int k = 0; k < cols; k++) {
+                    gradients[row + k] += value * in[x + k];
+                }
+                gradients[biasOffset + j] += value;
+            }
+        }
+    }
+
+    /**
+     * Propagate the error of a layer to its inputs: {@code error = delta * W}.
+     *
+     * @param parameters the parameter array.
+     * @param offset the offset of the weights of the layer in {@code parameters}.
+     * @param rows the number of nodes of the output layer.
+     * @param cols the number of nodes of the input layer.
+     * @param delta the derivative of the loss with respect to the layer outputs before activation, {@code batch * rows} values.
+     * @param error the array where the {@code batch * cols} propagated values are written.
+     * @param batch the number of samples.
+     */
+    static void backpropagate(double[] parameters, int offset, int rows, int cols, double[] delta, double[] error, int batch) {
+        Arrays.fill(error, 0, batch * cols, 0);
+
+        for (int j0 = 0; j0 < rows; j0 += ROW_BLOCK) {
+            final int j1 = Math.min(rows, j0 + ROW_BLOCK);
+
+            for (int b = 0; b < batch; b++) {
+                final int e = b * cols;
+                final int d = b * rows;
+                int j = j0;
+
+                // Four weight rows at a time, so that each error value is stored once for all of them
+                for (; j + 4 <= j1; j += 4) {
+                    final double d0 = delta[d + j];
+                    final double d1 = delta[d + j + 1];
+                    final double d2 = delta[d + j + 2];
+                    final double d3 = delta[d + j + 3];
+                    final int w0 = offset + j * cols;
+                    final int w1 = w0 + cols;
+                    final int w2 = w1 + cols;
+                    final int w3 = w2 + cols;
+                    for (int k = 0; k < cols; k++) {
+                        error[e + k] += d0 * parameters[w0 + k] + d1 * parameters[w1 + k]
+                                + d2 * parameters[w2 + k] + d3 * parameters[w3 + k];
+                    }
+                }
+
+                for (; j < j1; j++) {
+                    final double value = delta[d + j];
+                    final int row = offset + j * cols;
+                    for (int k = 0; k < cols; k++) {
+                        error[e + k] += value * parameters[row + k];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the squared Euclidean distance between two ranges of values.
+     *
+     * @param a the first array.
+     * @param aOffset the index of the first value in {@code a}.
+     * @param b the second array.
+     * @param bOffset the index of the first value in {@code b}.
+     * @param length the number of values.
+     * @return the sum of the squared differences.
+     */
+    static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        // Four independent sums, so that the additions do not wait for each other
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        double s3 = 0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            final double d0 = a[aOffset + i] - b[bOffset + i];
+            final double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            final double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            final double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            final double d = a[aOffset + i] - b[bOffset + i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * A layer of connections from the nodes of one layer of a network to the nodes of the next,
+ * followed by an activation function.
+ *
+ * <p>A layer does not hold its parameters: they are a range of the parameter array of the
+ * network, starting at an offset, and the gradients have the same layout. The values of a
+ * batch are stored sample after sample, so the values of sample {@code b} of a layer with
+ * {@code n} nodes are in {@code [b * n, (b + 1) * n)}. Layers are immutable and can be
+ * shared by several networks.
+ *
+ * @author Javier Orbe
+ * @see DenseLayer
+ * @see SparseLayer
+ */
+public interface Layer {
+
+    /**
+     * Returns the number of input nodes.
+     *
+     * @return the number of input nodes.
+     */
+    int getInputSize();
+
+    /**
+     * Returns the number of output nodes.
+     *
+     * @return the number of output nodes.
+     */
+    int getOutputSize();
+
+    /**
+     * Returns the number of weights and biases of the layer.
+     *
+     * @return the number of parameters.
+     */
+    int getParameterCount();
+
+    /**
+     * Returns the activation function applied to the output nodes.
+     *
+     * @return the activation function.
+     */
+    ActivationFunction getActivationFunction();
+
+    /**
+     * Compute the outputs of the layer before the activation function.
+     *
+     * @param parameters the parameter array.
+     * @param offset the index of the first parameter of the layer.
+     * @param in the input values, {@code batch * getInputSize()} values.
+     * @param out the array where the {@code batch * getOutputSize()} output values are written.
+     * @param batch the number of samples.
+     */
+    void forward(double[] parameters, int offset, double[] in, double[] out, int batch);
+
+    /**
+     * Add the gradients of the parameters of the layer to {@code gradients}.
+     *
+     * @param delta the derivative of the loss with respect to the outputs before activation,
+     *              {@code batch * getOutputSize()} values.
+     * @param in the input values, {@code batch * getInputSize()} values.
+     * @param gradients the gradient array, with the same layout as the parameter array.
+     * @param offset the index of the first parameter of the layer in {@code gradients}.
+     * @param batch the number of samples.
+     */
+    void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int batch);
+
+    /**
+     * Propagate the derivative of the loss with respect to the outputs before activation
+     * to the inputs of the layer.
+     *
+     * @param parameters the parameter array.
+     * @param offset the index of the first parameter of the layer.
+     * @param delta the derivative of the loss with respect to the outputs before activation,
+     *              {@code batch * getOutputSize()} values.
+     * @param error the array where the {@code batch * getInputSize()} propagated values are written.
+     * @param batch the number of samples.
+     */
+    void backpropagate(double[] parameters, int offset, double[] delta, double[] error, int batch);
+
+    /**
+     * Returns whether the parameters of another layer have the same meaning as those of this
+     * layer, so that they can be copied, crossed or compared. The activation function does not matter.
+     *
+     * @param other the other layer.
+     * @return {@code true} if both layers have the same structure.
+     */
+    default boolean hasSameStructure(Layer other) {
+        return getClass() == other.getClass()
+                && getInputSize() == other.getInputSize()
+                && getOutputSize() == other.getOutputSize()
+                && getParameterCount() == other.getParameterCount();
+    }
+}
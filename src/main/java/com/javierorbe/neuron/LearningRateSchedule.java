@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * Changes the learning rate of an {@link Optimizer} as training progresses.
+ *
+ * @author Javier Orbe
+ */
+@FunctionalInterface
+public interface LearningRateSchedule {
+
+    /**
+     * Returns the learning rate of a step.
+     *
+     * @param learningRate the learning rate of the network.
+     * @param step the number of steps taken before this one.
+     * @return the learning rate of the step.
+     */
+    double learningRate(double learningRate, long step);
+
+    /**
+     * Returns a schedule that always uses the learning rate of the network.
+     *
+     * @return a constant schedule.
+     */
+    static LearningRateSchedule constant() {
+        return (learningRate, step) -> learningRate;
+    }
+
+    /**
+     * Returns a schedule that multiplies the learning rate by {@code factor}
+     * every {@code steps} steps.
+     *
+     * @param factor the factor applied to the learning rate.
+     * @param steps the number of steps between changes.
+     * @return a step decay schedule.
+     * @throws IllegalArgumentException if {@code steps} is not positive.
+     */
+    static LearningRateSchedule stepDecay(double factor, long steps) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("The number of steps must be positive: " + steps);
+        }
+        return (learningRate, step) -> learningRate * Math.pow(factor, step / steps);
+    }
+
+    /**
+     * Returns a schedule that multiplies the learning rate by {@code factor} every step.
+     *
+     * @param factor the factor applied to the learning rate.
+     * @return an exponential decay schedule.
+     */
+    static LearningRateSchedule exponentialDecay(double factor) {
+        return (learningRate, step) -> learningRate * Math.pow(factor, step);
+    }
+
+    /**
+     * Returns a schedule that divides the learning rate by {@code 1 + decay * step}.
+     *
+     * @param decay the decay.
+     * @return an inverse time decay schedule.
+     */
+    static LearningRateSchedule inverseTimeDecay(double decay) {
+        return (learningRate, step) -> learningRate / (1 + decay * step);
+    }
+}
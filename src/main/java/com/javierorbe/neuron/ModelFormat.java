@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary format of a {@link NeuralNetwork}.
+ *
+ * <p>All the values are little-endian. A model is stored as:
+ * <pre>
+ * int      magic number, "NEUR"
+ * int      format version, 2
+ * int      number of layers after the input layer, n
+ * int      zero
+ *          n layers
+ *          padding up to a multiple of 8 bytes
+ * double   learning rate
+ * long     number of parameters, p
+ * double[p] weights and biases, in the layout of {@link NeuralNetwork}
+ * </pre>
+ * where each layer is stored as:
+ * <pre>
+ * int      kind, 0 for a {@link DenseLayer} and 1 for a {@link SparseLayer}
+ * int      number of inputs
+ * int      number of outputs, o
+ * int      length of the activation function name in bytes, m
+ * byte[m]  name of the activation function, in UTF-8
+ *          padding up to a multiple of 4 bytes
+ * </pre>
+ * followed, for a sparse layer, by:
+ * <pre>
+ * int      number of connections, c
+ * int[o+1] row pointers
+ * int[c]   columns
+ * </pre>
+ * The parameters are aligned to 8 bytes and stored contiguously, so a mapped file
+ * is read with a single bulk copy from the page cache into the parameter array.
+ *
+ * <p>Models of version 1, where every layer is dense and has the same activation
+ * function, can still be read. Their header is:
+ * <pre>
+ * int      magic number, "NEUR"
+ * int      format version, 1
+ * int      number of layers, n
+ * int      length of the activation function name in bytes, m
+ * int[n]   number of nodes in each layer
+ * byte[m]  name of the activation function, in UTF-8
+ *          padding up to a multiple of 8 bytes
+ * </pre>
+ * followed by the learning rate and the parameters as above.
+ *
+ * @author Javier Orbe
+ */
+public final class ModelFormat {
+
+    /**
+     * "NEUR" in ASCII.
+     */
+    static final int MAGIC = 0x4E455552;
+
+    static final int VERSION = 2;
+
+    private static final int DENSE = 0;
+    private static final int SPARSE = 1;
+
+    /**
+     * Size of the buffer used to stream the parameters to a channel.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ModelFormat() {}
+
+    /**
+     * Returns the number of bytes that a network takes in this format.
+     *
+     * @param network the network.
+     * @return the size of the network in bytes.
+     */
+    public static int size(NeuralNetwork network) {
+        return headerSize(network) + network.getParameterCount() * Double.BYTES;
+    }
+
+    /**
+     * Write a network into a buffer, starting at its current position.
+     * The byte order of the buffer is not changed.
+     *
+     * @param network the network.
+     * @param buffer the buffer, with at least {@link #size(NeuralNetwork)} bytes remaining.
+     */
+    public static void write(NeuralNetwork network, ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        writeHeader(network, buffer);
+        int count = network.getParameterCount();
+        buffer.asDoubleBuffer().put(network.getParameterArray(), network.getParameterOffset(), count);
+        buffer.position(buffer.position() + count * Double.BYTES);
+
+        buffer.order(order);
+    }
+
+    /**
+     * Write a network to a channel, streaming the parameters through a small buffer.
+     *
+     * @param network the network.
+     * @param channel the channel.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void write(NeuralNetwork network, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, headerSize(network)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(network, buffer);
+
+        double[] parameters = network.getParameterArray();
+        int offset = network.getParameterOffset();
+        int total = network.getParameterCount();
+        int written = 0;
+        while (written < total) {
+            int count = Math.min(total - written, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().put(parameters, offset + written, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            written += count;
+
+            if (buffer.remaining() < Double.BYTES) {
+                flush(buffer, channel);
+            }
+        }
+
+        flush(buffer, channel);
+    }
+
+    /**
+     * Write a network to an output stream. The stream is not closed.
+     *
+     * @param network the network.
+     * @param out the output stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void write(NeuralNetwork network, OutputStream out) throws IOException {
+        write(network, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Save a network to a file. The network is written to a temporary file that then
+     * replaces the target, so a checkpoint taken while training is never left half-written.
+     *
+     * @param network the network.
+     * @param path the path of the file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void save(NeuralNetwork network, Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(network, channel);
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a network from a buffer, starting at its current position.
+     * The position is advanced past the network and the byte order of the buffer is not changed.
+     * The parameters are copied out of the buffer, so the network does not depend on it.
+     *
+     * @param buffer the buffer.
+     * @return the network.
+     * @throws IllegalArgumentException if the buffer does not contain a network in this format.
+     */
+    public static NeuralNetwork read(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            int start = buffer.position();
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a neural network model");
+            }
+
+            int version = buffer.getInt();
+            Layer[] layers;
+            if (version == VERSION) {
+                layers = readLayers(buffer, start);
+            } else if (version == 1) {
+                layers = readDenseLayers(buffer);
+            } else {
+                throw new IllegalArgumentException("Unsupported model version: " + version);
+            }
+            buffer.position(start + align(buffer.position() - start));
+
+            double learningRate = buffer.getDouble();
+
+            long count = buffer.getLong();
+            if (count != parameterCount(layers)) {
+                throw new IllegalArgumentException("The number of parameters does not match the layers");
+            }
+            if (count > buffer.remaining() / Double.BYTES) {
+                throw new BufferUnderflowException();
+            }
+
+            double[] parameters = new double[(int) count];
+            buffer.asDoubleBuffer().get(parameters);
+            buffer.position(buffer.position() + parameters.length * Double.BYTES);
+
+            return new NeuralNetwork(layers, learningRate, parameters);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated neural network model", e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Load a network from a file. The file is memory-mapped and the parameters are copied
+     * from the mapping into the parameter array of the network with a single bulk copy,
+     * without going through a stream. The network owns its parameters, so every network
+     * loaded from the same file has its own copy of them on the heap. A mapping is limited
+     * to {@link Integer#MAX_VALUE} bytes, and so are the files that can be loaded.
+     *
+     * @param path the path of the file.
+     * @return the network.
+     * @throws IOException if an I/O error occurs.
+     * @throws IllegalArgumentException if the file does not contain a network in this format
+     *                                  or is larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    public static NeuralNetwork load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The model is too big to be mapped: " + channel.size() + " bytes");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Read the layers of a model of the current version that starts at {@code start}.
+     */
+    private static Layer[] readLayers(ByteBuffer buffer, int start) {
+        int layerCount = buffer.getInt();
+        buffer.getInt();
+        // Every layer takes at least 16 bytes
+        if (layerCount < 1 || layerCount > buffer.remaining() / 16) {
+            throw new IllegalArgumentException("Malformed neural network model");
+        }
+
+        Layer[] layers = new Layer[layerCount];
+        for (int i = 0; i < layerCount; i++) {
+            int kind = buffer.getInt();
+            int inputs = buffer.getInt();
+            int outputs = buffer.getInt();
+            if (inputs < 1 || outputs < 1) {
+                throw new IllegalArgumentException("Malformed neural network model");
+            }
+            ActivationFunction activationFunction = readName(buffer, buffer.getInt());
+            buffer.position(buffer.position() + padding(buffer.position() - start));
+
+            if (kind == DENSE) {
+                layers[i] = new DenseLayer(inputs, outputs, activationFunction);
+            } else if (kind == SPARSE) {
+                int connections = buffer.getInt();
+                if (connections < 0 || (outputs + 1L + connections) > buffer.remaining() / Integer.BYTES) {
+                    throw new IllegalArgumentException("Malformed neural network model");
+                }
+                int[] rowPointers = new int[outputs + 1];
+                int[] columns = new int[connections];
+                buffer.asIntBuffer().get(rowPointers);
+                buffer.position(buffer.position() + rowPointers.length * Integer.BYTES);
+                buffer.asIntBuffer().get(columns);
+                buffer.position(buffer.position() + columns.length * Integer.BYTES);
+                layers[i] = new SparseLayer(inputs, outputs, rowPointers, columns, activationFunction);
+            } else {
+                throw new IllegalArgumentException("Unknown layer kind: " + kind);
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Read the layers of a model of version 1.
+     */
+    private static Layer[] readDenseLayers(ByteBuffer buffer) {
+        int layerCount = buffer.getInt();
+        int nameLength = buffer.getInt();
+        if (layerCount < 2 || layerCount > buffer.remaining() / Integer.BYTES || nameLength < 0) {
+            throw new IllegalArgumentException("Malformed neural network model");
+        }
+
+        int[] layers = new int[layerCount];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = buffer.getInt();
+        }
+        return NeuralNetwork.denseLayers(layers, readName(buffer, nameLength));
+    }
+
+    /**
+     * Returns the number of parameters of some layers, which may not fit in an {@code int}
+     * for the sizes of a malformed model.
+     */
+    private static long parameterCount(Layer[] layers) {
+        long count = 0;
+        for (Layer layer : layers) {
+            long outputs = layer.getOutputSize();
+            if (layer instanceof SparseLayer) {
+                count += ((SparseLayer) layer).getConnectionCount() + outputs;
+            } else {
+                count += layer.getInputSize() * outputs + outputs;
+            }
+        }
+        return count;
+    }
+
+    private static ActivationFunction readName(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Malformed neural network model");
+        }
+        byte[] name = new byte[length];
+        buffer.get(name);
+        return ActivationFunction.valueOf(new String(name, StandardCharsets.UTF_8));
+    }
+
+    private static int headerSize(NeuralNetwork network) {
+        int size = 16;
+        for (Layer layer : network.getLayerArray()) {
+            int nameLength = layer.getActivationFunction().name().getBytes(StandardCharsets.UTF_8).length;
+            size += 16 + nameLength;
+            size += padding(size);
+            if (layer instanceof SparseLayer) {
+                size += (2 + layer.getOutputSize() + ((SparseLayer) layer).getConnectionCount()) * Integer.BYTES;
+            }
+        }
+        return align(size) + Double.BYTES + Long.BYTES;
+    }
+
+    private static void writeHeader(NeuralNetwork network, ByteBuffer buffer) {
+        Layer[] layers = network.getLayerArray();
+        int start = buffer.position();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(layers.length);
+        buffer.putInt(0);
+        for (Layer layer : layers) {
+            byte[] name = layer.getActivationFunction().name().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt((layer instanceof SparseLayer) ? SPARSE : DENSE);
+            buffer.putInt(layer.getInputSize());
+            buffer.putInt(layer.getOutputSize());
+            buffer.putInt(name.length);
+            buffer.put(name);
+            for (int n = padding(buffer.position() - start); n > 0; n--) {
+                buffer.put((byte) 0);
+            }
+
+            if (layer instanceof SparseLayer) {
+                SparseLayer sparse = (SparseLayer) layer;
+                buffer.putInt(sparse.getConnectionCount());
+                for (int pointer : sparse.getRowPointers()) {
+                    buffer.putInt(pointer);
+                }
+                for (int column : sparse.getColumns()) {
+                    buffer.putInt(column);
+                }
+            } else if (!(layer instanceof DenseLayer)) {
+                throw new IllegalArgumentException("Cannot store a layer of type " + layer.getClass().getName());
+            }
+        }
+        while (buffer.position() - start < align(buffer.position() - start)) {
+            buffer.put((byte) 0);
+        }
+
+        buffer.putDouble(network.getLearningRate());
+        buffer.putLong(network.getParameterCount());
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the number of bytes needed to round a size up to a multiple of 4 bytes.
+     */
+    private static int padding(int size) {
+        return -size & 3;
+    }
+
+    /**
+     * Round a size up to a multiple of 8 bytes.
+     */
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
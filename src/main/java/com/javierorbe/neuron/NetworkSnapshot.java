@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * An immutable copy of the parameters of a {@link NeuralNetwork}.
+ *
+ * <p>A snapshot is never modified after it is created, so any number of threads
+ * can evaluate it at the same time without locks. Each thread works on its own
+ * scratch buffers, which are reused between calls.
+ *
+ * @author Javier Orbe
+ * @see SharedNetwork
+ */
+public final class NetworkSnapshot {
+
+    /**
+     * Two buffers per thread, shared by every snapshot, that hold the outputs of the
+     * hidden layers in turns. They are taken out while in use, since a custom
+     * {@link Layer} or {@link ComputeBackend} may evaluate another snapshot on the same thread.
+     */
+    private static final ThreadLocal<double[][]> SCRATCH = ThreadLocal.withInitial(() -> new double[2][0]);
+
+    private final int[] layers;
+    private final Layer[] weightLayers;
+    private final int[] offsets;
+    private final double[] parameters;
+    private final double learningRate;
+    private final int maxLayer;
+
+    /**
+     * Construct a snapshot. The arrays must not be modified afterwards.
+     */
+    NetworkSnapshot(Layer[] weightLayers, double learningRate, double[] parameters) {
+        this.layers = NeuralNetwork.layerSizes(weightLayers);
+        this.weightLayers = weightLayers;
+        this.offsets = NeuralNetwork.computeOffsets(weightLayers);
+        this.parameters = parameters;
+        this.learningRate = learningRate;
+
+        int max = 0;
+        for (int layer : layers) {
+            max = Math.max(max, layer);
+        }
+        this.maxLayer = max;
+    }
+
+    /**
+     * Returns the number of nodes in each layer.
+     *
+     * @return a copy of the number of nodes in each layer.
+     */
+    public int[] getLayers() {
+        return layers.clone();
+    }
+
+    /**
+     * Returns the activation function of the first layer after the input layer.
+     *
+     * @return the activation function.
+     */
+    public ActivationFunction getActivationFunction() {
+        return weightLayers[0].getActivationFunction();
+    }
+
+    /**
+     * Returns the layer that connects the nodes of layer {@code index} to those of layer {@code index + 1}.
+     *
+     * @param index the index of the layer.
+     * @return the layer.
+     */
+    public Layer getLayer(int index) {
+        return weightLayers[index];
+    }
+
+    /**
+     * Create a network with the parameters of this snapshot, for example to keep training it.
+     *
+     * @return a new network.
+     */
+    public NeuralNetwork toNetwork() {
+        return new NeuralNetwork(weightLayers, learningRate, parameters.clone());
+    }
+
+    /**
+     * Calculate the output values of an input.
+     *
+     * @param input the input values.
+     * @return the output values.
+     */
+    public double[] evaluate(double[] input) {
+        double[] output = new double[layers[layers.length - 1]];
+        evaluate(input, output);
+        return output;
+    }
+
+    /**
+     * Calculate the output values of an input, writing them into {@code output}.
+     * The results are identical to those of the network the snapshot was taken from.
+     *
+     * @param input the input values.
+     * @param output the array where the output values are written.
+     * @throws IllegalArgumentException if the length of {@code input} or
+     *         {@code output} does not match the size of the input or output layer.
+     */
+    public void evaluate(double[] input, double[] output) {
+        if (input.length != layers[0] || output.length != layers[layers.length - 1]) {
+            throw new IllegalArgumentException("Expected " + layers[0] + " inputs and " + layers[layers.length - 1]
+                    + " outputs, got " + input.length + " and " + output.length);
+        }
+
+        double[][] scratch = SCRATCH.get();
+        if (scratch == null) {
+            // A nested evaluation gets its own buffers
+            evaluate(input, output, new double[2][maxLayer]);
+            return;
+        }
+
+        if (scratch[0].length < maxLayer) {
+            scratch[0] = new double[maxLayer];
+            scratch[1] = new double[maxLayer];
+        }
+        SCRATCH.set(null);
+        try {
+            evaluate(input, output, scratch);
+        } finally {
+            SCRATCH.set(scratch);
+        }
+    }
+
+    private void evaluate(double[] input, double[] output, double[][] scratch) {
+        double[] in = input;
+        for (int i = 0; i < layers.length - 1; i++) {
+            double[] out = (i == layers.length - 2) ? output : scratch[i & 1];
+            weightLayers[i].forward(parameters, offsets[i], in, out, 1);
+            weightLayers[i].getActivationFunction().apply(out, out, 0, layers[i + 1]);
+            in = out;
+        }
+    }
+}
@@ -23,27 +23,88 @@
 package com.javierorbe.neuron;
 
 import com.javierorbe.math.Matrix;
+import com.javierorbe.neuron.metrics.NetworkListener;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 
-import static com.javierorbe.math.util.MathUtils.randomGaussian;
-
 /**
  * Represents a neural network.
  *
+ * <p>The nodes of consecutive layers are connected by a {@link Layer}, which has its own
+ * activation function. The weights and biases of every layer are stored in a single
+ * contiguous {@code double[]}, one layer after another. For a {@link DenseLayer}, the weights
+ * are laid out row-major (one row per node of the next layer) and are followed by the biases.
+ *
+ * <p>A network is not thread-safe, not even to only evaluate it: evaluation writes the
+ * values of the hidden layers into buffers of the network that are reused between calls.
+ * To evaluate from several threads, use a {@link #snapshot() snapshot}, which gives each
+ * thread its own buffers.
+ *
  * @author Javier Orbe
  * @see <a href="https://en.wikipedia.org/wiki/Neural_network" target="_top">Neural network in Wikipedia</a>
  */
 public class NeuralNetwork {
 
+    /**
+     * Number of samples that go through the layers together when evaluating a batch.
+     */
+    private static final int EVALUATION_BLOCK = 64;
+
     private int[] layers;
 
-    private Matrix[] weights;
-    private Matrix[] biases;
+    /**
+     * The connections between each layer and the next.
+     */
+    private Layer[] weightLayers;
+
+    /**
+     * Whether every layer is a {@link DenseLayer}.
+     */
+    private boolean dense;
+
+    /**
+     * Whether every activation function is element-wise.
+     */
+    private boolean elementWise;
+
+    private double[] parameters;
+    private int[] offsets;
+
+    /**
+     * Index of the first parameter of this network in {@link #parameters},
+     * which is not zero when the network lives in a {@link ParameterArena}.
+     */
+    private int base;
 
-    private ActivationFunction activationFunction;
     private double learningRate;
 
+    /**
+     * Output buffers of every layer except the input layer, created on first use
+     * and reused between calls.
+     */
+    private double[][] activations;
+
+    /**
+     * Buffers of every layer for batch evaluation, created on first use.
+     */
+    private double[][] batchActivations;
+
+    /**
+     * Buffers for training, created on first use or given to {@link #setTrainingWorkspace(TrainingWorkspace)}.
+     */
+    private TrainingWorkspace workspace;
+
+    private NetworkListener listener;
+
+    private Optimizer optimizer;
+
     /**
      * Construct a neural network.
      *
@@ -54,14 +115,9 @@ public class NeuralNetwork {
      * @param biases the biases of the network.
      */
     public NeuralNetwork(int[] layers, ActivationFunction activationFunction, double learningRate, Matrix[] weights, Matrix[] biases) {
-        this.layers = layers;
-        this.activationFunction = activationFunction;
-        this.learningRate = learningRate;
-
-        this.weights = weights;
-        this.biases = biases;
+        this(layers, activationFunction, learningRate, flatten(layers, weights, biases));
     }
-    
+
     /**
      * Construct a neural network with randomized values for the weights and biases.
      *
@@ -70,22 +126,47 @@ public class NeuralNetwork {
      * @param learningRate the learning rate.
      */
     public NeuralNetwork(int[] layers, ActivationFunction activationFunction, double learningRate) {
-    	this.layers = layers;
-    	this.activationFunction = activationFunction;
-    	this.learningRate = learningRate;
-        
-        weights = new Matrix[layers.length - 1];
-        biases = new Matrix[layers.length - 1];
+        this(layers, activationFunction, learningRate, randomWeights(layers), randomBiases(layers));
+    }
 
-        for (int i = 0; i < layers.length - 1; i++) {
-            Matrix w = new Matrix(layers[i + 1], layers[i]);
-            w.randomize();
-            weights[i] = w;
+    /**
+     * Construct a neural network with weights and biases drawn uniformly from {@code [-1, 1)}
+     * by the given random number generator, so that the network can be reproduced from a seed.
+     *
+     * @param layers number of nodes in each layer.
+     * @param activationFunction the activation function.
+     * @param learningRate the learning rate.
+     * @param random the random number generator.
+     */
+    public NeuralNetwork(int[] layers, ActivationFunction activationFunction, double learningRate, Random random) {
+        this(layers, activationFunction, learningRate, randomParameters(denseLayers(layers, activationFunction), random));
+    }
 
-            Matrix b = new Matrix(layers[i + 1], 1);
-            b.randomize();
-            biases[i] = b;
-        }
+    /**
+     * Construct a neural network of dense layers with an activation function for each layer,
+     * with weights and biases drawn uniformly from {@code [-1, 1)} by the given random number generator.
+     *
+     * @param layers number of nodes in each layer.
+     * @param activationFunctions the activation function of each layer but the input layer.
+     * @param learningRate the learning rate.
+     * @param random the random number generator.
+     * @throws IllegalArgumentException if there is not an activation function for each layer but the input layer.
+     */
+    public NeuralNetwork(int[] layers, ActivationFunction[] activationFunctions, double learningRate, Random random) {
+        this(denseLayers(layers, activationFunctions), learningRate, random);
+    }
+
+    /**
+     * Construct a neural network from its layers, with weights and biases drawn
+     * uniformly from {@code [-1, 1)} by the given random number generator.
+     *
+     * @param layers the layers, where the output size of each one is the input size of the next.
+     * @param learningRate the learning rate.
+     * @param random the random number generator.
+     * @throws IllegalArgumentException if the sizes of consecutive layers do not match.
+     */
+    public NeuralNetwork(Layer[] layers, double learningRate, Random random) {
+        this(layers.clone(), learningRate, randomParameters(layers, random));
     }
 
     /**
@@ -99,27 +180,204 @@ public class NeuralNetwork {
     }
 
     /**
-     * Create a getMutatedCopy of this {@code NeuralNetwork}.
+     * Construct a neural network from its parameter array.
+     *
+     * @param layers number of nodes in each layer.
+     * @param activationFunction the activation function.
+     * @param learningRate the learning rate.
+     * @param parameters the weights and biases of every layer, in the layout described in the class documentation.
+     */
+    NeuralNetwork(int[] layers, ActivationFunction activationFunction, double learningRate, double[] parameters) {
+        this(denseLayers(layers, activationFunction), learningRate, parameters);
+    }
+
+    /**
+     * Construct a neural network from its layers and its parameter array.
+     *
+     * @param layers the layers, where the output size of each one is the input size of the next.
+     * @param learningRate the learning rate.
+     * @param parameters the weights and biases of every layer, in the layout described in the class documentation.
+     */
+    NeuralNetwork(Layer[] layers, double learningRate, double[] parameters) {
+        this(layers, learningRate, parameters, 0);
+
+        if (parameters.length != getParameterCount()) {
+            throw new IllegalArgumentException("Expected " + getParameterCount()
+                    + " parameters, got " + parameters.length);
+        }
+    }
+
+    /**
+     * Construct a neural network whose parameters are a slice of a larger array.
+     * The network reads and updates the slice in place.
+     *
+     * @param layers the layers, where the output size of each one is the input size of the next.
+     * @param learningRate the learning rate.
+     * @param parameters the array that holds the parameters.
+     * @param base the index of the first parameter of the network in {@code parameters}.
+     */
+    NeuralNetwork(Layer[] layers, double learningRate, double[] parameters, int base) {
+        this.layers = layerSizes(layers);
+        this.weightLayers = layers;
+        this.learningRate = learningRate;
+        this.parameters = parameters;
+        this.offsets = computeOffsets(layers);
+        this.base = base;
+
+        dense = true;
+        elementWise = true;
+        for (Layer layer : layers) {
+            dense &= layer instanceof DenseLayer;
+            elementWise &= layer.getActivationFunction().isElementWise();
+        }
+
+        if (base < 0 || parameters.length - base < offsets[layers.length]) {
+            throw new IllegalArgumentException("No room for " + offsets[layers.length]
+                    + " parameters at index " + base + " of an array of " + parameters.length);
+        }
+    }
+
+    /**
+     * Create a copy of this {@code NeuralNetwork}.
      *
-     * @return a getMutatedCopy of this {@code NeuralNetwork}.
+     * @return a copy of this {@code NeuralNetwork}.
      */
     public NeuralNetwork copy() {
-        Matrix[] newWeights = new Matrix[weights.length];
-    	Matrix[] newBiases = new Matrix[biases.length];
-    	
-    	for (int i = 0; i < weights.length; i++) {
-    		newWeights[i] = weights[i].copy();
-    	}
-    	
-    	for (int i = 0; i < biases.length; i++) {
-    		newBiases[i] = biases[i].copy();
-    	}
-    	
-    	return new NeuralNetwork(
-    			layers.clone(), activationFunction, learningRate,
-    			newWeights, newBiases);
-    }
-    
+        NeuralNetwork copy = new NeuralNetwork(weightLayers, learningRate, copyParameters());
+        copy.listener = listener;
+        copy.optimizer = (optimizer != null) ? optimizer.copy() : null;
+        return copy;
+    }
+
+    /**
+     * Take an immutable snapshot of the current parameters of this network,
+     * which can be evaluated by many threads at the same time.
+     *
+     * @return a snapshot of this network.
+     */
+    public NetworkSnapshot snapshot() {
+        return new NetworkSnapshot(weightLayers, learningRate, copyParameters());
+    }
+
+    /**
+     * Set the listener that receives measurements of the evaluation and training
+     * of this network. Copies of the network share the listener.
+     *
+     * @param listener the listener, or {@code null} to stop measuring.
+     */
+    public void setListener(NetworkListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the listener that receives measurements of this network.
+     *
+     * @return the listener, or {@code null} if there is none.
+     */
+    public NetworkListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Set the optimizer that updates the weights and biases when training.
+     * Without an optimizer, every step is a gradient descent step with the learning
+     * rate of the network, and {@link #train(double[], double[])} updates the weights
+     * of each layer while the error is propagated back.
+     *
+     * @param optimizer the optimizer, or {@code null} to use gradient descent.
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Returns the optimizer that updates the weights and biases when training.
+     *
+     * @return the optimizer, or {@code null} if there is none.
+     */
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Set the buffers used to train this network. By default they are created on the
+     * first training step, keep the outputs of every layer, and are replaced by larger ones
+     * when a batch does not fit. A replacement keeps the checkpoint interval of the workspace.
+     *
+     * <p>With a checkpoint interval greater than one, {@link #train(double[], double[])} trains
+     * the sample as a batch of one sample for {@link #train(double[][], double[][], int)}.
+     *
+     * @param workspace the workspace, or {@code null} to create a new one when needed.
+     * @throws IllegalArgumentException if the workspace was created for a network with other layers.
+     */
+    public void setTrainingWorkspace(TrainingWorkspace workspace) {
+        if (workspace != null && !workspace.fits(this)) {
+            throw new IllegalArgumentException("The workspace does not fit the layers " + Arrays.toString(layers));
+        }
+        this.workspace = workspace;
+    }
+
+    /**
+     * Returns the number of nodes in each layer.
+     *
+     * @return a copy of the number of nodes in each layer.
+     */
+    public int[] getLayers() {
+        return layers.clone();
+    }
+
+    /**
+     * Returns the layer that connects the nodes of layer {@code index} to those of layer {@code index + 1}.
+     *
+     * @param index the index of the layer, from 0 to {@code getLayers().length - 2}.
+     * @return the layer.
+     */
+    public Layer getLayer(int index) {
+        return weightLayers[index];
+    }
+
+    /**
+     * Returns the activation function of the first layer after the input layer.
+     * It is the activation function of every layer of networks built with a single one.
+     *
+     * @return the activation function.
+     * @see #getActivationFunctions()
+     */
+    public ActivationFunction getActivationFunction() {
+        return weightLayers[0].getActivationFunction();
+    }
+
+    /**
+     * Returns the activation function of each layer but the input layer.
+     *
+     * @return the activation functions.
+     */
+    public ActivationFunction[] getActivationFunctions() {
+        ActivationFunction[] functions = new ActivationFunction[weightLayers.length];
+        for (int i = 0; i < weightLayers.length; i++) {
+            functions[i] = weightLayers[i].getActivationFunction();
+        }
+        return functions;
+    }
+
+    /**
+     * Returns the weights and biases of every layer, in the layout described in the class documentation.
+     *
+     * @return a copy of the weights and biases.
+     */
+    public double[] getParameters() {
+        return copyParameters();
+    }
+
+    /**
+     * Returns the learning rate.
+     *
+     * @return the learning rate.
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
     /**
      * Calculate the output values of an input.
      *
@@ -127,69 +385,500 @@ public class NeuralNetwork {
      * @return the output values.
      */
     public double[] evaluate(double[] input) {
-        Matrix result = Matrix.getColumnMatrix(input);
+        double[] output = new double[layers[layers.length - 1]];
+        evaluate(input, output);
+        return output;
+    }
+
+    /**
+     * Calculate the output values of an input, writing them into {@code output}.
+     * This method does not allocate, so it is the one to use in hot loops. It reuses
+     * buffers of the network, so it must not be called from several threads at once.
+     *
+     * @param input the input values.
+     * @param output the array where the output values are written.
+     * @throws IllegalArgumentException if the length of {@code input} or
+     *         {@code output} does not match the size of the input or output layer.
+     */
+    public void evaluate(double[] input, double[] output) {
+        if (input.length != layers[0] || output.length != layers[layers.length - 1]) {
+            throw new IllegalArgumentException("Expected " + layers[0] + " inputs and " + layers[layers.length - 1]
+                    + " outputs, got " + input.length + " and " + output.length);
+        }
+
+        final NetworkListener l = listener;
+        final long start = (l != null) ? System.nanoTime() : 0;
+        long layerStart = start;
+
+        if (activations == null) {
+            activations = createActivations();
+        }
 
+        double[] in = input;
         for (int i = 0; i < layers.length - 1; i++) {
-            result = Matrix.multiply(weights[i], result);
-            result.add(biases[i]);
-            result.map(this.activationFunction.getFunction());
+            double[] out = (i == layers.length - 2) ? output : activations[i + 1];
+            forward(i, in, out);
+            in = out;
+
+            if (l != null) {
+                long now = System.nanoTime();
+                l.layerEvaluated(i, now - layerStart);
+                layerStart = now;
+            }
+        }
+
+        if (l != null) {
+            l.evaluated(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Calculate the output values of a batch of inputs.
+     * The results are identical to evaluating each input on its own.
+     *
+     * @param inputs the input values of each sample.
+     * @return the output values of each sample.
+     */
+    public double[][] evaluate(double[][] inputs) {
+        final int outputSize = layers[layers.length - 1];
+        double[] flat = new double[inputs.length * outputSize];
+        evaluate(inputs, flat);
+
+        double[][] outputs = new double[inputs.length][outputSize];
+        for (int n = 0; n < inputs.length; n++) {
+            System.arraycopy(flat, n * outputSize, outputs[n], 0, outputSize);
+        }
+        return outputs;
+    }
+
+    /**
+     * Calculate the output values of a batch of inputs, writing them one sample after
+     * another into {@code output}. The samples go through each layer in blocks, as
+     * matrix-matrix products, and the results are identical to evaluating each input
+     * on its own.
+     *
+     * @param inputs the input values of each sample.
+     * @param output the array where the output values are written, with room for
+     *               the outputs of every sample.
+     * @throws IllegalArgumentException if an input or {@code output} has the wrong size.
+     */
+    public void evaluate(double[][] inputs, double[] output) {
+        checkBatchOutput(inputs, output);
+
+        if (batchActivations == null) {
+            batchActivations = createBatchActivations();
+        }
+        evaluateBlocks(inputs, 0, inputs.length, output, batchActivations);
+    }
+
+    /**
+     * Calculate the output values of a batch of inputs like {@link #evaluate(double[][], double[])},
+     * splitting the batch among the threads of an executor.
+     *
+     * @param inputs the input values of each sample.
+     * @param output the array where the output values are written, with room for
+     *               the outputs of every sample.
+     * @param executor the executor.
+     * @throws IllegalArgumentException if an input or {@code output} has the wrong size.
+     */
+    public void evaluate(double[][] inputs, double[] output, ExecutorService executor) {
+        checkBatchOutput(inputs, output);
+
+        final int tasks = Math.min(Runtime.getRuntime().availableProcessors(),
+                (inputs.length + EVALUATION_BLOCK - 1) / EVALUATION_BLOCK);
+        if (tasks <= 1) {
+            evaluate(inputs, output);
+            return;
         }
 
-        return result.toArray();
+        // Whole blocks per task, so the work is split at the same boundaries as the serial path
+        final int blocks = (inputs.length + EVALUATION_BLOCK - 1) / EVALUATION_BLOCK;
+        final int chunk = ((blocks + tasks - 1) / tasks) * EVALUATION_BLOCK;
+
+        List<Callable<Void>> callables = new ArrayList<>(tasks);
+        for (int from = 0; from < inputs.length; from += chunk) {
+            final int start = from;
+            final int end = Math.min(inputs.length, from + chunk);
+            callables.add(() -> {
+                evaluateBlocks(inputs, start, end, output, createBatchActivations());
+                return null;
+            });
+        }
+        Tasks.invokeAll(executor, callables);
     }
 
     /**
-     * Train the network using backpropagation.
+     * Train the network using backpropagation. If the network has an optimizer, a layer
+     * that is not dense or an activation function that is not element-wise, the sample is
+     * a batch of one sample for {@link #train(double[][], double[][], int)}. The buffers of
+     * the training workspace are reused, so a step allocates nothing, and its checkpoint
+     * interval does not change the update.
      *
      * @param inputArray input values.
      * @param targetArray target output values.
+     * @return the loss {@code (target - output)^2 / 2} of the sample before the update.
      * @see <a href="https://en.wikipedia.org/wiki/Backpropagation" target="_top">Backpropagation in Wikipedia</a>
      * @see <a href="https://www.youtube.com/watch?v=Ilg3gGewQ5U" target="_top">3blue1brown's video about backpropagation</a>
      */
-    public void train(double[] inputArray, double[] targetArray) {
-        Matrix[] layerOutput = new Matrix[layers.length];
-        layerOutput[0] = Matrix.getColumnMatrix(inputArray);
+    public double train(double[] inputArray, double[] targetArray) {
+        if (optimizer != null || !dense || !elementWise) {
+            return train(new double[][] {inputArray}, new double[][] {targetArray}, 1);
+        }
 
+        final NetworkListener l = listener;
+        final long start = (l != null) ? System.nanoTime() : 0;
+        final TrainingWorkspace ws = getWorkspace(1);
+
+        if (inputArray.length != layers[0]) {
+            throw new IllegalArgumentException("Expected " + layers[0] + " inputs, got " + inputArray.length);
+        }
+        if (targetArray.length != layers[layers.length - 1]) {
+            throw new IllegalArgumentException("Expected " + layers[layers.length - 1] + " targets, got " + targetArray.length);
+        }
+        System.arraycopy(inputArray, 0, ws.getActivations(0), 0, layers[0]);
         for (int i = 0; i < layers.length - 1; i++) {
-            layerOutput[i + 1] = Matrix.multiply(weights[i], layerOutput[i]);
-            layerOutput[i + 1].add(biases[i]);
-            layerOutput[i + 1].map(activationFunction.getFunction());
+            forward(i, ws.getActivations(i), ws.getActivations(i + 1));
         }
 
-        Matrix target = Matrix.getColumnMatrix(targetArray);
-        Matrix[] error = new Matrix[layers.length];
-        error[layers.length - 1] = Matrix.subtract(target, layerOutput[layers.length - 1]);
+        final int last = layers.length - 1;
+        double[] output = ws.getActivations(last);
+        double[] error = ws.getDeltas(last);
+        double loss = 0;
+        for (int j = 0; j < layers[last]; j++) {
+            error[j] = targetArray[j] - output[j];
+            loss += error[j] * error[j];
+        }
 
         for (int i = layers.length - 2; i >= 0; i--) {
-            Matrix gradients = Matrix.map(layerOutput[i + 1], activationFunction.getDerivative());
-            gradients.multiply(error[i + 1]);
-            gradients.multiply(learningRate);
+            final int rows = layers[i + 1];
+            final int cols = layers[i];
+            final int weightOffset = base + offsets[i];
+            final int biasOffset = weightOffset + rows * cols;
+            // The layers below are not updated yet, so a segment is computed again as it was
+            restoreSegment(i, ws, 1);
+            final double[] in = ws.getActivations(i);
+            final double[] out = ws.getActivations(i + 1);
+            final ActivationFunction activationFunction = weightLayers[i].getActivationFunction();
+
+            // The error of the previous layer is propagated through the updated weights
+            final double[] previousError = (i > 0) ? ws.getDeltas(i) : null;
+            if (previousError != null) {
+                Arrays.fill(previousError, 0, cols, 0);
+            }
 
-            Matrix pt = layerOutput[i].transpose();
-            Matrix delta = Matrix.multiply(gradients, pt);
+            for (int j = 0; j < rows; j++) {
+                double gradient = activationFunction.derivative(out[j]) * error[j] * learningRate;
+                int row = weightOffset + j * cols;
 
-            weights[i].add(delta);
-            biases[i].add(gradients);
+                for (int k = 0; k < cols; k++) {
+                    parameters[row + k] += gradient * in[k];
+                }
+                parameters[biasOffset + j] += gradient;
 
-            Matrix t = weights[i].transpose();
-            error[i] = Matrix.multiply(t, error[i + 1]);
+                if (previousError != null) {
+                    for (int k = 0; k < cols; k++) {
+                        previousError[k] += parameters[row + k] * error[j];
+                    }
+                }
+            }
+
+            error = previousError;
+        }
+
+        if (l != null) {
+            l.trained(System.nanoTime() - start, 1, loss / 2);
         }
+        return loss / 2;
     }
-    
+
     /**
-     * Mutate the network weights and biases using the default mutation function.
-     * 
-     * @param rate the mutation rate.
+     * Train the network using mini-batch gradient descent.
+     *
+     * <p>The samples are taken in order, in consecutive batches of {@code batchSize}
+     * samples, and the last batch may be smaller. For each batch, the gradients of every
+     * sample are computed against the same weights and the weights are updated once
+     * with their mean, scaled by the learning rate, or by the optimizer if there is one.
+     * Shuffle the samples between epochs if needed.
+     *
+     * @param inputs input values of each sample.
+     * @param targets target output values of each sample.
+     * @param batchSize the number of samples of each batch.
+     * @return the loss {@code (target - output)^2 / 2} summed over the samples, each one
+     *         computed in the forward pass of its batch, before the batch updates the weights.
+     * @throws IllegalArgumentException if the number of inputs and targets differ,
+     *         or if {@code batchSize} is not positive.
      */
-    public void mutate(double rate) {
-    	final Function<Double, Double> mutation = value -> {
-            if (Math.random() < rate) {
-                return value + randomGaussian();
+    public double train(double[][] inputs, double[][] targets, int batchSize) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs and " + targets.length + " targets");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+
+        TrainingWorkspace ws = getWorkspace(Math.min(batchSize, inputs.length));
+
+        double total = 0;
+        for (int from = 0; from < inputs.length; from += batchSize) {
+            final NetworkListener l = listener;
+            final long start = (l != null) ? System.nanoTime() : 0;
+            int to = Math.min(inputs.length, from + batchSize);
+
+            ws.clearGradients();
+            double loss = computeGradients(inputs, targets, from, to, ws);
+            applyGradients(ws.getGradients(), to - from);
+
+            total += loss;
+
+            if (l != null) {
+                l.trained(System.nanoTime() - start, to - from, loss);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Accumulate into the workspace the gradients of the loss {@code (target - output)^2 / 2}
+     * with respect to every parameter, summed over the samples {@code [from, to)}.
+     * The parameters of the network are only read.
+     *
+     * @param inputs input values of each sample.
+     * @param targets target output values of each sample.
+     * @param from the index of the first sample, inclusive.
+     * @param to the index of the last sample, exclusive.
+     * @param ws the workspace, with room for at least {@code to - from} samples.
+     * @return the loss summed over the samples.
+     */
+    double computeGradients(double[][] inputs, double[][] targets, int from, int to, TrainingWorkspace ws) {
+        final int batch = to - from;
+        final int last = layers.length - 1;
+
+        double[] in = ws.getActivations(0);
+        for (int b = 0; b < batch; b++) {
+            double[] input = inputs[from + b];
+            if (input.length != layers[0]) {
+                throw new IllegalArgumentException("Expected " + layers[0] + " inputs, got " + input.length);
+            }
+            System.arraycopy(input, 0, in, b * layers[0], layers[0]);
+        }
+
+        for (int i = 0; i < last; i++) {
+            forward(i, ws.getActivations(i), ws.getActivations(i + 1), batch);
+        }
+
+        double[] output = ws.getActivations(last);
+        double[] delta = ws.getDeltas(last);
+        double loss = 0;
+        final ActivationFunction outputFunction = weightLayers[last - 1].getActivationFunction();
+        if (outputFunction.isElementWise()) {
+            outputFunction.derivative(output, delta, 0, batch * layers[last]);
+        }
+        for (int b = 0; b < batch; b++) {
+            double[] target = targets[from + b];
+            if (target.length != layers[last]) {
+                throw new IllegalArgumentException("Expected " + layers[last] + " targets, got " + target.length);
+            }
+            int o = b * layers[last];
+            for (int j = 0; j < target.length; j++) {
+                double error = output[o + j] - target[j];
+                if (outputFunction.isElementWise()) {
+                    delta[o + j] *= error;
+                } else {
+                    delta[o + j] = error;
+                }
+                loss += error * error;
+            }
+            if (!outputFunction.isElementWise()) {
+                outputFunction.backpropagate(output, delta, o, o + layers[last]);
+            }
+        }
+
+        for (int i = last - 1; i >= 0; i--) {
+            restoreSegment(i, ws, batch);
+            double[] layerInput = ws.getActivations(i);
+            weightLayers[i].accumulateGradients(ws.getDeltas(i + 1), layerInput, ws.getGradients(), offsets[i], batch);
+
+            if (i > 0) {
+                double[] previousDelta = ws.getDeltas(i);
+                int size = batch * layers[i];
+                weightLayers[i].backpropagate(parameters, base + offsets[i], ws.getDeltas(i + 1), previousDelta, batch);
+
+                final ActivationFunction activationFunction = weightLayers[i - 1].getActivationFunction();
+                if (activationFunction.isElementWise()) {
+                    // The outputs of this layer are no longer needed, so they hold the derivative
+                    activationFunction.derivative(layerInput, layerInput, 0, size);
+                    for (int n = 0; n < size; n++) {
+                        previousDelta[n] *= layerInput[n];
+                    }
+                } else {
+                    for (int b = 0; b < batch; b++) {
+                        activationFunction.backpropagate(layerInput, previousDelta, b * layers[i], (b + 1) * layers[i]);
+                    }
+                }
+            }
+        }
+
+        return loss / 2;
+    }
+
+    /**
+     * Update the parameters from the gradients summed over some samples, with the optimizer
+     * if there is one, or else with a gradient descent step on the mean gradient.
+     *
+     * @param gradients the gradients, with the same layout as the parameters.
+     * @param samples the number of samples whose gradients were summed.
+     */
+    void applyGradients(double[] gradients, int samples) {
+        final int count = getParameterCount();
+        if (optimizer != null) {
+            optimizer.step(parameters, base, gradients, count, 1.0 / samples, learningRate);
+            return;
+        }
+
+        final double scale = learningRate / samples;
+        for (int i = 0; i < count; i++) {
+            parameters[base + i] -= scale * gradients[i];
+        }
+    }
+
+    /**
+     * Returns the training workspace, creating it if there is none
+     * or if the current one is too small.
+     *
+     * @param batchSize the number of samples of a batch.
+     * @return a workspace with room for at least {@code batchSize} samples.
+     */
+    TrainingWorkspace getWorkspace(int batchSize) {
+        if (workspace == null || workspace.getBatchSize() < batchSize) {
+            int interval = (workspace != null) ? workspace.getCheckpointInterval() : 1;
+            workspace = new TrainingWorkspace(layers, getParameterCount(), batchSize, interval);
+        }
+        return workspace;
+    }
+
+    /**
+     * Returns the number of nodes in each layer.
+     *
+     * @return the number of nodes in each layer.
+     */
+    int[] getLayerSizes() {
+        return layers;
+    }
+
+    /**
+     * Returns the layers between each layer of nodes and the next.
+     *
+     * @return the layers.
+     */
+    Layer[] getLayerArray() {
+        return weightLayers;
+    }
+
+    /**
+     * Returns the offset of the parameters of each layer from {@link #getParameterOffset()}.
+     *
+     * @return the offset of each layer, with the number of parameters as the last element.
+     */
+    int[] getLayerOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns whether the parameters of another network have the same meaning as those
+     * of this network, so that they can be copied, crossed or compared.
+     *
+     * @param other the other network.
+     * @return {@code true} if every layer of both networks has the same structure.
+     */
+    boolean hasSameStructure(NeuralNetwork other) {
+        return hasSameStructure(weightLayers, other.weightLayers);
+    }
+
+    /**
+     * Returns whether two lists of layers have the same structure.
+     *
+     * @param first the first layers.
+     * @param second the second layers.
+     * @return {@code true} if both have as many layers and each pair has the same structure.
+     */
+    static boolean hasSameStructure(Layer[] first, Layer[] second) {
+        if (first.length != second.length) {
+            return false;
+        }
+        for (int i = 0; i < first.length; i++) {
+            if (!first[i].hasSameStructure(second[i])) {
+                return false;
             }
-            return value;
-        };
+        }
+        return true;
+    }
+
+    /**
+     * Returns the array that holds the weights and biases of every layer. They start
+     * at {@link #getParameterOffset()} and take {@link #getParameterCount()} elements.
+     *
+     * @return the parameter array.
+     */
+    double[] getParameterArray() {
+        return parameters;
+    }
 
-    	mutate(mutation);
+    /**
+     * Returns the index of the first parameter in the parameter array.
+     *
+     * @return the index of the first parameter.
+     */
+    int getParameterOffset() {
+        return base;
+    }
+
+    /**
+     * Returns the number of weights and biases of the network.
+     *
+     * @return the number of parameters.
+     */
+    int getParameterCount() {
+        return offsets[layers.length - 1];
+    }
+
+    /**
+     * Move the parameters of this network to a slice of another array.
+     * The values are not copied.
+     *
+     * @param parameters the array that holds the parameters.
+     * @param base the index of the first parameter in {@code parameters}.
+     */
+    void setParameterArray(double[] parameters, int base) {
+        this.parameters = parameters;
+        this.base = base;
+    }
+
+    /**
+     * Returns the Euclidean distance between the weights and biases of this network
+     * and those of another network with the same layers.
+     *
+     * @param other the other network.
+     * @return the distance between the parameters of both networks.
+     * @throws IllegalArgumentException if the layers of the networks do not match.
+     */
+    public double distance(NeuralNetwork other) {
+        if (!hasSameStructure(other)) {
+            throw new IllegalArgumentException("Expected a network with layers " + Arrays.toString(weightLayers)
+                    + ", got " + Arrays.toString(other.weightLayers));
+        }
+        return Math.sqrt(Kernels.squaredDistance(parameters, base, other.parameters, other.base, getParameterCount()));
+    }
+
+    /**
+     * Mutate the network weights and biases using the default mutation function,
+     * which adds a normally distributed value to each parameter with probability {@code rate}.
+     * It uses a random number generator local to the calling thread, so several
+     * networks can be mutated concurrently without contention.
+     *
+     * @param rate the mutation rate.
+     */
+    public void mutate(double rate) {
+        mutate(parameters, base, base + getParameterCount(), rate, ThreadLocalRandom.current());
     }
 
     /**
@@ -198,12 +887,257 @@ public class NeuralNetwork {
      * @param mutation the function that mutates each value.
      */
     public void mutate(Function<Double, Double> mutation) {
-        for (Matrix weight : weights) {
-            weight.map(mutation);
+        final int end = base + getParameterCount();
+        for (int i = base; i < end; i++) {
+            parameters[i] = mutation.apply(parameters[i]);
+        }
+    }
+
+    /**
+     * Evaluate the samples {@code [from, to)} in blocks of {@link #EVALUATION_BLOCK} samples.
+     *
+     * @param inputs the input values of each sample.
+     * @param from the index of the first sample, inclusive.
+     * @param to the index of the last sample, exclusive.
+     * @param output the array where the output values of every sample are written.
+     * @param buffers the buffers of every layer, from {@link #createBatchActivations()}.
+     */
+    private void evaluateBlocks(double[][] inputs, int from, int to, double[] output, double[][] buffers) {
+        final int last = layers.length - 1;
+
+        for (int start = from; start < to; start += EVALUATION_BLOCK) {
+            final int batch = Math.min(EVALUATION_BLOCK, to - start);
+
+            for (int b = 0; b < batch; b++) {
+                double[] input = inputs[start + b];
+                if (input.length != layers[0]) {
+                    throw new IllegalArgumentException("Expected " + layers[0] + " inputs, got " + input.length);
+                }
+                System.arraycopy(input, 0, buffers[0], b * layers[0], layers[0]);
+            }
+
+            for (int i = 0; i < last; i++) {
+                final int rows = layers[i + 1];
+                final ActivationFunction activationFunction = weightLayers[i].getActivationFunction();
+                weightLayers[i].forward(parameters, base + offsets[i], buffers[i], buffers[i + 1], batch);
+                for (int b = 0; b < batch; b++) {
+                    activationFunction.apply(buffers[i + 1], buffers[i + 1], b * rows, (b + 1) * rows);
+                }
+            }
+
+            System.arraycopy(buffers[last], 0, output, start * layers[last], batch * layers[last]);
+        }
+    }
+
+    private double[][] createBatchActivations() {
+        double[][] buffers = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            buffers[i] = new double[EVALUATION_BLOCK * layers[i]];
+        }
+        return buffers;
+    }
+
+    private void checkBatchOutput(double[][] inputs, double[] output) {
+        if (output.length < inputs.length * layers[layers.length - 1]) {
+            throw new IllegalArgumentException("The output array has room for " + output.length + " values, "
+                    + inputs.length * layers[layers.length - 1] + " are needed");
+        }
+    }
+
+    /**
+     * Compute the output of a layer, {@code out = f(W * in + b)} for a dense layer.
+     *
+     * @param layer the index of the weight layer.
+     * @param in the values of the nodes of layer {@code layer}.
+     * @param out the array where the values of the nodes of layer {@code layer + 1} are written.
+     */
+    private void forward(int layer, double[] in, double[] out) {
+        weightLayers[layer].forward(parameters, base + offsets[layer], in, out, 1);
+        weightLayers[layer].getActivationFunction().apply(out, out, 0, layers[layer + 1]);
+    }
+
+    /**
+     * When the backward pass reaches layer {@code layer} and enters a segment whose outputs
+     * were overwritten by the following segments, compute them again from its checkpoint.
+     */
+    private void restoreSegment(int layer, TrainingWorkspace ws, int batch) {
+        final int interval = ws.getCheckpointInterval();
+        if (interval > 1 && (layer + 1) % interval == 0 && layer + 1 < layers.length - 1) {
+            for (int j = layer + 1 - interval; j < layer; j++) {
+                forward(j, ws.getActivations(j), ws.getActivations(j + 1), batch);
+            }
+        }
+    }
+
+    /**
+     * Compute the outputs of a layer for a batch of samples.
+     */
+    private void forward(int layer, double[] in, double[] out, int batch) {
+        weightLayers[layer].forward(parameters, base + offsets[layer], in, out, batch);
+        ActivationFunction activationFunction = weightLayers[layer].getActivationFunction();
+        for (int b = 0; b < batch; b++) {
+            activationFunction.apply(out, out, b * layers[layer + 1], (b + 1) * layers[layer + 1]);
+        }
+    }
+
+    /**
+     * Add a normally distributed value to each of the values {@code [from, to)} with
+     * probability {@code rate}. Instead of drawing a random number for every value, the
+     * gap to the next mutated value is drawn from a geometric distribution, so the cost
+     * is proportional to the number of mutated values.
+     *
+     * @param values the values.
+     * @param from the index of the first value, inclusive.
+     * @param to the index of the last value, exclusive.
+     * @param rate the probability of mutating each value.
+     * @param random the random number generator.
+     */
+    static void mutate(double[] values, int from, int to, double rate, Random random) {
+        if (rate >= 1) {
+            for (int i = from; i < to; i++) {
+                values[i] += random.nextGaussian();
+            }
+            return;
+        }
+        if (!(rate > 0)) {
+            return;
+        }
+
+        final double logComplement = Math.log1p(-rate);
+        double i = from + Math.floor(Math.log(1 - random.nextDouble()) / logComplement);
+        while (i < to) {
+            values[(int) i] += random.nextGaussian();
+            i += 1 + Math.floor(Math.log(1 - random.nextDouble()) / logComplement);
+        }
+    }
+
+    /**
+     * Compute the offset of the weights of each layer in the parameter array.
+     *
+     * @param layers number of nodes in each layer.
+     * @return the offset of each layer, with the total number of parameters as the last element.
+     */
+    static int[] computeOffsets(int[] layers) {
+        int[] offsets = new int[layers.length];
+        for (int i = 0; i < layers.length - 1; i++) {
+            offsets[i + 1] = offsets[i] + layers[i + 1] * layers[i] + layers[i + 1];
+        }
+        return offsets;
+    }
+
+    /**
+     * Compute the offset of the parameters of each layer in the parameter array.
+     *
+     * @param layers the layers.
+     * @return the offset of each layer, with the total number of parameters as the last element.
+     */
+    static int[] computeOffsets(Layer[] layers) {
+        int[] offsets = new int[layers.length + 1];
+        for (int i = 0; i < layers.length; i++) {
+            offsets[i + 1] = offsets[i] + layers[i].getParameterCount();
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the number of nodes in each layer of a list of layers.
+     *
+     * @param layers the layers.
+     * @return the number of nodes in each layer, the input layer included.
+     * @throws IllegalArgumentException if there are no layers or the sizes of consecutive layers do not match.
+     */
+    static int[] layerSizes(Layer[] layers) {
+        if (layers.length == 0) {
+            throw new IllegalArgumentException("A network needs at least one layer");
+        }
+
+        int[] sizes = new int[layers.length + 1];
+        sizes[0] = layers[0].getInputSize();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i].getInputSize() != sizes[i]) {
+                throw new IllegalArgumentException("Layer " + i + " has " + layers[i].getInputSize()
+                        + " inputs, but the previous layer has " + sizes[i] + " outputs");
+            }
+            sizes[i + 1] = layers[i].getOutputSize();
+        }
+        return sizes;
+    }
+
+    /**
+     * Create dense layers with the same activation function.
+     *
+     * @param layers number of nodes in each layer.
+     * @param activationFunction the activation function.
+     * @return the layers.
+     */
+    static Layer[] denseLayers(int[] layers, ActivationFunction activationFunction) {
+        ActivationFunction[] functions = new ActivationFunction[layers.length - 1];
+        Arrays.fill(functions, activationFunction);
+        return denseLayers(layers, functions);
+    }
+
+    private static Layer[] denseLayers(int[] layers, ActivationFunction[] activationFunctions) {
+        if (activationFunctions.length != layers.length - 1) {
+            throw new IllegalArgumentException("Expected " + (layers.length - 1) + " activation functions, got "
+                    + activationFunctions.length);
         }
 
-        for (Matrix bias : biases) {
-            bias.map(mutation);
+        Layer[] denseLayers = new Layer[layers.length - 1];
+        for (int i = 0; i < denseLayers.length; i++) {
+            denseLayers[i] = new DenseLayer(layers[i], layers[i + 1], activationFunctions[i]);
+        }
+        return denseLayers;
+    }
+
+    private double[] copyParameters() {
+        return Arrays.copyOfRange(parameters, base, base + getParameterCount());
+    }
+
+    private double[][] createActivations() {
+        double[][] buffers = new double[layers.length][];
+        for (int i = 1; i < layers.length; i++) {
+            buffers[i] = new double[layers[i]];
+        }
+        return buffers;
+    }
+
+    private static double[] flatten(int[] layers, Matrix[] weights, Matrix[] biases) {
+        int[] offsets = computeOffsets(layers);
+        double[] parameters = new double[offsets[layers.length - 1]];
+
+        for (int i = 0; i < layers.length - 1; i++) {
+            double[] w = weights[i].toArray();
+            double[] b = biases[i].toArray();
+            System.arraycopy(w, 0, parameters, offsets[i], w.length);
+            System.arraycopy(b, 0, parameters, offsets[i] + w.length, b.length);
+        }
+
+        return parameters;
+    }
+
+    private static double[] randomParameters(Layer[] layers, Random random) {
+        double[] parameters = new double[computeOffsets(layers)[layers.length]];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = random.nextDouble() * 2 - 1;
+        }
+        return parameters;
+    }
+
+    private static Matrix[] randomWeights(int[] layers) {
+        Matrix[] weights = new Matrix[layers.length - 1];
+        for (int i = 0; i < layers.length - 1; i++) {
+            weights[i] = new Matrix(layers[i + 1], layers[i]);
+            weights[i].randomize();
+        }
+        return weights;
+    }
+
+    private static Matrix[] randomBiases(int[] layers) {
+        Matrix[] biases = new Matrix[layers.length - 1];
+        for (int i = 0; i < layers.length - 1; i++) {
+            biases[i] = new Matrix(layers[i + 1], 1);
+            biases[i].randomize();
         }
+        return biases;
     }
 }
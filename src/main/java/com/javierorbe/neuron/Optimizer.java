@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+/**
+ * Updates the weights and biases of a network from their gradients.
+ *
+ * <p>The state of an optimizer, like the velocity or the moments of every parameter,
+ * is kept in {@code double[]} buffers with the same layout as the parameters of the
+ * network, and each step updates the state and the parameters in a single pass.
+ * An optimizer keeps the state of one network, so each network needs its own
+ * instance; {@link NeuralNetwork#copy()} copies the optimizer with its state.
+ *
+ * @author Javier Orbe
+ * @see NeuralNetwork#setOptimizer(Optimizer)
+ */
+public abstract class Optimizer implements Cloneable {
+
+    private LearningRateSchedule schedule = LearningRateSchedule.constant();
+    private double maxGradientNorm = Double.POSITIVE_INFINITY;
+
+    private long step;
+
+    /**
+     * State of every parameter, created on the first step.
+     */
+    double[] first;
+    double[] second;
+
+    /**
+     * Returns an optimizer that applies plain gradient descent: {@code p -= lr * g}.
+     *
+     * @return a gradient descent optimizer.
+     */
+    public static Optimizer sgd() {
+        return new Sgd();
+    }
+
+    /**
+     * Returns an optimizer that applies gradient descent with momentum:
+     * {@code v = momentum * v + g; p -= lr * v}.
+     *
+     * @param momentum the fraction of the velocity kept every step, usually 0.9.
+     * @return a momentum optimizer.
+     * @throws IllegalArgumentException if {@code momentum} is not in {@code [0, 1)}.
+     */
+    public static Optimizer momentum(double momentum) {
+        checkDecay("momentum", momentum);
+        return new Momentum(momentum);
+    }
+
+    /**
+     * Returns an optimizer that divides the gradient by a moving average of its magnitude:
+     * {@code s = decay * s + (1 - decay) * g^2; p -= lr * g / (sqrt(s) + epsilon)}.
+     *
+     * @param decay the decay of the moving average, usually 0.9.
+     * @param epsilon the value added to the denominator, usually 1e-8.
+     * @return an RMSProp optimizer.
+     * @throws IllegalArgumentException if {@code decay} is not in {@code [0, 1)}.
+     * @see <a href="https://www.cs.toronto.edu/~tijmen/csc321/slides/lecture_slides_lec6.pdf" target="_top">RMSProp</a>
+     */
+    public static Optimizer rmsProp(double decay, double epsilon) {
+        checkDecay("decay", decay);
+        return new RmsProp(decay, epsilon);
+    }
+
+    /**
+     * Returns an optimizer that keeps moving averages of the gradient and of its magnitude,
+     * corrected for their initial bias.
+     *
+     * @param beta1 the decay of the average of the gradient, usually 0.9.
+     * @param beta2 the decay of the average of the squared gradient, usually 0.999.
+     * @param epsilon the value added to the denominator, usually 1e-8.
+     * @return an Adam optimizer.
+     * @throws IllegalArgumentException if {@code beta1} or {@code beta2} is not in {@code [0, 1)}.
+     * @see <a href="https://arxiv.org/abs/1412.6980" target="_top">Adam: A Method for Stochastic Optimization</a>
+     */
+    public static Optimizer adam(double beta1, double beta2, double epsilon) {
+        checkDecay("beta1", beta1);
+        checkDecay("beta2", beta2);
+        return new Adam(beta1, beta2, epsilon);
+    }
+
+    /**
+     * Returns an Adam optimizer with the usual parameters.
+     *
+     * @return an Adam optimizer.
+     * @see #adam(double, double, double)
+     */
+    public static Optimizer adam() {
+        return adam(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * Set the schedule of the learning rate. By default, the learning rate of the network is used.
+     *
+     * @param schedule the schedule.
+     */
+    public void setSchedule(LearningRateSchedule schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * Rescale the gradients of a step when their Euclidean norm is bigger than {@code maxNorm}.
+     * By default, gradients are not clipped.
+     *
+     * @param maxNorm the maximum norm of the gradients.
+     * @throws IllegalArgumentException if {@code maxNorm} is not positive.
+     */
+    public void setGradientClipping(double maxNorm) {
+        if (!(maxNorm > 0)) {
+            throw new IllegalArgumentException("The maximum gradient norm must be positive: " + maxNorm);
+        }
+        this.maxGradientNorm = maxNorm;
+    }
+
+    /**
+     * Returns the number of steps taken.
+     *
+     * @return the number of steps taken.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Forget the state of every parameter and the number of steps taken.
+     */
+    public void reset() {
+        step = 0;
+        first = null;
+        second = null;
+    }
+
+    /**
+     * Create a copy of this optimizer, with its configuration and state.
+     *
+     * @return a copy of this optimizer.
+     */
+    public Optimizer copy() {
+        try {
+            Optimizer copy = (Optimizer) super.clone();
+            copy.first = (first != null) ? first.clone() : null;
+            copy.second = (second != null) ? second.clone() : null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Take a step.
+     *
+     * @param parameters the parameter array.
+     * @param offset the index of the first parameter in {@code parameters}.
+     * @param gradients the gradients, starting at index 0.
+     * @param count the number of parameters.
+     * @param gradientScale the factor applied to the gradients, like {@code 1 / samples}.
+     * @param learningRate the learning rate of the network.
+     */
+    void step(double[] parameters, int offset, double[] gradients, int count, double gradientScale, double learningRate) {
+        if (maxGradientNorm != Double.POSITIVE_INFINITY) {
+            double norm = Math.sqrt(sumOfSquares(gradients, count)) * Math.abs(gradientScale);
+            if (norm > maxGradientNorm) {
+                gradientScale *= maxGradientNorm / norm;
+            }
+        }
+
+        update(parameters, offset, gradients, count, gradientScale, schedule.learningRate(learningRate, step), step + 1);
+        step++;
+    }
+
+    /**
+     * Update the state and the parameters in a single pass.
+     *
+     * @param p the parameter array.
+     * @param offset the index of the first parameter in {@code p}.
+     * @param g the gradients, starting at index 0.
+     * @param count the number of parameters.
+     * @param scale the factor applied to the gradients.
+     * @param lr the learning rate of the step.
+     * @param t the number of the step, starting at 1.
+     */
+    abstract void update(double[] p, int offset, double[] g, int count, double scale, double lr, long t);
+
+    private static double sumOfSquares(double[] values, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i] * values[i];
+        }
+        return sum;
+    }
+
+    private static void checkDecay(String name, double value) {
+        if (!(value >= 0 && value < 1)) {
+            throw new IllegalArgumentException("The " + name + " must be in [0, 1): " + value);
+        }
+    }
+
+    private static final class Sgd extends Optimizer {
+
+        @Override
+        void update(double[] p, int offset, double[] g, int count, double scale, double lr, long t) {
+            final double factor = lr * scale;
+            for (int i = 0; i < count; i++) {
+                p[offset + i] -= factor * g[i];
+            }
+        }
+    }
+
+    private static final class Momentum extends Optimizer {
+
+        private final double momentum;
+
+        Momentum(double momentum) {
+            this.momentum = momentum;
+        }
+
+        @Override
+        void update(double[] p, int offset, double[] g, int count, double scale, double lr, long t) {
+            if (first == null || first.length != count) {
+                first = new double[count];
+            }
+            final double[] v = first;
+            for (int i = 0; i < count; i++) {
+                final double velocity = momentum * v[i] + scale * g[i];
+                v[i] = velocity;
+                p[offset + i] -= lr * velocity;
+            }
+        }
+    }
+
+    private static final class RmsProp extends Optimizer {
+
+        private final double decay;
+        private final double epsilon;
+
+        RmsProp(double decay, double epsilon) {
+            this.decay = decay;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        void update(double[] p, int offset, double[] g, int count, double scale, double lr, long t) {
+            if (first == null || first.length != count) {
+                first = new double[count];
+            }
+            final double[] s = first;
+            final double keep = 1 - decay;
+            for (int i = 0; i < count; i++) {
+                final double gradient = scale * g[i];
+                final double mean = decay * s[i] + keep * gradient * gradient;
+                s[i] = mean;
+                p[offset + i] -= lr * gradient / (Math.sqrt(mean) + epsilon);
+            }
+        }
+    }
+
+    private static final class Adam extends Optimizer {
+
+        private final double beta1;
+        private final double beta2;
+        private final double epsilon;
+
+        Adam(double beta1, double beta2, double epsilon) {
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        void update(double[] p, int offset, double[] g, int count, double scale, double lr, long t) {
+            if (first == null || first.length != count) {
+                first = new double[count];
+                second = new double[count];
+            }
+            final double[] m = first;
+            final double[] v = second;
+            final double keep1 = 1 - beta1;
+            final double keep2 = 1 - beta2;
+            final double correction1 = 1 / (1 - Math.pow(beta1, t));
+            final double correction2 = 1 / (1 - Math.pow(beta2, t));
+            for (int i = 0; i < count; i++) {
+                final double gradient = scale * g[i];
+                final double mean = beta1 * m[i] + keep1 * gradient;
+                final double variance = beta2 * v[i] + keep2 * gradient * gradient;
+                m[i] = mean;
+                v[i] = variance;
+                p[offset + i] -= lr * (mean * correction1) / (Math.sqrt(variance * correction2) + epsilon);
+            }
+        }
+    }
+}
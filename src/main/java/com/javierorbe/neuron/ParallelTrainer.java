@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import com.javierorbe.neuron.metrics.NetworkListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Trains a {@link NeuralNetwork} with mini-batch gradient descent on several threads.
+ *
+ * <p>Each batch is split into shards of a fixed number of samples. Every shard
+ * computes its gradients in its own buffers against the parameters of the network,
+ * which are not modified until all the shards are done. The gradients of the shards
+ * are then added up in shard order and the network is updated once. Since the shards
+ * do not depend on the number of threads, neither do the results: training with the
+ * same data and the same seed always yields the same parameters.
+ *
+ * @author Javier Orbe
+ */
+public class ParallelTrainer {
+
+    private final NeuralNetwork network;
+    private final ExecutorService executor;
+    private final int shardSize;
+
+    private TrainingWorkspace[] workspaces = new TrainingWorkspace[0];
+    private final double[] gradients;
+
+    /**
+     * Construct a parallel trainer.
+     *
+     * @param network the network to train.
+     * @param executor the executor that runs the shards.
+     * @param shardSize the number of samples of each shard.
+     * @throws IllegalArgumentException if {@code shardSize} is not positive.
+     */
+    public ParallelTrainer(NeuralNetwork network, ExecutorService executor, int shardSize) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("The shard size must be positive: " + shardSize);
+        }
+
+        this.network = network;
+        this.executor = executor;
+        this.shardSize = shardSize;
+        this.gradients = new double[network.getParameterCount()];
+    }
+
+    /**
+     * Construct a parallel trainer that runs on the common {@link ForkJoinPool}
+     * with shards of 16 samples.
+     *
+     * @param network the network to train.
+     */
+    public ParallelTrainer(NeuralNetwork network) {
+        this(network, ForkJoinPool.commonPool(), 16);
+    }
+
+    /**
+     * Returns the network being trained.
+     *
+     * @return the network being trained.
+     */
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Train the network for one pass over the samples, taken in order.
+     *
+     * @param inputs input values of each sample.
+     * @param targets target output values of each sample.
+     * @param batchSize the number of samples of each batch.
+     * @return the loss summed over the samples, as returned by {@link NeuralNetwork#train(double[][], double[][], int)}.
+     * @throws IllegalArgumentException if the number of inputs and targets differ,
+     *         or if {@code batchSize} is not positive.
+     * @see NeuralNetwork#train(double[][], double[][], int)
+     */
+    public double train(double[][] inputs, double[][] targets, int batchSize) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs and " + targets.length + " targets");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+
+        double loss = 0;
+        for (int from = 0; from < inputs.length; from += batchSize) {
+            loss += trainBatch(inputs, targets, from, Math.min(inputs.length, from + batchSize));
+        }
+        return loss;
+    }
+
+    /**
+     * Train the network for one pass over the samples, taken in an order
+     * shuffled by the given random number generator.
+     *
+     * @param inputs input values of each sample.
+     * @param targets target output values of each sample.
+     * @param batchSize the number of samples of each batch.
+     * @param random the random number generator used to shuffle the samples.
+     * @return the loss summed over the samples.
+     * @throws IllegalArgumentException if the number of inputs and targets differ,
+     *         or if {@code batchSize} is not positive.
+     */
+    public double train(double[][] inputs, double[][] targets, int batchSize, Random random) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs and " + targets.length + " targets");
+        }
+
+        double[][] shuffledInputs = inputs.clone();
+        double[][] shuffledTargets = targets.clone();
+        for (int i = shuffledInputs.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+
+            double[] input = shuffledInputs[i];
+            shuffledInputs[i] = shuffledInputs[j];
+            shuffledInputs[j] = input;
+
+            double[] target = shuffledTargets[i];
+            shuffledTargets[i] = shuffledTargets[j];
+            shuffledTargets[j] = target;
+        }
+
+        return train(shuffledInputs, shuffledTargets, batchSize);
+    }
+
+    /**
+     * Train the network on the samples {@code [from, to)} as a single batch.
+     *
+     * @return the loss summed over the samples.
+     */
+    private double trainBatch(double[][] inputs, double[][] targets, int from, int to) {
+        final NetworkListener listener = network.getListener();
+        final long start = (listener != null) ? System.nanoTime() : 0;
+
+        final int shards = (to - from + shardSize - 1) / shardSize;
+        ensureWorkspaces(shards);
+
+        final double[] losses = new double[shards];
+        List<Callable<Void>> tasks = new ArrayList<>(shards);
+        for (int s = 0; s < shards; s++) {
+            final int shard = s;
+            final TrainingWorkspace ws = workspaces[s];
+            final int shardFrom = from + s * shardSize;
+            final int shardTo = Math.min(to, shardFrom + shardSize);
+            tasks.add(() -> {
+                ws.clearGradients();
+                losses[shard] = network.computeGradients(inputs, targets, shardFrom, shardTo, ws);
+                return null;
+            });
+        }
+        Tasks.invokeAll(executor, tasks);
+
+        // Every chunk of parameters adds the shards up in the same order
+        final int chunk = (gradients.length + shards - 1) / shards;
+        tasks.clear();
+        for (int c = 0; c < shards; c++) {
+            final int chunkFrom = c * chunk;
+            final int chunkTo = Math.min(gradients.length, chunkFrom + chunk);
+            tasks.add(() -> {
+                reduce(shards, chunkFrom, chunkTo);
+                return null;
+            });
+        }
+        Tasks.invokeAll(executor, tasks);
+
+        network.applyGradients(gradients, to - from);
+
+        double loss = 0;
+        for (double shardLoss : losses) {
+            loss += shardLoss;
+        }
+        if (listener != null) {
+            listener.trained(System.nanoTime() - start, to - from, loss);
+        }
+        return loss;
+    }
+
+    /**
+     * Add up the gradients of the shards in the range {@code [from, to)} of the parameters.
+     */
+    private void reduce(int shards, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double sum = 0;
+            for (int s = 0; s < shards; s++) {
+                sum += workspaces[s].getGradients()[i];
+            }
+            gradients[i] = sum;
+        }
+    }
+
+    private void ensureWorkspaces(int shards) {
+        if (workspaces.length < shards) {
+            TrainingWorkspace[] newWorkspaces = new TrainingWorkspace[shards];
+            System.arraycopy(workspaces, 0, newWorkspaces, 0, workspaces.length);
+            for (int s = workspaces.length; s < shards; s++) {
+                newWorkspaces[s] = new TrainingWorkspace(network.getLayerSizes(), gradients.length, shardSize);
+            }
+            workspaces = newWorkspaces;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds the parameters of a population of networks with the same structure in one
+ * {@code double[]}, with one slice per slot.
+ *
+ * <p>The arena has two buffers, used in turns: the networks of a generation are
+ * created in one buffer from parents that live in the other, and {@link #swap()}
+ * switches the buffers between generations. After two swaps a buffer is written
+ * again, so the networks created in it must not be used anymore, unless they are
+ * moved to the current buffer with {@link #relocate(NeuralNetwork, int)}.
+ *
+ * <p>Different slots can be written concurrently.
+ *
+ * @author Javier Orbe
+ */
+public class ParameterArena {
+
+    private final int[] layers;
+
+    /**
+     * Layers with the structure of the networks. Their activation functions do not matter.
+     */
+    private final Layer[] structure;
+    private final int parameterCount;
+    private final int capacity;
+
+    private final double[][] buffers = new double[2][];
+    private int current;
+
+    /**
+     * Construct an arena.
+     *
+     * @param layers number of nodes in each layer of the networks.
+     * @param capacity the number of networks of each buffer.
+     * @throws IllegalArgumentException if {@code capacity} is negative
+     *         or the parameters of every network do not fit in an array.
+     */
+    public ParameterArena(int[] layers, int capacity) {
+        this(NeuralNetwork.denseLayers(layers, ActivationFunction.LINEAR), capacity);
+    }
+
+    /**
+     * Construct an arena for networks with the same structure as a template,
+     * which may have layers that are not dense.
+     *
+     * @param template a network with the structure of the networks.
+     * @param capacity the number of networks of each buffer.
+     * @throws IllegalArgumentException if {@code capacity} is negative
+     *         or the parameters of every network do not fit in an array.
+     */
+    public ParameterArena(NeuralNetwork template, int capacity) {
+        this(template.getLayerArray(), capacity);
+    }
+
+    private ParameterArena(Layer[] structure, int capacity) {
+        this.layers = NeuralNetwork.layerSizes(structure);
+        this.structure = structure;
+        this.parameterCount = NeuralNetwork.computeOffsets(structure)[structure.length];
+        this.capacity = capacity;
+
+        if (capacity < 0 || (long) parameterCount * capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Cannot hold " + capacity + " networks of "
+                    + parameterCount + " parameters");
+        }
+        buffers[0] = new double[parameterCount * capacity];
+    }
+
+    /**
+     * Returns the number of nodes in each layer of the networks.
+     *
+     * @return a copy of the number of nodes in each layer.
+     */
+    public int[] getLayers() {
+        return layers.clone();
+    }
+
+    /**
+     * Returns whether a network has the structure of the networks of this arena.
+     *
+     * @param network the network.
+     * @return {@code true} if the network can be copied to this arena.
+     */
+    public boolean accepts(NeuralNetwork network) {
+        return NeuralNetwork.hasSameStructure(structure, network.getLayerArray());
+    }
+
+    /**
+     * Returns the number of networks of each buffer.
+     *
+     * @return the number of networks of each buffer.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Switch to the other buffer. The networks created from now on overwrite the ones
+     * created before the previous swap.
+     */
+    public void swap() {
+        current ^= 1;
+        if (buffers[current] == null) {
+            buffers[current] = new double[parameterCount * capacity];
+        }
+    }
+
+    /**
+     * Create a copy of a network in a slot of the current buffer.
+     *
+     * @param network the network.
+     * @param slot the slot.
+     * @return a network whose parameters live in the slot.
+     * @throws IllegalArgumentException if the layers of the network do not match those of the arena.
+     * @throws IndexOutOfBoundsException if the slot is out of range.
+     */
+    public NeuralNetwork copy(NeuralNetwork network, int slot) {
+        final double[] buffer = buffers[current];
+        final int base = copyToSlot(network, buffer, slot);
+
+        NeuralNetwork copy = new NeuralNetwork(network.getLayerArray(), network.getLearningRate(), buffer, base);
+        copy.setListener(network.getListener());
+        return copy;
+    }
+
+    /**
+     * Create a copy of a network in a slot of the current buffer and mutate it like
+     * {@link NeuralNetwork#mutate(double)}.
+     *
+     * @param network the network.
+     * @param slot the slot.
+     * @param rate the mutation rate.
+     * @return a network whose parameters live in the slot.
+     * @throws IllegalArgumentException if the layers of the network do not match those of the arena.
+     * @throws IndexOutOfBoundsException if the slot is out of range.
+     */
+    public NeuralNetwork mutatedCopy(NeuralNetwork network, int slot, double rate) {
+        NeuralNetwork copy = copy(network, slot);
+        final int base = copy.getParameterOffset();
+        NeuralNetwork.mutate(copy.getParameterArray(), base, base + parameterCount, rate, ThreadLocalRandom.current());
+        return copy;
+    }
+
+    /**
+     * Create a combination of two networks in a slot of the current buffer.
+     *
+     * @param first the first parent.
+     * @param second the second parent.
+     * @param crossover the crossover operator.
+     * @param slot the slot.
+     * @param random the random number generator.
+     * @return a network whose parameters live in the slot, with the activation functions,
+     *         learning rate and listener of the first parent.
+     * @throws IllegalArgumentException if the layers of the parents do not match those of the arena.
+     * @throws IndexOutOfBoundsException if the slot is out of range.
+     */
+    public NeuralNetwork cross(NeuralNetwork first, NeuralNetwork second, Crossover crossover, int slot, Random random) {
+        checkLayers(first);
+        checkLayers(second);
+        final double[] buffer = buffers[current];
+        final int base = slotBase(slot);
+        crossover.cross(first, second, buffer, base, random);
+
+        NeuralNetwork child = new NeuralNetwork(first.getLayerArray(), first.getLearningRate(), buffer, base);
+        child.setListener(first.getListener());
+        return child;
+    }
+
+    /**
+     * Move the parameters of a network to a slot of the current buffer. The network
+     * keeps its values and reads and updates the slot from now on.
+     *
+     * @param network the network.
+     * @param slot the slot.
+     * @throws IllegalArgumentException if the layers of the network do not match those of the arena.
+     * @throws IndexOutOfBoundsException if the slot is out of range.
+     */
+    public void relocate(NeuralNetwork network, int slot) {
+        final double[] buffer = buffers[current];
+        network.setParameterArray(buffer, copyToSlot(network, buffer, slot));
+    }
+
+    private int copyToSlot(NeuralNetwork network, double[] buffer, int slot) {
+        checkLayers(network);
+        final int base = slotBase(slot);
+        System.arraycopy(network.getParameterArray(), network.getParameterOffset(), buffer, base, parameterCount);
+        return base;
+    }
+
+    private void checkLayers(NeuralNetwork network) {
+        if (!accepts(network)) {
+            throw new IllegalArgumentException("Expected a network with layers " + Arrays.toString(structure)
+                    + ", got " + Arrays.toString(network.getLayerArray()));
+        }
+    }
+
+    private int slotBase(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of " + capacity);
+        }
+        return slot * parameterCount;
+    }
+}
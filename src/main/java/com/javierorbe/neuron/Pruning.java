@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+
+/**
+ * Removes the weights of a network with the smallest magnitude.
+ *
+ * <p>The pruned network has a {@link SparseLayer} in place of every layer, with only
+ * the connections that were kept, so it is evaluated and trained in time proportional to
+ * the number of remaining weights, and training it cannot bring the removed weights back.
+ * The biases are never removed. Optionally, the pruned network is fine-tuned on a set of
+ * samples to recover from the loss of the removed weights.
+ *
+ * @author Javier Orbe
+ * @see com.javierorbe.neuron.inference.SparseModel
+ */
+public final class Pruning {
+
+    private final Criterion criterion;
+
+    private double[][] inputs;
+    private double[][] targets;
+    private int batchSize;
+    private int epochs;
+
+    private Pruning(Criterion criterion) {
+        this.criterion = criterion;
+    }
+
+    /**
+     * Create a pruning that removes the weights whose magnitude is below a threshold.
+     *
+     * @param threshold the smallest magnitude of the weights that are kept.
+     * @return the pruning.
+     * @throws IllegalArgumentException if {@code threshold} is negative.
+     */
+    public static Pruning threshold(double threshold) {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException("The threshold cannot be negative: " + threshold);
+        }
+        return new Pruning((magnitudes, mask) -> {
+            for (int n = 0; n < magnitudes.length; n++) {
+                mask[n] &= magnitudes[n] >= threshold;
+            }
+        });
+    }
+
+    /**
+     * Create a pruning that keeps, in each layer, the {@code k} weights with the largest magnitude.
+     * Among weights with the same magnitude, the first ones are kept.
+     *
+     * @param k the number of weights kept in each layer.
+     * @return the pruning.
+     * @throws IllegalArgumentException if {@code k} is negative.
+     */
+    public static Pruning topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of weights cannot be negative: " + k);
+        }
+        return new Pruning((magnitudes, mask) -> keepLargest(magnitudes, mask, k));
+    }
+
+    /**
+     * Create a pruning that keeps a fraction of the weights of each layer, those with the largest magnitude.
+     *
+     * @param density the fraction of the weights kept in each layer, from 0 to 1.
+     * @return the pruning.
+     * @throws IllegalArgumentException if {@code density} is not between 0 and 1.
+     */
+    public static Pruning density(double density) {
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("The density must be between 0 and 1: " + density);
+        }
+        return new Pruning((magnitudes, mask) -> {
+            int connections = 0;
+            for (boolean connected : mask) {
+                if (connected) {
+                    connections++;
+                }
+            }
+            keepLargest(magnitudes, mask, (int) Math.round(density * connections));
+        });
+    }
+
+    /**
+     * Fine-tune the pruned networks with {@link NeuralNetwork#train(double[][], double[][], int)}.
+     *
+     * @param inputs input values of each sample.
+     * @param targets target output values of each sample.
+     * @param batchSize the number of samples of each batch.
+     * @param epochs the number of passes over the samples, or zero to disable fine-tuning.
+     * @throws IllegalArgumentException if the number of inputs and targets differ,
+     *         or if {@code batchSize} is not positive or {@code epochs} is negative.
+     */
+    public void setFineTuning(double[][] inputs, double[][] targets, int batchSize, int epochs) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs and " + targets.length + " targets");
+        }
+        if (batchSize <= 0 || epochs < 0) {
+            throw new IllegalArgumentException("Invalid batch size or number of epochs: " + batchSize + ", " + epochs);
+        }
+
+        this.inputs = inputs;
+        this.targets = targets;
+        this.batchSize = batchSize;
+        this.epochs = epochs;
+    }
+
+    /**
+     * Create a pruned copy of a network. The copy has the activation functions, learning rate
+     * and listener of the network, and a reset copy of its optimizer.
+     *
+     * @param network the network, which is not modified.
+     * @return the pruned network.
+     * @throws IllegalArgumentException if a layer is neither a {@link DenseLayer} nor a {@link SparseLayer}.
+     */
+    public NeuralNetwork apply(NeuralNetwork network) {
+        final Layer[] layers = network.getLayerArray();
+        final int[] offsets = network.getLayerOffsets();
+        final double[] parameters = network.getParameterArray();
+        final int base = network.getParameterOffset();
+
+        Layer[] prunedLayers = new Layer[layers.length];
+        double[][] weights = new double[layers.length][];
+        boolean[][] masks = new boolean[layers.length][];
+        int count = 0;
+        for (int i = 0; i < layers.length; i++) {
+            final Layer layer = layers[i];
+            final int size = layer.getInputSize() * layer.getOutputSize();
+            weights[i] = new double[size];
+            boolean[] mask = new boolean[size];
+            unpack(layer, parameters, base + offsets[i], weights[i], mask);
+
+            double[] magnitudes = new double[size];
+            for (int n = 0; n < size; n++) {
+                magnitudes[n] = Math.abs(weights[i][n]);
+            }
+            criterion.select(magnitudes, mask);
+
+            prunedLayers[i] = SparseLayer.of(layer.getInputSize(), layer.getOutputSize(), mask, layer.getActivationFunction());
+            masks[i] = mask;
+            count += prunedLayers[i].getParameterCount();
+        }
+
+        // The kept weights in row-major order, which is the order of the connections of a sparse layer
+        double[] prunedParameters = new double[count];
+        int p = 0;
+        for (int i = 0; i < layers.length; i++) {
+            for (int n = 0; n < masks[i].length; n++) {
+                if (masks[i][n]) {
+                    prunedParameters[p++] = weights[i][n];
+                }
+            }
+            final int outputs = layers[i].getOutputSize();
+            System.arraycopy(parameters, base + offsets[i + 1] - outputs, prunedParameters, p, outputs);
+            p += outputs;
+        }
+
+        NeuralNetwork pruned = new NeuralNetwork(prunedLayers, network.getLearningRate(), prunedParameters);
+        pruned.setListener(network.getListener());
+        if (network.getOptimizer() != null) {
+            Optimizer optimizer = network.getOptimizer().copy();
+            optimizer.reset();
+            pruned.setOptimizer(optimizer);
+        }
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            pruned.train(inputs, targets, batchSize);
+        }
+        return pruned;
+    }
+
+    /**
+     * Returns the fraction of the connections between the nodes of consecutive layers
+     * that have no weight or a weight of zero.
+     *
+     * @param network the network.
+     * @return the sparsity of the network, from 0 to 1.
+     */
+    public static double sparsity(NeuralNetwork network) {
+        final double[] parameters = network.getParameterArray();
+        final int[] offsets = network.getLayerOffsets();
+        final int base = network.getParameterOffset();
+
+        long total = 0;
+        long nonzero = 0;
+        for (int i = 0; i < offsets.length - 1; i++) {
+            Layer layer = network.getLayer(i);
+            total += (long) layer.getInputSize() * layer.getOutputSize();
+            final int end = base + offsets[i + 1] - layer.getOutputSize();
+            for (int n = base + offsets[i]; n < end; n++) {
+                if (parameters[n] != 0) {
+                    nonzero++;
+                }
+            }
+        }
+        return (total > 0) ? 1 - (double) nonzero / total : 0;
+    }
+
+    /**
+     * Write the weights of a layer row-major into {@code weights}, and whether each connection
+     * exists into {@code mask}.
+     */
+    private static void unpack(Layer layer, double[] parameters, int offset, double[] weights, boolean[] mask) {
+        if (layer instanceof DenseLayer) {
+            System.arraycopy(parameters, offset, weights, 0, weights.length);
+            Arrays.fill(mask, true);
+        } else if (layer instanceof SparseLayer) {
+            final SparseLayer sparse = (SparseLayer) layer;
+            final int[] rowPointers = sparse.getRowPointers();
+            final int[] columns = sparse.getColumns();
+            final int cols = layer.getInputSize();
+            for (int j = 0; j < layer.getOutputSize(); j++) {
+                for (int p = rowPointers[j]; p < rowPointers[j + 1]; p++) {
+                    weights[j * cols + columns[p]] = parameters[offset + p];
+                    mask[j * cols + columns[p]] = true;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot prune a layer of type " + layer.getClass().getName());
+        }
+    }
+
+    /**
+     * Keep in the mask only the {@code k} connections with the largest magnitude.
+     */
+    private static void keepLargest(double[] magnitudes, boolean[] mask, int k) {
+        double[] sorted = new double[magnitudes.length];
+        int connections = 0;
+        for (int n = 0; n < magnitudes.length; n++) {
+            if (mask[n]) {
+                sorted[connections++] = magnitudes[n];
+            }
+        }
+        if (k >= connections) {
+            return;
+        }
+        if (k == 0) {
+            Arrays.fill(mask, false);
+            return;
+        }
+
+        Arrays.sort(sorted, 0, connections);
+        final double smallest = sorted[connections - k];
+        int ties = 0;
+        for (int n = connections - k; n < connections && sorted[n] == smallest; n++) {
+            ties++;
+        }
+
+        for (int n = 0; n < magnitudes.length; n++) {
+            if (mask[n] && magnitudes[n] <= smallest) {
+                mask[n] = magnitudes[n] == smallest && ties-- > 0;
+            }
+        }
+    }
+
+    /**
+     * Chooses the connections of a layer that are kept.
+     */
+    @FunctionalInterface
+    private interface Criterion {
+
+        /**
+         * Clear in {@code mask} the connections that are removed.
+         *
+         * @param magnitudes the magnitude of the weight of each connection, row-major.
+         * @param mask whether each connection exists, row-major.
+         */
+        void select(double[] magnitudes, boolean[] mask);
+    }
+}
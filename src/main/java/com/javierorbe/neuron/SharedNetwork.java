@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A network that many threads evaluate while another one keeps updating it.
+ *
+ * <p>Readers evaluate the current {@link NetworkSnapshot}, without locks. A trainer
+ * works on its own {@link NeuralNetwork} and publishes its parameters with
+ * {@link #publish(NeuralNetwork)}, which replaces the snapshot with an atomic swap.
+ * Readers never block and never see a partially updated layer: an evaluation that
+ * started before a swap finishes on the previous snapshot.
+ *
+ * @author Javier Orbe
+ */
+public class SharedNetwork {
+
+    private final AtomicReference<NetworkSnapshot> current;
+
+    /**
+     * Construct a shared network with the current parameters of a network.
+     *
+     * @param network the network.
+     */
+    public SharedNetwork(NeuralNetwork network) {
+        this.current = new AtomicReference<>(network.snapshot());
+    }
+
+    /**
+     * Returns the current snapshot. Evaluating it repeatedly gives consistent results,
+     * even if new parameters are published in the meantime.
+     *
+     * @return the current snapshot.
+     */
+    public NetworkSnapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Publish the current parameters of a network.
+     *
+     * @param network the network.
+     * @return the snapshot that was replaced.
+     */
+    public NetworkSnapshot publish(NeuralNetwork network) {
+        return current.getAndSet(network.snapshot());
+    }
+
+    /**
+     * Publish a snapshot.
+     *
+     * @param snapshot the snapshot.
+     * @return the snapshot that was replaced.
+     */
+    public NetworkSnapshot publish(NetworkSnapshot snapshot) {
+        return current.getAndSet(snapshot);
+    }
+
+    /**
+     * Calculate the output values of an input with the current snapshot.
+     *
+     * @param input the input values.
+     * @param output the array where the output values are written.
+     */
+    public void evaluate(double[] input, double[] output) {
+        current.get().evaluate(input, output);
+    }
+
+    /**
+     * Calculate the output values of an input with the current snapshot.
+     *
+     * @param input the input values.
+     * @return the output values.
+     */
+    public double[] evaluate(double[] input) {
+        return current.get().evaluate(input);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A layer where only some of the connections exist, stored in compressed sparse row
+ * (CSR) form. Its parameters are the weights of the existing connections, row after row
+ * and in ascending column order within a row, followed by the biases. The work of every
+ * pass is proportional to the number of connections.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://en.wikipedia.org/wiki/Sparse_matrix#Compressed_sparse_row_(CSR,_CRS_or_Yale_format)" target="_top">CSR in Wikipedia</a>
+ */
+public final class SparseLayer implements Layer {
+
+    private final int inputs;
+    private final int outputs;
+    private final int[] rowPointers;
+    private final int[] columns;
+    private final ActivationFunction activationFunction;
+
+    /**
+     * Construct a sparse layer.
+     *
+     * @param inputs the number of input nodes.
+     * @param outputs the number of output nodes.
+     * @param rowPointers the index in {@code columns} of the first connection of each output node,
+     *                    with the number of connections as the last element.
+     * @param columns the input node of each connection, ascending within each output node.
+     * @param activationFunction the activation function.
+     * @throws IllegalArgumentException if the structure is not valid.
+     */
+    public SparseLayer(int inputs, int outputs, int[] rowPointers, int[] columns, ActivationFunction activationFunction) {
+        if (inputs <= 0 || outputs <= 0) {
+            throw new IllegalArgumentException("The sizes of a layer must be positive: " + inputs + ", " + outputs);
+        }
+        if (rowPointers.length != outputs + 1 || rowPointers[0] != 0 || rowPointers[outputs] != columns.length) {
+            throw new IllegalArgumentException("Expected " + (outputs + 1) + " row pointers from 0 to " + columns.length);
+        }
+        for (int j = 0; j < outputs; j++) {
+            if (rowPointers[j] > rowPointers[j + 1]) {
+                throw new IllegalArgumentException("The row pointers must be ascending");
+            }
+            for (int p = rowPointers[j]; p < rowPointers[j + 1]; p++) {
+                if (columns[p] < 0 || columns[p] >= inputs || (p > rowPointers[j] && columns[p] <= columns[p - 1])) {
+                    throw new IllegalArgumentException("Invalid column " + columns[p] + " in row " + j);
+                }
+            }
+        }
+
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.rowPointers = rowPointers.clone();
+        this.columns = columns.clone();
+        this.activationFunction = Objects.requireNonNull(activationFunction);
+    }
+
+    /**
+     * Construct a sparse layer with the connections of a mask.
+     *
+     * @param inputs the number of input nodes.
+     * @param outputs the number of output nodes.
+     * @param mask whether each connection exists, row-major with one row per output node.
+     * @param activationFunction the activation function.
+     * @return the layer.
+     * @throws IllegalArgumentException if the mask does not have {@code inputs * outputs} values.
+     */
+    public static SparseLayer of(int inputs, int outputs, boolean[] mask, ActivationFunction activationFunction) {
+        if (mask.length != inputs * outputs) {
+            throw new IllegalArgumentException("Expected a mask of " + inputs * outputs + " values, got " + mask.length);
+        }
+
+        int[] rowPointers = new int[outputs + 1];
+        int count = 0;
+        for (boolean connected : mask) {
+            if (connected) {
+                count++;
+            }
+        }
+        int[] columns = new int[count];
+        int p = 0;
+        for (int j = 0; j < outputs; j++) {
+            for (int k = 0; k < inputs; k++) {
+                if (mask[j * inputs + k]) {
+                    columns[p++] = k;
+                }
+            }
+            rowPointers[j + 1] = p;
+        }
+        return new SparseLayer(inputs, outputs, rowPointers, columns, activationFunction);
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputs;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputs;
+    }
+
+    @Override
+    public int getParameterCount() {
+        return columns.length + outputs;
+    }
+
+    /**
+     * Returns the number of connections.
+     *
+     * @return the number of connections.
+     */
+    public int getConnectionCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the index of the first connection of each output node.
+     *
+     * @return a copy of the row pointers.
+     */
+    public int[] getRowPointers() {
+        return rowPointers.clone();
+    }
+
+    /**
+     * Returns the input node of each connection.
+     *
+     * @return a copy of the columns.
+     */
+    public int[] getColumns() {
+        return columns.clone();
+    }
+
+    @Override
+    public ActivationFunction getActivationFunction() {
+        return activationFunction;
+    }
+
+    @Override
+    public void forward(double[] parameters, int offset, double[] in, double[] out, int batch) {
+        final int biasOffset = offset + columns.length;
+        for (int b = 0; b < batch; b++) {
+            final int x = b * inputs;
+            final int o = b * outputs;
+            for (int j = 0; j < outputs; j++) {
+                double sum = 0;
+                for (int p = rowPointers[j]; p < rowPointers[j + 1]; p++) {
+                    sum += parameters[offset + p] * in[x + columns[p]];
+                }
+                out[o + j] = sum + parameters[biasOffset + j];
+            }
+        }
+    }
+
+    @Override
+    public void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int batch) {
+        final int biasOffset = offset + columns.length;
+        for (int b = 0; b < batch; b++) {
+            final int x = b * inputs;
+            final int d = b * outputs;
+            for (int j = 0; j < outputs; j++) {
+                final double value = delta[d + j];
+                for (int p = rowPointers[j]; p < rowPointers[j + 1]; p++) {
+                    gradients[offset + p] += value * in[x + columns[p]];
+                }
+                gradients[biasOffset + j] += value;
+            }
+        }
+    }
+
+    @Override
+    public void backpropagate(double[] parameters, int offset, double[] delta, double[] error, int batch) {
+        Arrays.fill(error, 0, batch * inputs, 0);
+        for (int b = 0; b < batch; b++) {
+            final int e = b * inputs;
+            final int d = b * outputs;
+            for (int j = 0; j < outputs; j++) {
+                final double value = delta[d + j];
+                for (int p = rowPointers[j]; p < rowPointers[j + 1]; p++) {
+                    error[e + columns[p]] += parameters[offset + p] * value;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasSameStructure(Layer other) {
+        if (!(other instanceof SparseLayer)) {
+            return false;
+        }
+        SparseLayer sparse = (SparseLayer) other;
+        return inputs == sparse.inputs && outputs == sparse.outputs
+                && Arrays.equals(rowPointers, sparse.rowPointers) && Arrays.equals(columns, sparse.columns);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SparseLayer && hasSameStructure((SparseLayer) obj)
+                && activationFunction == ((SparseLayer) obj).activationFunction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inputs, outputs, Arrays.hashCode(columns), activationFunction);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseLayer[" + inputs + " -> " + outputs + ", " + columns.length + " connections, " + activationFunction + "]";
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import com.javierorbe.neuron.metrics.TrainingListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a {@link NeuralNetwork} for a number of epochs, tracking the loss.
+ *
+ * <p>The training loss comes from the forward pass of backpropagation, so it costs
+ * nothing extra. Every few epochs, the session can take a {@link NetworkSnapshot} of
+ * the weights and evaluate it on validation samples on a background thread, while
+ * training goes on. When the validation loss improves, the snapshot is kept as the
+ * best one and given to the checkpoint, if any. When it has not improved for a number
+ * of validations, training stops at the end of the current epoch.
+ *
+ * @author Javier Orbe
+ */
+public class TrainingSession {
+
+    private final NeuralNetwork network;
+    private final double[][] inputs;
+    private final double[][] targets;
+
+    private int batchSize = 32;
+    private Random random;
+
+    private double[][] validationInputs;
+    private double[][] validationTargets;
+    private int validationInterval;
+
+    private int patience;
+    private double minDelta;
+    private Checkpoint checkpoint;
+    private TrainingListener listener;
+
+    private int epoch;
+    private volatile boolean stopped;
+
+    // Only written by the validation thread, and read after waiting for it
+    private double bestLoss = Double.POSITIVE_INFINITY;
+    private int bestEpoch;
+    private NetworkSnapshot best;
+    private int validationsWithoutImprovement;
+
+    /**
+     * Construct a training session.
+     *
+     * @param network the network to train.
+     * @param inputs input values of each training sample.
+     * @param targets target output values of each training sample.
+     * @throws IllegalArgumentException if the number of inputs and targets differ or there are no samples.
+     */
+    public TrainingSession(NeuralNetwork network, double[][] inputs, double[][] targets) {
+        checkSamples(inputs, targets);
+        this.network = network;
+        this.inputs = inputs;
+        this.targets = targets;
+    }
+
+    /**
+     * Set the number of samples of each batch. The default is 32.
+     *
+     * @param batchSize the number of samples of each batch.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Shuffle the training samples before every epoch.
+     *
+     * @param random the random number generator, or {@code null} to take the samples in order.
+     */
+    public void setShuffle(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Evaluate the network on validation samples on a background thread.
+     *
+     * @param inputs input values of each validation sample.
+     * @param targets target output values of each validation sample.
+     * @param interval the number of epochs between validations.
+     * @throws IllegalArgumentException if the number of inputs and targets differ, there
+     *         are no samples, or {@code interval} is not positive.
+     */
+    public void setValidation(double[][] inputs, double[][] targets, int interval) {
+        checkSamples(inputs, targets);
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The validation interval must be positive: " + interval);
+        }
+        this.validationInputs = inputs;
+        this.validationTargets = targets;
+        this.validationInterval = interval;
+    }
+
+    /**
+     * Stop training when the validation loss does not improve for a number of validations.
+     *
+     * @param patience the number of validations without improvement, or zero to never stop early.
+     * @param minDelta the amount by which the loss must go below the best one to count as an improvement.
+     * @throws IllegalArgumentException if {@code patience} or {@code minDelta} is negative.
+     */
+    public void setEarlyStopping(int patience, double minDelta) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("The patience cannot be negative: " + patience);
+        }
+        if (!(minDelta >= 0)) {
+            throw new IllegalArgumentException("The minimum improvement cannot be negative: " + minDelta);
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    /**
+     * Set the checkpoint that receives the weights every time the validation loss improves.
+     *
+     * @param checkpoint the checkpoint, or {@code null} to not save the weights.
+     */
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Set the listener that receives the loss of every epoch and validation.
+     *
+     * @param listener the listener, or {@code null} to remove it.
+     */
+    public void setListener(TrainingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of epochs trained so far.
+     *
+     * @return the number of epochs.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the best validation loss.
+     *
+     * @return the best validation loss, or infinity if there was no validation.
+     */
+    public double getBestLoss() {
+        return bestLoss;
+    }
+
+    /**
+     * Returns the epoch after which the weights with the best validation loss were taken.
+     *
+     * @return the epoch, or zero if there was no validation.
+     */
+    public int getBestEpoch() {
+        return bestEpoch;
+    }
+
+    /**
+     * Returns the weights with the best validation loss.
+     *
+     * @return the snapshot, or {@code null} if there was no validation.
+     */
+    public NetworkSnapshot getBest() {
+        return best;
+    }
+
+    /**
+     * Returns whether training was stopped, early or by {@link #stop()}.
+     *
+     * @return {@code true} if training was stopped before the given number of epochs.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Stop training at the end of the current epoch. It can be called from any thread,
+     * including the listeners.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Train the network until the given number of epochs, early stopping or {@link #stop()}.
+     * Before returning, it waits for the pending validations.
+     *
+     * @param epochs the maximum number of epochs.
+     * @return the number of epochs trained in this call.
+     * @throws UncheckedIOException if the checkpoint fails.
+     */
+    public int run(int epochs) {
+        stopped = false;
+        final ExecutorService validator = (validationInputs != null)
+                ? Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "neuron-validation");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        final Queue<Future<?>> pending = new ArrayDeque<>();
+
+        int trained = 0;
+        try {
+            while (trained < epochs && !stopped) {
+                double[][] in = inputs;
+                double[][] out = targets;
+                if (random != null) {
+                    in = inputs.clone();
+                    out = targets.clone();
+                    shuffle(in, out, random);
+                }
+
+                double loss = network.train(in, out, batchSize) / in.length;
+                trained++;
+                epoch++;
+
+                final TrainingListener l = listener;
+                if (l != null) {
+                    l.epochCompleted(epoch, loss);
+                }
+
+                if (validator != null && epoch % validationInterval == 0) {
+                    final int validatedEpoch = epoch;
+                    final NetworkSnapshot snapshot = network.snapshot();
+                    pending.add(validator.submit(() -> {
+                        validate(validatedEpoch, snapshot);
+                        return null;
+                    }));
+                }
+                collect(pending, false);
+            }
+            collect(pending, true);
+        } finally {
+            if (validator != null) {
+                validator.shutdownNow();
+            }
+        }
+        return trained;
+    }
+
+    /**
+     * Evaluate a snapshot on the validation samples and update the best one.
+     */
+    private void validate(int validatedEpoch, NetworkSnapshot snapshot) throws IOException {
+        final double[] output = new double[validationTargets[0].length];
+        double loss = 0;
+        for (int i = 0; i < validationInputs.length; i++) {
+            snapshot.evaluate(validationInputs[i], output);
+            double[] target = validationTargets[i];
+            for (int j = 0; j < output.length; j++) {
+                double error = target[j] - output[j];
+                loss += error * error;
+            }
+        }
+        loss /= 2 * validationInputs.length;
+
+        final boolean improved = loss < bestLoss - minDelta || best == null;
+        if (improved) {
+            bestLoss = loss;
+            bestEpoch = validatedEpoch;
+            best = snapshot;
+            validationsWithoutImprovement = 0;
+            if (checkpoint != null) {
+                checkpoint.save(validatedEpoch, loss, snapshot);
+            }
+        } else if (patience > 0 && ++validationsWithoutImprovement >= patience) {
+            stopped = true;
+        }
+
+        final TrainingListener l = listener;
+        if (l != null) {
+            l.validated(validatedEpoch, loss, improved);
+        }
+    }
+
+    /**
+     * Remove the finished validations, rethrowing their failures.
+     *
+     * @param wait whether to wait for the validations that have not finished.
+     */
+    private static void collect(Queue<Future<?>> pending, boolean wait) {
+        try {
+            for (Iterator<Future<?>> it = pending.iterator(); it.hasNext(); ) {
+                Future<?> future = it.next();
+                if (!wait && !future.isDone()) {
+                    return;
+                }
+                future.get();
+                it.remove();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException("Cannot save the checkpoint", (IOException) e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void shuffle(double[][] inputs, double[][] targets, Random random) {
+        for (int i = inputs.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+
+            double[] input = inputs[i];
+            inputs[i] = inputs[j];
+            inputs[j] = input;
+
+            double[] target = targets[i];
+            targets[i] = targets[j];
+            targets[j] = target;
+        }
+    }
+
+    private static void checkSamples(double[][] inputs, double[][] targets) {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs and " + targets.length + " targets");
+        }
+        if (inputs.length == 0) {
+            throw new IllegalArgumentException("There are no samples");
+        }
+    }
+
+    /**
+     * Receives the weights of a network every time its validation loss improves.
+     * It is called on the validation thread.
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+
+        /**
+         * Save the weights.
+         *
+         * @param epoch the epoch after which the weights were taken.
+         * @param loss the validation loss.
+         * @param snapshot the weights.
+         * @throws IOException if an I/O error occurs.
+         */
+        void save(int epoch, double loss, NetworkSnapshot snapshot) throws IOException;
+
+        /**
+         * Returns a checkpoint that saves the weights to a file with {@link ModelFormat#save(NeuralNetwork, Path)},
+         * replacing the previous ones. The file always holds a complete checkpoint, even if the
+         * process dies while saving.
+         *
+         * @param path the path of the file.
+         * @return the checkpoint.
+         */
+        static Checkpoint toFile(Path path) {
+            return (epoch, loss, snapshot) -> ModelFormat.save(snapshot.toNetwork(), path);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import java.util.Arrays;
+
+/**
+ * Buffers used to train a network on a batch of samples.
+ * They are sized once for a topology and a maximum batch size and reused between batches.
+ *
+ * <p>By default the outputs of every layer are kept from the forward pass to the
+ * backward pass. With a checkpoint interval {@code k} greater than one, only the
+ * outputs of every {@code k}-th layer and of the output layer are kept. The others share
+ * {@code k - 1} buffers, and those of each segment between two checkpoints are computed
+ * again from the first checkpoint when the backward pass reaches the segment. Since
+ * the forward pass is deterministic, the gradients are identical in both modes;
+ * checkpointing trades about one extra forward pass for the memory of the layers
+ * that are not kept.
+ *
+ * <p>The derivatives of the loss only need the current layer and the next one,
+ * so they take two buffers in every mode.
+ *
+ * @author Javier Orbe
+ * @see NeuralNetwork#setTrainingWorkspace(TrainingWorkspace)
+ */
+public final class TrainingWorkspace {
+
+    private final int[] layers;
+    private final int batchSize;
+    private final int checkpointInterval;
+
+    /**
+     * Outputs of the layers that are kept, the input layer included, for every sample
+     * of the batch. The other layers are {@code null}.
+     */
+    private final double[][] activations;
+
+    /**
+     * Outputs of the layers between two checkpoints, by their position in the segment.
+     */
+    private final double[][] segment;
+
+    /**
+     * Derivative of the loss with respect to the outputs before activation of the
+     * layers with even and odd index.
+     */
+    private final double[][] deltas;
+
+    /**
+     * Accumulated gradients, with the same layout as the parameters of the network.
+     */
+    private final double[] gradients;
+
+    /**
+     * Construct a workspace that keeps the outputs of every layer.
+     *
+     * @param network the network.
+     * @param batchSize the maximum number of samples of a batch.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    public TrainingWorkspace(NeuralNetwork network, int batchSize) {
+        this(network, batchSize, 1);
+    }
+
+    /**
+     * Construct a workspace that keeps the outputs of every {@code checkpointInterval} layers.
+     *
+     * @param network the network.
+     * @param batchSize the maximum number of samples of a batch.
+     * @param checkpointInterval the number of layers between the kept outputs, or one to keep them all.
+     * @throws IllegalArgumentException if {@code batchSize} or {@code checkpointInterval} is not positive.
+     */
+    public TrainingWorkspace(NeuralNetwork network, int batchSize, int checkpointInterval) {
+        this(network.getLayerSizes(), network.getParameterCount(), batchSize, checkpointInterval);
+    }
+
+    /**
+     * Construct a workspace that keeps the outputs of every layer.
+     *
+     * @param layers number of nodes in each layer.
+     * @param parameterCount the number of parameters of the network.
+     * @param batchSize the maximum number of samples of a batch.
+     */
+    TrainingWorkspace(int[] layers, int parameterCount, int batchSize) {
+        this(layers, parameterCount, batchSize, 1);
+    }
+
+    /**
+     * Construct a workspace.
+     *
+     * @param layers number of nodes in each layer.
+     * @param parameterCount the number of parameters of the network.
+     * @param batchSize the maximum number of samples of a batch.
+     * @param checkpointInterval the number of layers between the kept outputs.
+     */
+    TrainingWorkspace(int[] layers, int parameterCount, int batchSize, int checkpointInterval) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval must be positive: " + checkpointInterval);
+        }
+
+        this.layers = layers.clone();
+        this.batchSize = batchSize;
+        this.checkpointInterval = checkpointInterval;
+
+        activations = new double[layers.length][];
+        segment = new double[checkpointInterval - 1][];
+        int maxLayer = 0;
+        for (int i = 0; i < layers.length; i++) {
+            if (isKept(i)) {
+                activations[i] = new double[batchSize * layers[i]];
+            } else {
+                int position = i % checkpointInterval - 1;
+                if (segment[position] == null || segment[position].length < batchSize * layers[i]) {
+                    segment[position] = new double[batchSize * layers[i]];
+                }
+            }
+            if (i > 0) {
+                maxLayer = Math.max(maxLayer, layers[i]);
+            }
+        }
+
+        deltas = new double[][] {new double[batchSize * maxLayer], new double[batchSize * maxLayer]};
+        gradients = new double[parameterCount];
+    }
+
+    /**
+     * Returns the maximum number of samples of a batch.
+     *
+     * @return the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of layers between the outputs kept from the forward pass.
+     *
+     * @return the checkpoint interval, which is one if every output is kept.
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Returns the number of bytes of every buffer of the workspace, which are all
+     * in use at the peak of a training step.
+     *
+     * @return the size of the working set in bytes.
+     */
+    public long getWorkingSetBytes() {
+        long values = gradients.length + deltas[0].length + deltas[1].length;
+        for (double[] buffer : activations) {
+            values += (buffer != null) ? buffer.length : 0;
+        }
+        for (double[] buffer : segment) {
+            values += (buffer != null) ? buffer.length : 0;
+        }
+        return values * Double.BYTES;
+    }
+
+    /**
+     * Returns whether the workspace fits a network.
+     *
+     * @param network the network.
+     * @return {@code true} if the network has the layer sizes and the number of parameters of the workspace.
+     */
+    boolean fits(NeuralNetwork network) {
+        return Arrays.equals(layers, network.getLayerSizes()) && gradients.length == network.getParameterCount();
+    }
+
+    /**
+     * Returns whether the outputs of a layer are kept from the forward pass.
+     *
+     * @param layer the index of the layer.
+     * @return {@code true} if the layer is a checkpoint, the input layer or the output layer.
+     */
+    boolean isKept(int layer) {
+        return layer % checkpointInterval == 0 || layer == layers.length - 1;
+    }
+
+    /**
+     * Returns the buffer of the outputs of a layer. Layers that are not kept
+     * share their buffer with the same position of every other segment.
+     *
+     * @param layer the index of the layer.
+     * @return the buffer.
+     */
+    double[] getActivations(int layer) {
+        return isKept(layer) ? activations[layer] : segment[layer % checkpointInterval - 1];
+    }
+
+    /**
+     * Returns the buffer of the derivatives of a layer, which is shared with the layers
+     * two positions before and after it.
+     *
+     * @param layer the index of the layer.
+     * @return the buffer.
+     */
+    double[] getDeltas(int layer) {
+        return deltas[layer & 1];
+    }
+
+    double[] getGradients() {
+        return gradients;
+    }
+
+    /**
+     * Set every accumulated gradient to zero.
+     */
+    void clearGradients() {
+        Arrays.fill(gradients, 0);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.data;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the mini-batches of a pass over a {@link Dataset} on a background thread.
+ *
+ * <p>There are two batches, which are reused: while one of them is being trained,
+ * the next one is decoded into the other, so reading and training overlap.
+ * A batch returned by {@link #next()} is valid until the following call.
+ *
+ * @author Javier Orbe
+ */
+public class BatchPrefetcher implements Closeable {
+
+    /**
+     * Marks the end of the pass in the queue of decoded batches.
+     */
+    private static final Object END = new Object();
+
+    private final Dataset.Cursor cursor;
+    private final int batchSize;
+
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<Object> decoded = new ArrayBlockingQueue<>(3);
+    private final Thread thread;
+
+    private Batch current;
+    private boolean finished;
+
+    /**
+     * Start reading a pass over a dataset.
+     *
+     * @param dataset the dataset.
+     * @param batchSize the number of samples of each batch.
+     * @param random the random number generator that shuffles the samples,
+     *               or {@code null} to read them in order.
+     * @throws IOException if an I/O error occurs.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    public BatchPrefetcher(Dataset dataset, int batchSize, Random random) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+        this.cursor = dataset.open(random);
+        free.add(new Batch(batchSize, dataset.getInputSize(), dataset.getOutputSize()));
+        free.add(new Batch(batchSize, dataset.getInputSize(), dataset.getOutputSize()));
+
+        thread = new Thread(this::decode, "neuron-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Train a network with every sample of a dataset, in mini-batches that are
+     * read in the background.
+     *
+     * @param network the network.
+     * @param dataset the dataset.
+     * @param batchSize the number of samples of each batch.
+     * @param random the random number generator that shuffles the samples,
+     *               or {@code null} to read them in order.
+     * @return the loss summed over the samples, as returned by {@link NeuralNetwork#train(double[][], double[][], int)}.
+     * @throws IOException if an I/O error occurs.
+     * @see NeuralNetwork#train(double[][], double[][], int)
+     */
+    public static double train(NeuralNetwork network, Dataset dataset, int batchSize, Random random) throws IOException {
+        double loss = 0;
+        try (BatchPrefetcher prefetcher = new BatchPrefetcher(dataset, batchSize, random)) {
+            Batch batch;
+            while ((batch = prefetcher.next()) != null) {
+                if (batch.getSize() == batchSize) {
+                    loss += network.train(batch.getInputs(), batch.getTargets(), batchSize);
+                } else {
+                    loss += network.train(Arrays.copyOf(batch.getInputs(), batch.getSize()),
+                            Arrays.copyOf(batch.getTargets(), batch.getSize()), batchSize);
+                }
+            }
+        }
+        return loss;
+    }
+
+    /**
+     * Returns the next batch, waiting until it is decoded. The previous batch is
+     * given back to be reused.
+     *
+     * @return the next batch, or {@code null} at the end of the pass.
+     * @throws IOException if an I/O error occurred while reading the dataset.
+     */
+    public Batch next() throws IOException {
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        if (finished) {
+            return null;
+        }
+
+        Object next;
+        try {
+            next = decoded.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a batch");
+        }
+
+        if (next == END) {
+            finished = true;
+            return null;
+        }
+        if (next instanceof IOException) {
+            finished = true;
+            throw new IOException("Cannot read the dataset", (IOException) next);
+        }
+        if (next instanceof RuntimeException) {
+            finished = true;
+            throw (RuntimeException) next;
+        }
+
+        current = (Batch) next;
+        return current;
+    }
+
+    /**
+     * Stop reading and close the dataset cursor.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cursor.close();
+    }
+
+    /**
+     * Decode batches until the end of the pass, an error or an interruption.
+     */
+    private void decode() {
+        try {
+            while (true) {
+                Batch batch = free.take();
+                int size = 0;
+                while (size < batchSize && cursor.next(batch.inputs[size], batch.targets[size])) {
+                    size++;
+                }
+                batch.size = size;
+
+                if (size > 0) {
+                    decoded.put(batch);
+                }
+                if (size < batchSize) {
+                    decoded.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed before the end of the pass
+        } catch (IOException | RuntimeException e) {
+            decoded.offer(e);
+        }
+    }
+
+    /**
+     * A mini-batch of samples.
+     */
+    public static final class Batch {
+
+        private final double[][] inputs;
+        private final double[][] targets;
+        private int size;
+
+        Batch(int batchSize, int inputSize, int outputSize) {
+            this.inputs = new double[batchSize][inputSize];
+            this.targets = new double[batchSize][outputSize];
+        }
+
+        /**
+         * Returns the input values of each sample. Only the first {@link #getSize()} are valid.
+         *
+         * @return the input values of each sample.
+         */
+        public double[][] getInputs() {
+            return inputs;
+        }
+
+        /**
+         * Returns the target values of each sample. Only the first {@link #getSize()} are valid.
+         *
+         * @return the target values of each sample.
+         */
+        public double[][] getTargets() {
+            return targets;
+        }
+
+        /**
+         * Returns the number of samples of the batch, which is smaller than
+         * the batch size only for the last batch of a pass.
+         *
+         * @return the number of samples.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+}
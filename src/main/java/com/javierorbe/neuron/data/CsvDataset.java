@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * A dataset read from a CSV file as a stream, where each line holds the input values
+ * of a sample followed by its target values, separated by commas.
+ *
+ * <p>When shuffled, the lines are read in blocks that are shuffled in memory,
+ * so samples only move within their block.
+ *
+ * @author Javier Orbe
+ */
+public class CsvDataset implements Dataset {
+
+    private final Path path;
+    private final int inputSize;
+    private final int outputSize;
+
+    private boolean header;
+    private int blockSize = 1024;
+
+    /**
+     * Construct a CSV dataset.
+     *
+     * @param path the path of the file.
+     * @param inputSize the number of input values of each sample.
+     * @param outputSize the number of target values of each sample.
+     * @throws IllegalArgumentException if a size is not positive.
+     */
+    public CsvDataset(Path path, int inputSize, int outputSize) {
+        if (inputSize <= 0 || outputSize <= 0) {
+            throw new IllegalArgumentException("The sizes must be positive: " + inputSize + ", " + outputSize);
+        }
+
+        this.path = path;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+    }
+
+    /**
+     * Set whether the first line of the file is a header, which is skipped.
+     *
+     * @param header {@code true} if the file has a header.
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * Set the number of lines that are shuffled together.
+     *
+     * @param blockSize the number of lines of a block.
+     * @throws IllegalArgumentException if {@code blockSize} is not positive.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public Cursor open(Random random) throws IOException {
+        final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        final int block = (random != null) ? blockSize : 1;
+        final double[][] samples = new double[block][inputSize + outputSize];
+        if (header) {
+            try {
+                reader.readLine();
+            } catch (IOException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        return new Cursor() {
+
+            private long line = header ? 1 : 0;
+            private int length;
+            private int position;
+
+            @Override
+            public boolean next(double[] input, double[] target) throws IOException {
+                if (position == length && !fill()) {
+                    return false;
+                }
+
+                double[] sample = samples[position++];
+                System.arraycopy(sample, 0, input, 0, inputSize);
+                System.arraycopy(sample, inputSize, target, 0, outputSize);
+                return true;
+            }
+
+            private boolean fill() throws IOException {
+                length = 0;
+                position = 0;
+                String text;
+                while (length < block && (text = reader.readLine()) != null) {
+                    line++;
+                    if (!text.trim().isEmpty()) {
+                        parse(text, line, samples[length++]);
+                    }
+                }
+
+                if (random != null) {
+                    for (int i = length - 1; i > 0; i--) {
+                        int j = random.nextInt(i + 1);
+                        double[] tmp = samples[i];
+                        samples[i] = samples[j];
+                        samples[j] = tmp;
+                    }
+                }
+                return length > 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private void parse(String text, long line, double[] values) throws IOException {
+        int start = 0;
+        for (int i = 0; i < values.length; i++) {
+            int end = text.indexOf(',', start);
+            if (end < 0) {
+                if (i != values.length - 1) {
+                    throw new IOException("Line " + line + ": expected " + values.length + " values, got " + (i + 1));
+                }
+                end = text.length();
+            }
+
+            try {
+                values[i] = Double.parseDouble(text.substring(start, end));
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + line + ": " + e.getMessage(), e);
+            }
+            start = end + 1;
+        }
+
+        if (start <= text.length()) {
+            throw new IOException("Line " + line + ": expected " + values.length + " values, got more");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A source of training samples that does not need to fit in memory.
+ *
+ * @author Javier Orbe
+ * @see BatchPrefetcher
+ */
+public interface Dataset {
+
+    /**
+     * Returns the number of input values of each sample.
+     *
+     * @return the number of input values.
+     */
+    int getInputSize();
+
+    /**
+     * Returns the number of target values of each sample.
+     *
+     * @return the number of target values.
+     */
+    int getOutputSize();
+
+    /**
+     * Start a pass over the samples.
+     *
+     * @param random the random number generator that shuffles the samples,
+     *               or {@code null} to read them in order.
+     * @return a cursor over the samples.
+     * @throws IOException if an I/O error occurs.
+     */
+    Cursor open(Random random) throws IOException;
+
+    /**
+     * Reads the samples of a pass, one after another.
+     */
+    interface Cursor extends Closeable {
+
+        /**
+         * Read the next sample.
+         *
+         * @param input the array where the input values are written.
+         * @param target the array where the target values are written.
+         * @return {@code false} if there are no more samples.
+         * @throws IOException if an I/O error occurs or the data is malformed.
+         */
+        boolean next(double[] input, double[] target) throws IOException;
+    }
+}
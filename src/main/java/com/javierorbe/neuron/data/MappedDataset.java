@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A dataset stored in a binary file, which is memory-mapped instead of read into the heap.
+ *
+ * <p>The file starts with a header of 24 bytes: the magic number {@code 0x4E444154}
+ * ("NDAT"), the version of the format, the number of input values and the number of
+ * target values of each sample, as {@code int}s, and the number of samples as a {@code long}.
+ * Then come the samples, each one with its input values followed by its target values,
+ * as {@code double}s. Every value is little-endian. Files are created with {@link Writer}.
+ *
+ * <p>When shuffled, the samples are read in blocks of consecutive samples: the blocks
+ * are visited in a random order, and the samples of each block in a random order too,
+ * so reads stay close to each other in the file.
+ *
+ * @author Javier Orbe
+ */
+public class MappedDataset implements Dataset {
+
+    /**
+     * "NDAT" in ASCII.
+     */
+    public static final int MAGIC = 0x4E444154;
+
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private final int inputSize;
+    private final int outputSize;
+    private final long size;
+
+    private final DoubleBuffer[] segments;
+    private final int samplesPerSegment;
+
+    private int blockSize = 1024;
+
+    private MappedDataset(int inputSize, int outputSize, long size, DoubleBuffer[] segments, int samplesPerSegment) {
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.size = size;
+        this.segments = segments;
+        this.samplesPerSegment = samplesPerSegment;
+    }
+
+    /**
+     * Map a dataset file.
+     *
+     * @param path the path of the file.
+     * @return the dataset.
+     * @throws IOException if an I/O error occurs or the file is not a dataset.
+     */
+    public static MappedDataset open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a dataset");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported dataset version: " + version);
+            }
+            int inputSize = header.getInt();
+            int outputSize = header.getInt();
+            long size = header.getLong();
+
+            final long sampleBytes = (long) (inputSize + outputSize) * Double.BYTES;
+            if (inputSize <= 0 || outputSize <= 0 || size < 0
+                    || channel.size() < HEADER_SIZE + sampleBytes * size) {
+                throw new IOException(path + " is truncated or corrupted");
+            }
+
+            // Each segment is mapped separately, since a buffer holds at most 2 GB
+            final int samplesPerSegment = (int) Math.max(1, Integer.MAX_VALUE / sampleBytes);
+            final int count = (int) ((size + samplesPerSegment - 1) / samplesPerSegment);
+            DoubleBuffer[] segments = new DoubleBuffer[count];
+            for (int s = 0; s < count; s++) {
+                long samples = Math.min(samplesPerSegment, size - (long) s * samplesPerSegment);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) s * samplesPerSegment * sampleBytes, samples * sampleBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+            }
+
+            return new MappedDataset(inputSize, outputSize, size, segments, samplesPerSegment);
+        }
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return the number of samples.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Set the number of consecutive samples that are read together when shuffling.
+     *
+     * @param blockSize the number of samples of a block.
+     * @throws IllegalArgumentException if {@code blockSize} is not positive.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public Cursor open(Random random) {
+        final DoubleBuffer[] views = new DoubleBuffer[segments.length];
+        for (int s = 0; s < views.length; s++) {
+            views[s] = segments[s].duplicate();
+        }
+
+        final int block = blockSize;
+        final long blocks = (size + block - 1) / block;
+        final long[] blockOrder = (random != null && blocks <= Integer.MAX_VALUE) ? permutation((int) blocks, random) : null;
+        final int[] sampleOrder = (random != null) ? new int[block] : null;
+
+        return new Cursor() {
+
+            private long blockIndex = -1;
+            private long blockStart;
+            private int blockLength;
+            private int position;
+
+            @Override
+            public boolean next(double[] input, double[] target) {
+                if (position == blockLength) {
+                    if (++blockIndex >= blocks) {
+                        return false;
+                    }
+                    blockStart = ((blockOrder != null) ? blockOrder[(int) blockIndex] : blockIndex) * block;
+                    blockLength = (int) Math.min(block, size - blockStart);
+                    position = 0;
+                    if (sampleOrder != null) {
+                        shuffle(sampleOrder, blockLength, random);
+                    }
+                }
+
+                long sample = blockStart + ((sampleOrder != null) ? sampleOrder[position] : position);
+                position++;
+
+                DoubleBuffer view = views[(int) (sample / samplesPerSegment)];
+                view.position((int) (sample % samplesPerSegment) * (inputSize + outputSize));
+                view.get(input, 0, inputSize);
+                view.get(target, 0, outputSize);
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // The mapping is released when the dataset is garbage collected
+            }
+        };
+    }
+
+    private static long[] permutation(int length, Random random) {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return values;
+    }
+
+    private static void shuffle(int[] order, int length, Random random) {
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+
+    /**
+     * Writes a dataset file, one sample at a time.
+     */
+    public static class Writer implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int inputSize;
+        private final int outputSize;
+        private long size;
+
+        /**
+         * Create a dataset file, replacing it if it exists.
+         *
+         * @param path the path of the file.
+         * @param inputSize the number of input values of each sample.
+         * @param outputSize the number of target values of each sample.
+         * @throws IOException if an I/O error occurs.
+         * @throws IllegalArgumentException if a size is not positive.
+         */
+        public Writer(Path path, int inputSize, int outputSize) throws IOException {
+            if (inputSize <= 0 || outputSize <= 0) {
+                throw new IllegalArgumentException("The sizes must be positive: " + inputSize + ", " + outputSize);
+            }
+
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            // The number of samples is written when the file is closed
+            buffer.position(HEADER_SIZE);
+        }
+
+        /**
+         * Add a sample.
+         *
+         * @param input the input values.
+         * @param target the target values.
+         * @throws IOException if an I/O error occurs.
+         * @throws IllegalArgumentException if an array has the wrong size.
+         */
+        public void add(double[] input, double[] target) throws IOException {
+            if (input.length != inputSize || target.length != outputSize) {
+                throw new IllegalArgumentException("Expected " + inputSize + " inputs and " + outputSize
+                        + " targets, got " + input.length + " and " + target.length);
+            }
+
+            put(input);
+            put(target);
+            size++;
+        }
+
+        private void put(double[] values) throws IOException {
+            for (double value : values) {
+                if (buffer.remaining() < Double.BYTES) {
+                    flush();
+                }
+                buffer.putDouble(value);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(inputSize).putInt(outputSize).putLong(size);
+                header.flip();
+                long position = 0;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a class file with the few constructs that {@link ModelCompiler} needs.
+ *
+ * <p>The classes have version 49, which is verified by type inference, so the
+ * methods need no stack map frames.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html" target="_top">The class file format</a>
+ */
+final class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int DALOAD = 0x31;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int DASTORE = 0x52;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int DCMPL = 0x97;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPNE = 0xa0;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int NEWARRAY = 0xbc;
+    static final int ARRAYLENGTH = 0xbe;
+    static final int ATHROW = 0xbf;
+    static final int WIDE = 0xc4;
+
+    static final int T_DOUBLE = 7;
+
+    private static final int VERSION = 49;
+    private static final int MAX_POOL_SIZE = 0xffff;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private final int code;
+
+    /**
+     * Start writing a public final class.
+     *
+     * @param name the internal name of the class.
+     * @param superName the internal name of the superclass.
+     * @param interfaceNames the internal names of the implemented interfaces.
+     */
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+        code = utf8("Code");
+    }
+
+    /**
+     * Returns the number of entries of the constant pool, which is limited to 65535.
+     *
+     * @return the size of the constant pool.
+     */
+    int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Add a field.
+     *
+     * @param access the access flags.
+     * @param name the name of the field.
+     * @param descriptor the descriptor of the field.
+     */
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Add a method with the code written into a {@link Code}.
+     *
+     * @param access the access flags.
+     * @param name the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @param body the code of the method.
+     * @param maxStack the maximum depth of the operand stack, in slots.
+     */
+    void addMethod(int access, String name, String descriptor, Code body, int maxStack) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] instructions = Arrays.copyOf(body.bytes, body.length);
+        if (instructions.length >= 0xffff) {
+            throw new IllegalStateException("The method " + name + " is too long: " + instructions.length + " bytes");
+        }
+
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+
+            out.writeShort(code);
+            out.writeInt(12 + instructions.length);
+            out.writeShort(maxStack);
+            out.writeShort(body.maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * Returns the bytes of the class file.
+     *
+     * @return the class file.
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            poolBytes.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) {
+                out.writeShort(i);
+            }
+
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add("U" + value, 1);
+    }
+
+    int classRef(String name) {
+        return reference("C" + name, CONSTANT_CLASS, utf8(name));
+    }
+
+    int string(String value) {
+        return reference("S" + value, CONSTANT_STRING, utf8(value));
+    }
+
+    int intConstant(int value) {
+        String key = "I" + value;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add(key, 1);
+    }
+
+    int doubleConstant(double value) {
+        String key = "D" + Long.toHexString(Double.doubleToRawLongBits(value));
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_DOUBLE);
+            pool.writeDouble(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // A double takes two entries of the pool
+        return add(key, 2);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add(key, 1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ":" + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        try {
+            pool.writeByte(CONSTANT_NAME_AND_TYPE);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add(key, 1);
+    }
+
+    private int reference(String key, int tag, int target) {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add(key, 1);
+    }
+
+    private int add(String key, int entries) {
+        int index = poolSize;
+        poolSize += entries;
+        if (poolSize > MAX_POOL_SIZE) {
+            throw new IllegalStateException("The constant pool is full");
+        }
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * The instructions of a method.
+     */
+    static final class Code {
+
+        private final ClassFileWriter writer;
+        private byte[] bytes = new byte[256];
+        private int length;
+        private int maxLocals;
+
+        /**
+         * Construct the code of a method.
+         *
+         * @param writer the class of the method, whose constant pool holds the large constants.
+         * @param arguments the number of local variable slots taken by the arguments, {@code this} included.
+         */
+        Code(ClassFileWriter writer, int arguments) {
+            this.writer = writer;
+            this.maxLocals = arguments;
+        }
+
+        /**
+         * Returns the number of bytes written.
+         *
+         * @return the length of the code.
+         */
+        int length() {
+            return length;
+        }
+
+        void op(int opcode) {
+            write(opcode);
+        }
+
+        void op(int opcode, int operand) {
+            write(opcode);
+            write(operand >>> 8);
+            write(operand);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                write(BIPUSH);
+                write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH, value);
+            } else {
+                op(LDC_W, writer.intConstant(value));
+            }
+        }
+
+        void local(int opcode, int slot, int size) {
+            maxLocals = Math.max(maxLocals, slot + size);
+            if (slot <= 3) {
+                // The short forms, such as dload_0, follow each other in groups of four
+                int shortForm = (opcode < 0x36) ? 0x1a + (opcode - 0x15) * 4 : 0x3b + (opcode - 0x36) * 4;
+                write(shortForm + slot);
+            } else if (slot <= 0xff) {
+                write(opcode);
+                write(slot);
+            } else {
+                write(WIDE);
+                op(opcode, slot);
+            }
+        }
+
+        /**
+         * Write a branch whose target is set later with {@link #mark(int)}.
+         *
+         * @param opcode the branch instruction.
+         * @return the position of the branch.
+         */
+        int branch(int opcode) {
+            int position = length;
+            op(opcode, 0);
+            return position;
+        }
+
+        /**
+         * Set the target of a branch to the current position.
+         *
+         * @param branch the position of the branch.
+         */
+        void mark(int branch) {
+            int offset = length - branch;
+            bytes[branch + 1] = (byte) (offset >>> 8);
+            bytes[branch + 2] = (byte) offset;
+        }
+
+        private void write(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+}
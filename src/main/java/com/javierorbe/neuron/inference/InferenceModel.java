@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+/**
+ * A frozen model that can only be evaluated.
+ *
+ * <p>Implementations keep scratch buffers between calls, so an instance must not
+ * be evaluated by several threads at the same time.
+ *
+ * @author Javier Orbe
+ */
+public interface InferenceModel {
+
+    /**
+     * Returns the number of input values.
+     *
+     * @return the number of input values.
+     */
+    int getInputSize();
+
+    /**
+     * Returns the number of output values.
+     *
+     * @return the number of output values.
+     */
+    int getOutputSize();
+
+    /**
+     * Calculate the output values of an input, writing them into {@code output}.
+     *
+     * @param input the input values.
+     * @param output the array where the output values are written.
+     * @throws IllegalArgumentException if the length of {@code input} or
+     *         {@code output} does not match the size of the input or output layer.
+     */
+    void evaluate(double[] input, double[] output);
+
+    /**
+     * Calculate the output values of an input.
+     *
+     * @param input the input values.
+     * @return the output values.
+     */
+    default double[] evaluate(double[] input) {
+        double[] output = new double[getOutputSize()];
+        evaluate(input, output);
+        return output;
+    }
+
+    /**
+     * Returns the maximum absolute difference between the outputs of a model and
+     * the outputs of the network it was exported from, over a set of samples.
+     *
+     * @param model the model.
+     * @param reference the network.
+     * @param samples the input values of each sample.
+     * @return the maximum absolute deviation of any output value.
+     */
+    static double maxDeviation(InferenceModel model, NeuralNetwork reference, double[][] samples) {
+        double[] expected = new double[model.getOutputSize()];
+        double[] actual = new double[model.getOutputSize()];
+        double deviation = 0;
+
+        for (double[] sample : samples) {
+            reference.evaluate(sample, expected);
+            model.evaluate(sample, actual);
+            for (int j = 0; j < expected.length; j++) {
+                deviation = Math.max(deviation, Math.abs(expected[j] - actual[j]));
+            }
+        }
+
+        return deviation;
+    }
+}
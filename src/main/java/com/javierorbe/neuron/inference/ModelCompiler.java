@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.DenseLayer;
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.javierorbe.neuron.inference.ClassFileWriter.*;
+
+/**
+ * Compiles a network into a class specialized for its exact topology and weights.
+ *
+ * <p>Every dot product is unrolled, with the weights as constants of the class:
+ * zero weights are dropped, and weights of {@code 1} and {@code -1} become an addition
+ * or a subtraction. The activation functions are written inline, and the values
+ * of each layer are kept in local variables while they are used, so an evaluation
+ * makes no calls through the {@link ActivationFunction} constants and allocates nothing.
+ *
+ * <p>The additions are done in the same order as {@link NeuralNetwork#evaluate(double[], double[])}
+ * with the scalar {@link com.javierorbe.neuron.ComputeBackend}, so the outputs are identical for
+ * finite inputs. The code is split into methods of less than 8000 bytes, the largest
+ * that the JIT compiles, and each model is defined by its own class loader, so it is
+ * unloaded when it is no longer used.
+ *
+ * @author Javier Orbe
+ */
+public final class ModelCompiler {
+
+    /**
+     * Maximum number of bytes of code of a generated method, below the 8000 bytes
+     * above which HotSpot does not compile a method.
+     */
+    private static final int METHOD_BUDGET = 7000;
+
+    /**
+     * Maximum number of bytes of code that a single weight takes, including the
+     * first load of its input.
+     */
+    private static final int WEIGHT_COST = 19;
+
+    /**
+     * Number of bytes of code of a row, besides its weights, including the activation.
+     */
+    private static final int ROW_COST = 64;
+
+    /**
+     * Number of columns of a segment when a whole row does not fit in a method.
+     */
+    private static final int COLUMN_BLOCK = 256;
+
+    private static final int MAX_STACK = 12;
+
+    private static final String INFERENCE_MODEL = "com/javierorbe/neuron/inference/InferenceModel";
+    private static final String ACTIVATION_FUNCTION = "com/javierorbe/neuron/ActivationFunction";
+    private static final String ARRAY = "[D";
+    private static final String CHUNK = "([D[D)V";
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private ModelCompiler() {}
+
+    /**
+     * Compile a network. The model does not change if the network is trained afterwards.
+     *
+     * @param network the network.
+     * @return the model.
+     * @throws IllegalArgumentException if a layer of the network is not a {@link DenseLayer},
+     *         or if the network has more distinct weights than a class can hold,
+     *         about 30000.
+     */
+    public static InferenceModel compile(NeuralNetwork network) {
+        FloatModel.checkDense(network);
+        String name = "com/javierorbe/neuron/inference/CompiledModel" + COUNTER.incrementAndGet();
+
+        byte[] bytes;
+        try {
+            bytes = new Generator(name, network).generate();
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("The network is too big to compile", e);
+        }
+
+        try {
+            Class<?> type = new Loader().define(name.replace('/', '.'), bytes);
+            return (InferenceModel) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate the compiled model", e);
+        }
+    }
+
+    /**
+     * Defines a single generated class.
+     */
+    private static final class Loader extends ClassLoader {
+
+        Loader() {
+            super(ModelCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes the class of a model.
+     */
+    private static final class Generator {
+
+        private final String name;
+        private final int[] layers;
+        private final ActivationFunction[] activationFunctions;
+        private final double[] parameters;
+        private final ClassFileWriter writer;
+
+        private int chunks;
+
+        Generator(String name, NeuralNetwork network) {
+            this.name = name;
+            this.layers = network.getLayers();
+            this.activationFunctions = network.getActivationFunctions();
+            this.parameters = network.getParameters();
+            this.writer = new ClassFileWriter(name, "java/lang/Object", INFERENCE_MODEL);
+        }
+
+        byte[] generate() {
+            final int last = layers.length - 1;
+            for (int i = 1; i < last; i++) {
+                writer.addField(ACC_PRIVATE | ACC_FINAL, "layer" + i, ARRAY);
+            }
+
+            writeConstructor();
+            writeSize("getInputSize", layers[0]);
+            writeSize("getOutputSize", layers[last]);
+
+            // evaluate(double[] input, double[] output), with the hidden layers in the locals 3, 4...
+            ClassFileWriter.Code evaluate = new ClassFileWriter.Code(writer, 3);
+            writeSizeCheck(evaluate);
+            for (int i = 1; i < last; i++) {
+                evaluate.local(ALOAD, 0, 1);
+                evaluate.op(GETFIELD, writer.fieldRef(name, "layer" + i, ARRAY));
+                evaluate.local(ASTORE, 2 + i, 1);
+            }
+
+            int offset = 0;
+            for (int i = 0; i < last; i++) {
+                final int in = (i == 0) ? 1 : 2 + i;
+                final int out = (i == last - 1) ? 2 : 3 + i;
+                for (String chunk : writeLayer(offset, layers[i + 1], layers[i], activationFunctions[i])) {
+                    evaluate.local(ALOAD, in, 1);
+                    evaluate.local(ALOAD, out, 1);
+                    evaluate.op(INVOKESTATIC, writer.methodRef(name, chunk, CHUNK));
+                }
+
+                if (!activationFunctions[i].isElementWise()) {
+                    evaluate.op(GETSTATIC, writer.fieldRef(ACTIVATION_FUNCTION,
+                            activationFunctions[i].name(), "L" + ACTIVATION_FUNCTION + ";"));
+                    evaluate.local(ALOAD, out, 1);
+                    evaluate.local(ALOAD, out, 1);
+                    evaluate.op(ICONST_0);
+                    evaluate.pushInt(layers[i + 1]);
+                    evaluate.op(INVOKEVIRTUAL, writer.methodRef(ACTIVATION_FUNCTION, "apply", "([D[DII)V"));
+                }
+                offset += layers[i + 1] * (layers[i] + 1);
+            }
+            evaluate.op(RETURN);
+            writer.addMethod(ACC_PUBLIC, "evaluate", CHUNK, evaluate, MAX_STACK);
+
+            return writer.toByteArray();
+        }
+
+        private void writeConstructor() {
+            ClassFileWriter.Code code = new ClassFileWriter.Code(writer, 1);
+            code.local(ALOAD, 0, 1);
+            code.op(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"));
+            for (int i = 1; i < layers.length - 1; i++) {
+                code.local(ALOAD, 0, 1);
+                code.pushInt(layers[i]);
+                code.op(NEWARRAY);
+                code.op(T_DOUBLE);
+                code.op(PUTFIELD, writer.fieldRef(name, "layer" + i, ARRAY));
+            }
+            code.op(RETURN);
+            writer.addMethod(ACC_PUBLIC, "<init>", "()V", code, MAX_STACK);
+        }
+
+        private void writeSize(String method, int size) {
+            ClassFileWriter.Code code = new ClassFileWriter.Code(writer, 1);
+            code.pushInt(size);
+            code.op(IRETURN);
+            writer.addMethod(ACC_PUBLIC, method, "()I", code, 1);
+        }
+
+        /**
+         * Throw {@link IllegalArgumentException} if the input or the output have the wrong length.
+         */
+        private void writeSizeCheck(ClassFileWriter.Code code) {
+            code.local(ALOAD, 1, 1);
+            code.op(ARRAYLENGTH);
+            code.pushInt(layers[0]);
+            int inputMismatch = code.branch(IF_ICMPNE);
+            code.local(ALOAD, 2, 1);
+            code.op(ARRAYLENGTH);
+            code.pushInt(layers[layers.length - 1]);
+            int outputMismatch = code.branch(IF_ICMPNE);
+            int valid = code.branch(GOTO);
+
+            code.mark(inputMismatch);
+            code.mark(outputMismatch);
+            code.op(NEW, writer.classRef("java/lang/IllegalArgumentException"));
+            code.op(DUP);
+            code.op(LDC_W, writer.string("Expected " + layers[0] + " inputs and "
+                    + layers[layers.length - 1] + " outputs"));
+            code.op(INVOKESPECIAL, writer.methodRef("java/lang/IllegalArgumentException", "<init>",
+                    "(Ljava/lang/String;)V"));
+            code.op(ATHROW);
+
+            code.mark(valid);
+        }
+
+        /**
+         * Write the methods that compute a layer, each one over some rows and columns.
+         *
+         * @return the names of the methods, in the order in which they must be called.
+         */
+        private List<String> writeLayer(int offset, int rows, int cols, ActivationFunction activation) {
+            List<String> names = new ArrayList<>();
+            final int block = (WEIGHT_COST * cols + ROW_COST <= METHOD_BUDGET) ? cols : COLUMN_BLOCK;
+
+            for (int k0 = 0; k0 < cols; k0 += block) {
+                final int k1 = Math.min(cols, k0 + block);
+                int j = 0;
+                while (j < rows) {
+                    // Locals: in, out, then each input of the segment, then a temporary
+                    final int temp = 2 + 2 * (k1 - k0);
+                    final boolean[] loaded = new boolean[k1 - k0];
+                    ClassFileWriter.Code code = new ClassFileWriter.Code(writer, 2);
+
+                    do {
+                        writeRow(code, offset, rows, cols, j, k0, k1, loaded, temp, activation);
+                        j++;
+                    } while (j < rows && code.length() + rowCost(offset, cols, j, k0, k1) <= METHOD_BUDGET);
+
+                    code.op(RETURN);
+                    String chunk = "chunk" + chunks++;
+                    writer.addMethod(ACC_PRIVATE | ACC_STATIC, chunk, CHUNK, code, MAX_STACK);
+                    names.add(chunk);
+                }
+            }
+            return names;
+        }
+
+        private int rowCost(int offset, int cols, int j, int k0, int k1) {
+            int cost = ROW_COST;
+            for (int k = k0; k < k1; k++) {
+                if (parameters[offset + j * cols + k] != 0) {
+                    cost += WEIGHT_COST;
+                }
+            }
+            return cost;
+        }
+
+        /**
+         * Write the part of the dot product of row {@code j} over the columns {@code [k0, k1)},
+         * continuing the sum stored in the output unless {@code k0} is zero. The last
+         * segment adds the bias and applies the activation function.
+         */
+        private void writeRow(ClassFileWriter.Code code, int offset, int rows, int cols, int j, int k0, int k1,
+                              boolean[] loaded, int temp, ActivationFunction activation) {
+            code.local(ALOAD, 1, 1);
+            code.pushInt(j);
+            if (k0 == 0) {
+                code.op(DCONST_0);
+            } else {
+                code.local(ALOAD, 1, 1);
+                code.pushInt(j);
+                code.op(DALOAD);
+            }
+
+            final int row = offset + j * cols;
+            for (int k = k0; k < k1; k++) {
+                final double weight = parameters[row + k];
+                if (weight == 0) {
+                    continue;
+                }
+
+                final int slot = 2 + 2 * (k - k0);
+                if (loaded[k - k0]) {
+                    code.local(DLOAD, slot, 2);
+                } else {
+                    code.local(ALOAD, 0, 1);
+                    code.pushInt(k);
+                    code.op(DALOAD);
+                    code.op(DUP2);
+                    code.local(DSTORE, slot, 2);
+                    loaded[k - k0] = true;
+                }
+
+                if (weight == 1) {
+                    code.op(DADD);
+                } else if (weight == -1) {
+                    code.op(DSUB);
+                } else {
+                    code.op(LDC2_W, writer.doubleConstant(weight));
+                    code.op(DMUL);
+                    code.op(DADD);
+                }
+            }
+
+            if (k1 == cols) {
+                final double bias = parameters[offset + rows * cols + j];
+                if (bias != 0) {
+                    code.op(LDC2_W, writer.doubleConstant(bias));
+                    code.op(DADD);
+                }
+                if (activation.isElementWise()) {
+                    writeActivation(code, activation, temp);
+                }
+            }
+            code.op(DASTORE);
+        }
+
+        /**
+         * Apply an activation function to the value on top of the stack, with the
+         * same operations as its {@link ActivationFunction#apply(double)}.
+         */
+        private void writeActivation(ClassFileWriter.Code code, ActivationFunction activation, int temp) {
+            switch (activation) {
+                case LINEAR:
+                    break;
+                case SIGMOID:
+                    // 1 / (1 + exp(-x))
+                    code.local(DSTORE, temp, 2);
+                    code.op(DCONST_1);
+                    code.op(DCONST_1);
+                    code.local(DLOAD, temp, 2);
+                    code.op(DNEG);
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "exp", "(D)D"));
+                    code.op(DADD);
+                    code.op(DDIV);
+                    break;
+                case TANH:
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "tanh", "(D)D"));
+                    break;
+                case RELU:
+                case LEAKY_RELU: {
+                    // x > 0 ? x : 0, or 0.01 * x
+                    code.local(DSTORE, temp, 2);
+                    code.local(DLOAD, temp, 2);
+                    code.op(DCONST_0);
+                    code.op(DCMPL);
+                    int negative = code.branch(IFLE);
+                    code.local(DLOAD, temp, 2);
+                    int done = code.branch(GOTO);
+                    code.mark(negative);
+                    if (activation == ActivationFunction.RELU) {
+                        code.op(DCONST_0);
+                    } else {
+                        code.op(LDC2_W, writer.doubleConstant(0.01));
+                        code.local(DLOAD, temp, 2);
+                        code.op(DMUL);
+                    }
+                    code.mark(done);
+                    break;
+                }
+                case SOFTPLUS: {
+                    // x > 0 ? x + log1p(exp(-x)) : log1p(exp(x))
+                    code.local(DSTORE, temp, 2);
+                    code.local(DLOAD, temp, 2);
+                    code.op(DCONST_0);
+                    code.op(DCMPL);
+                    int negative = code.branch(IFLE);
+                    code.local(DLOAD, temp, 2);
+                    code.local(DLOAD, temp, 2);
+                    code.op(DNEG);
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "exp", "(D)D"));
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "log1p", "(D)D"));
+                    code.op(DADD);
+                    int done = code.branch(GOTO);
+                    code.mark(negative);
+                    code.local(DLOAD, temp, 2);
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "exp", "(D)D"));
+                    code.op(INVOKESTATIC, writer.methodRef("java/lang/Math", "log1p", "(D)D"));
+                    code.mark(done);
+                    break;
+                }
+                default:
+                    // The approximations are not public, so they are called through the
+                    // constant, which the JIT sees as a constant receiver and inlines
+                    code.local(DSTORE, temp, 2);
+                    code.op(GETSTATIC, writer.fieldRef(ACTIVATION_FUNCTION, activation.name(),
+                            "L" + ACTIVATION_FUNCTION + ";"));
+                    code.local(DLOAD, temp, 2);
+                    code.op(INVOKEVIRTUAL, writer.methodRef(ACTIVATION_FUNCTION, "apply", "(D)D"));
+                    break;
+            }
+        }
+    }
+}
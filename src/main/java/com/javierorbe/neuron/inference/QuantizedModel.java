@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+
+/**
+ * A frozen network with its weights quantized to 8-bit integers.
+ *
+ * <p>The weights of each layer are quantized symmetrically, {@code w = scale * q}
+ * with {@code q} in {@code [-127, 127]}, using one scale per layer. On every
+ * evaluation the inputs of each layer are quantized the same way, the dot
+ * products are accumulated in {@code int} and the result is scaled back and
+ * added to the biases, which are kept in full precision.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://arxiv.org/abs/1712.05877" target="_top">Quantization and Training of Neural Networks for Efficient Integer-Arithmetic-Only Inference</a>
+ */
+public class QuantizedModel implements InferenceModel {
+
+    private static final int MAX_QUANTIZED = 127;
+
+    private final int[] layers;
+    private final ActivationFunction[] activationFunctions;
+
+    private final byte[][] weights;
+    private final float[] scales;
+    private final double[][] biases;
+
+    private final double[][] activations;
+    private final byte[] quantizedInput;
+
+    private QuantizedModel(int[] layers, ActivationFunction[] activationFunctions,
+                           byte[][] weights, float[] scales, double[][] biases) {
+        this.layers = layers;
+        this.activationFunctions = activationFunctions;
+        this.weights = weights;
+        this.scales = scales;
+        this.biases = biases;
+
+        int maxLayer = 0;
+        activations = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            if (i > 0 && i < layers.length - 1) {
+                activations[i] = new double[layers[i]];
+            }
+            maxLayer = Math.max(maxLayer, layers[i]);
+        }
+        quantizedInput = new byte[maxLayer];
+    }
+
+    /**
+     * Export a network.
+     *
+     * @param network the network.
+     * @return the model.
+     * @throws IllegalArgumentException if a layer of the network is not a {@link com.javierorbe.neuron.DenseLayer}.
+     */
+    public static QuantizedModel of(NeuralNetwork network) {
+        FloatModel.checkDense(network);
+        int[] layers = network.getLayers();
+        double[] parameters = network.getParameters();
+
+        byte[][] weights = new byte[layers.length - 1][];
+        float[] scales = new float[layers.length - 1];
+        double[][] biases = new double[layers.length - 1][];
+
+        int offset = 0;
+        for (int i = 0; i < layers.length - 1; i++) {
+            int count = layers[i + 1] * layers[i];
+
+            double max = 0;
+            for (int n = offset; n < offset + count; n++) {
+                max = Math.max(max, Math.abs(parameters[n]));
+            }
+            double scale = (max > 0) ? max / MAX_QUANTIZED : 1;
+
+            weights[i] = new byte[count];
+            for (int n = 0; n < count; n++) {
+                weights[i][n] = (byte) Math.round(parameters[offset + n] / scale);
+            }
+            scales[i] = (float) scale;
+
+            biases[i] = new double[layers[i + 1]];
+            System.arraycopy(parameters, offset + count, biases[i], 0, layers[i + 1]);
+
+            offset += count + layers[i + 1];
+        }
+
+        return new QuantizedModel(layers, network.getActivationFunctions(), weights, scales, biases);
+    }
+
+    @Override
+    public int getInputSize() {
+        return layers[0];
+    }
+
+    @Override
+    public int getOutputSize() {
+        return layers[layers.length - 1];
+    }
+
+    @Override
+    public void evaluate(double[] input, double[] output) {
+        if (input.length != layers[0] || output.length != layers[layers.length - 1]) {
+            throw new IllegalArgumentException("Expected " + layers[0] + " inputs and " + layers[layers.length - 1]
+                    + " outputs, got " + input.length + " and " + output.length);
+        }
+
+        double[] in = input;
+
+        for (int i = 0; i < layers.length - 1; i++) {
+            final int rows = layers[i + 1];
+            final int cols = layers[i];
+            final byte[] w = weights[i];
+            final double[] b = biases[i];
+            final double[] out = (i == layers.length - 2) ? output : activations[i + 1];
+
+            final double inputScale = quantize(in, cols);
+            final double scale = scales[i] * inputScale;
+
+            for (int j = 0; j < rows; j++) {
+                int row = j * cols;
+                int sum = 0;
+                for (int k = 0; k < cols; k++) {
+                    sum += w[row + k] * quantizedInput[k];
+                }
+                out[j] = sum * scale + b[j];
+            }
+            activationFunctions[i].apply(out, out, 0, rows);
+
+            in = out;
+        }
+    }
+
+    /**
+     * Quantize the first {@code size} values into the quantized input buffer.
+     *
+     * @return the scale of the quantized values.
+     */
+    private double quantize(double[] values, int size) {
+        double max = 0;
+        for (int k = 0; k < size; k++) {
+            max = Math.max(max, Math.abs(values[k]));
+        }
+        double scale = (max > 0) ? max / MAX_QUANTIZED : 1;
+
+        for (int k = 0; k < size; k++) {
+            quantizedInput[k] = (byte) Math.round(values[k] / scale);
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.DenseLayer;
+import com.javierorbe.neuron.Layer;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.SparseLayer;
+
+/**
+ * A frozen network that only stores its nonzero weights, in compressed sparse row
+ * (CSR) form, so each evaluation takes time proportional to the number of nonzero
+ * weights.
+ *
+ * <p>The outputs are identical to those of the network for finite inputs, since
+ * the products of the removed weights are zero.
+ *
+ * @author Javier Orbe
+ * @see com.javierorbe.neuron.Pruning
+ */
+public class SparseModel implements InferenceModel {
+
+    private final int[] layers;
+    private final ActivationFunction[] activationFunctions;
+
+    private final int[][] rowPointers;
+    private final int[][] columns;
+    private final double[][] values;
+    private final double[][] biases;
+
+    private final double[][] activations;
+
+    private SparseModel(int[] layers, ActivationFunction[] activationFunctions,
+                        int[][] rowPointers, int[][] columns, double[][] values, double[][] biases) {
+        this.layers = layers;
+        this.activationFunctions = activationFunctions;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+        this.biases = biases;
+
+        activations = new double[layers.length][];
+        for (int i = 1; i < layers.length - 1; i++) {
+            activations[i] = new double[layers[i]];
+        }
+    }
+
+    /**
+     * Export a network, leaving out the weights that are zero.
+     *
+     * @param network the network.
+     * @return the model.
+     * @throws IllegalArgumentException if a layer is neither a {@link DenseLayer} nor a {@link SparseLayer}.
+     */
+    public static SparseModel of(NeuralNetwork network) {
+        final int[] layers = network.getLayers();
+        final double[] parameters = network.getParameters();
+        final int count = layers.length - 1;
+
+        int[][] rowPointers = new int[count][];
+        int[][] columns = new int[count][];
+        double[][] values = new double[count][];
+        double[][] biases = new double[count][];
+
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            final Layer layer = network.getLayer(i);
+            final int rows = layers[i + 1];
+            final int cols = layers[i];
+
+            int[] layerRows;
+            int[] layerColumns;
+            if (layer instanceof DenseLayer) {
+                layerRows = new int[rows + 1];
+                layerColumns = new int[rows * cols];
+                for (int j = 0; j < rows; j++) {
+                    for (int k = 0; k < cols; k++) {
+                        layerColumns[j * cols + k] = k;
+                    }
+                    layerRows[j + 1] = (j + 1) * cols;
+                }
+            } else if (layer instanceof SparseLayer) {
+                layerRows = ((SparseLayer) layer).getRowPointers();
+                layerColumns = ((SparseLayer) layer).getColumns();
+            } else {
+                throw new IllegalArgumentException("Cannot export a layer of type " + layer.getClass().getName());
+            }
+
+            int nonzero = 0;
+            for (int p = 0; p < layerColumns.length; p++) {
+                if (parameters[offset + p] != 0) {
+                    nonzero++;
+                }
+            }
+
+            rowPointers[i] = new int[rows + 1];
+            columns[i] = new int[nonzero];
+            values[i] = new double[nonzero];
+            int n = 0;
+            for (int j = 0; j < rows; j++) {
+                for (int p = layerRows[j]; p < layerRows[j + 1]; p++) {
+                    if (parameters[offset + p] != 0) {
+                        columns[i][n] = layerColumns[p];
+                        values[i][n++] = parameters[offset + p];
+                    }
+                }
+                rowPointers[i][j + 1] = n;
+            }
+
+            biases[i] = new double[rows];
+            System.arraycopy(parameters, offset + layerColumns.length, biases[i], 0, rows);
+            offset += layer.getParameterCount();
+        }
+
+        return new SparseModel(layers, network.getActivationFunctions(), rowPointers, columns, values, biases);
+    }
+
+    /**
+     * Returns the number of nonzero weights.
+     *
+     * @return the number of nonzero weights.
+     */
+    public int getWeightCount() {
+        int count = 0;
+        for (double[] layerValues : values) {
+            count += layerValues.length;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the fraction of the connections between consecutive layers that have a nonzero weight.
+     *
+     * @return the density of the model, from 0 to 1.
+     */
+    public double getDensity() {
+        long connections = 0;
+        for (int i = 0; i < layers.length - 1; i++) {
+            connections += (long) layers[i] * layers[i + 1];
+        }
+        return (double) getWeightCount() / connections;
+    }
+
+    @Override
+    public int getInputSize() {
+        return layers[0];
+    }
+
+    @Override
+    public int getOutputSize() {
+        return layers[layers.length - 1];
+    }
+
+    @Override
+    public void evaluate(double[] input, double[] output) {
+        // A pruned input would not be read, so a short input could go unnoticed
+        if (input.length != layers[0] || output.length != layers[layers.length - 1]) {
+            throw new IllegalArgumentException("Expected " + layers[0] + " inputs and " + layers[layers.length - 1]
+                    + " outputs, got " + input.length + " and " + output.length);
+        }
+
+        double[] in = input;
+
+        for (int i = 0; i < layers.length - 1; i++) {
+            final int rows = layers[i + 1];
+            final int[] pointers = rowPointers[i];
+            final int[] cols = columns[i];
+            final double[] w = values[i];
+            final double[] b = biases[i];
+            final double[] out = (i == layers.length - 2) ? output : activations[i + 1];
+
+            for (int j = 0; j < rows; j++) {
+                double sum = 0;
+                for (int p = pointers[j]; p < pointers[j + 1]; p++) {
+                    sum += w[p] * in[cols[p]];
+                }
+                out[j] = sum + b[j];
+            }
+            activationFunctions[i].apply(out, out, 0, rows);
+
+            in = out;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.metrics;
+
+/**
+ * Statistics of a generation of a neuroevolution environment.
+ *
+ * @author Javier Orbe
+ */
+public final class GenerationStatistics {
+
+    private final int generation;
+    private final double bestScore;
+    private final double meanScore;
+    private final double worstScore;
+    private final double fitnessEntropy;
+    private final long selectionNanos;
+
+    /**
+     * Construct the statistics of a generation.
+     *
+     * @param generation the generation number.
+     * @param bestScore the best score.
+     * @param meanScore the mean score.
+     * @param worstScore the worst score.
+     * @param fitnessEntropy the entropy of the fitness distribution.
+     * @param selectionNanos the time it took to create the next generation, in nanoseconds.
+     */
+    public GenerationStatistics(int generation, double bestScore, double meanScore, double worstScore,
+                                double fitnessEntropy, long selectionNanos) {
+        this.generation = generation;
+        this.bestScore = bestScore;
+        this.meanScore = meanScore;
+        this.worstScore = worstScore;
+        this.fitnessEntropy = fitnessEntropy;
+        this.selectionNanos = selectionNanos;
+    }
+
+    /**
+     * Returns the generation number.
+     *
+     * @return the generation number.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the best score of the generation.
+     *
+     * @return the best score.
+     */
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Returns the mean score of the generation.
+     *
+     * @return the mean score.
+     */
+    public double getMeanScore() {
+        return meanScore;
+    }
+
+    /**
+     * Returns the worst score of the generation.
+     *
+     * @return the worst score.
+     */
+    public double getWorstScore() {
+        return worstScore;
+    }
+
+    /**
+     * Returns the entropy of the fitness distribution, in nats. It is {@code ln(n)}
+     * when every element is equally fit and it decreases as a few elements dominate.
+     *
+     * @return the entropy of the fitness distribution.
+     */
+    public double getFitnessEntropy() {
+        return fitnessEntropy;
+    }
+
+    /**
+     * Returns the time it took to select the parents and create the next generation.
+     *
+     * @return the selection time, in nanoseconds.
+     */
+    public long getSelectionNanos() {
+        return selectionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "GenerationStatistics{generation=" + generation
+                + ", best=" + bestScore
+                + ", mean=" + meanScore
+                + ", worst=" + worstScore
+                + ", entropy=" + fitnessEntropy
+                + ", selectionNanos=" + selectionNanos + "}";
+    }
+}
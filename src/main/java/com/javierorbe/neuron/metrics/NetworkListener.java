@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.metrics;
+
+/**
+ * Receives measurements of the operations of a neural network.
+ *
+ * <p>Listeners are called on the threads that evaluate and train the network,
+ * so they must be thread-safe and cheap.
+ *
+ * @author Javier Orbe
+ */
+public interface NetworkListener {
+
+    /**
+     * Called after an input is evaluated.
+     *
+     * @param nanos the time it took, in nanoseconds.
+     */
+    void evaluated(long nanos);
+
+    /**
+     * Called after a layer is computed during an evaluation.
+     *
+     * @param layer the index of the weight layer.
+     * @param nanos the time it took, in nanoseconds.
+     */
+    void layerEvaluated(int layer, long nanos);
+
+    /**
+     * Called after a training step.
+     *
+     * @param nanos the time it took, in nanoseconds.
+     * @param samples the number of samples of the step.
+     * @param loss the sum over the samples of the loss {@code (target - output)^2 / 2}.
+     */
+    void trained(long nanos, int samples, double loss);
+}
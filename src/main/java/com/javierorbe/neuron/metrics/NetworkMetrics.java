@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link NetworkListener} that keeps latency histograms of evaluation,
+ * of each layer and of training, and the running training loss.
+ *
+ * <p>It can be shared by every copy of a network and by several threads.
+ *
+ * @author Javier Orbe
+ */
+public class NetworkMetrics implements NetworkListener {
+
+    private final LatencyHistogram evaluateLatency = new LatencyHistogram();
+    private final LatencyHistogram trainLatency = new LatencyHistogram();
+    private final LatencyHistogram[] layerLatency;
+
+    private final DoubleAdder loss = new DoubleAdder();
+    private final LongAdder samples = new LongAdder();
+
+    /**
+     * Construct the metrics of a network.
+     *
+     * @param layers the number of layers of the network, the input layer included.
+     */
+    public NetworkMetrics(int layers) {
+        layerLatency = new LatencyHistogram[layers - 1];
+        for (int i = 0; i < layerLatency.length; i++) {
+            layerLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void evaluated(long nanos) {
+        evaluateLatency.record(nanos);
+    }
+
+    @Override
+    public void layerEvaluated(int layer, long nanos) {
+        layerLatency[layer].record(nanos);
+    }
+
+    @Override
+    public void trained(long nanos, int samples, double loss) {
+        trainLatency.record(nanos);
+        this.loss.add(loss);
+        this.samples.add(samples);
+    }
+
+    /**
+     * Returns the latency histogram of evaluation.
+     *
+     * @return the latency histogram of evaluation.
+     */
+    public LatencyHistogram getEvaluateLatency() {
+        return evaluateLatency;
+    }
+
+    /**
+     * Returns the latency histogram of training steps.
+     *
+     * @return the latency histogram of training steps.
+     */
+    public LatencyHistogram getTrainLatency() {
+        return trainLatency;
+    }
+
+    /**
+     * Returns the latency histogram of a layer during evaluation.
+     *
+     * @param layer the index of the weight layer.
+     * @return the latency histogram of the layer.
+     */
+    public LatencyHistogram getLayerLatency(int layer) {
+        return layerLatency[layer];
+    }
+
+    /**
+     * Returns the mean loss per sample since the last call to {@link #resetLoss()}.
+     *
+     * @return the mean loss per sample, or 0 if there were no training steps.
+     */
+    public double getMeanLoss() {
+        long count = samples.sum();
+        return (count == 0) ? 0 : loss.sum() / count;
+    }
+
+    /**
+     * Start a new window of the running training loss.
+     */
+    public void resetLoss() {
+        loss.reset();
+        samples.reset();
+    }
+}
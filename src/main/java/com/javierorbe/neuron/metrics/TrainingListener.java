@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.metrics;
+
+/**
+ * Receives the progress of a {@link com.javierorbe.neuron.TrainingSession}.
+ *
+ * @author Javier Orbe
+ */
+public interface TrainingListener {
+
+    /**
+     * Called on the training thread after every epoch.
+     *
+     * @param epoch the number of the epoch, starting at one.
+     * @param loss the mean over the samples of the loss {@code (target - output)^2 / 2},
+     *             each one computed in the forward pass of its batch.
+     */
+    void epochCompleted(int epoch, double loss);
+
+    /**
+     * Called on the validation thread after the validation samples are evaluated.
+     *
+     * @param epoch the number of the epoch after which the weights were taken.
+     * @param loss the mean over the validation samples of the loss {@code (target - output)^2 / 2}.
+     * @param improved whether the loss is the best one so far.
+     */
+    void validated(int epoch, double loss, boolean improved);
+}
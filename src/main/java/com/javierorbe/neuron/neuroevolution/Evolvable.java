@@ -63,6 +63,20 @@ public abstract class Evolvable<T> {
      */
     protected abstract T getMutatedCopy();
 
+    /**
+     * Create an element of the same kind as this one with the given neural network.
+     * It is used instead of {@link #getMutatedCopy()} when the environment keeps the
+     * parameters of the population in a {@link com.javierorbe.neuron.ParameterArena},
+     * in which case the network is already a mutated copy of the brain of this element.
+     *
+     * @param brain the neural network of the new element.
+     * @return a new element.
+     * @throws UnsupportedOperationException if the element does not support it.
+     */
+    protected T createChild(NeuralNetwork brain) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not override createChild");
+    }
+
     double getScore() {
         return score;
     }
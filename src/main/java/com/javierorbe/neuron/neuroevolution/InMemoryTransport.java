@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A transport between islands that run in threads of the same process. The
+ * migrants are copied into lock-free queues, one per island, with no serialization.
+ *
+ * @author Javier Orbe
+ */
+public final class InMemoryTransport implements MigrationTransport {
+
+    private final List<Queue<NeuralNetwork>> queues;
+    private final int island;
+
+    private InMemoryTransport(List<Queue<NeuralNetwork>> queues, int island) {
+        this.queues = queues;
+        this.island = island;
+    }
+
+    /**
+     * Create connected endpoints for a number of islands.
+     *
+     * @param islands the number of islands.
+     * @return the endpoint of each island.
+     */
+    public static List<MigrationTransport> create(int islands) {
+        List<Queue<NeuralNetwork>> queues = new ArrayList<>(islands);
+        for (int i = 0; i < islands; i++) {
+            queues.add(new ConcurrentLinkedQueue<>());
+        }
+        queues = Collections.unmodifiableList(queues);
+
+        List<MigrationTransport> endpoints = new ArrayList<>(islands);
+        for (int i = 0; i < islands; i++) {
+            endpoints.add(new InMemoryTransport(queues, i));
+        }
+        return endpoints;
+    }
+
+    @Override
+    public void send(int island, List<NeuralNetwork> migrants) {
+        Queue<NeuralNetwork> queue = queues.get(island);
+        for (NeuralNetwork migrant : migrants) {
+            queue.add(migrant.copy());
+        }
+    }
+
+    @Override
+    public List<NeuralNetwork> receive() {
+        Queue<NeuralNetwork> queue = queues.get(island);
+        List<NeuralNetwork> migrants = new ArrayList<>();
+        for (NeuralNetwork migrant = queue.poll(); migrant != null; migrant = queue.poll()) {
+            migrants.add(migrant);
+        }
+        return migrants;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An island of an island model: a neuroevolution environment that periodically
+ * sends the networks of its best elements to other islands, and replaces its worst
+ * elements with the networks that arrive from them.
+ *
+ * <p>The islands may run in threads of the same process, using an {@link InMemoryTransport},
+ * or in different processes, using a {@link SocketTransport} or a {@link MappedFileTransport}.
+ * The migrants are turned into elements with {@link Evolvable#createChild(NeuralNetwork)},
+ * so every network must have the same layers. A destination that cannot be reached
+ * does not stop the island: its migrants are dropped and counted by {@link #getLost()}.
+ *
+ * @param <T> the type of the elements of the population.
+ *
+ * @author Javier Orbe
+ * @see IslandModel
+ */
+public class Island<T extends Evolvable<T>> {
+
+    private final int id;
+    private final int islands;
+    private final NeuroEvolution<T> environment;
+    private final MigrationTransport transport;
+
+    private int interval = 10;
+    private int migrants = 1;
+    private MigrationTopology topology = MigrationTopology.RING;
+
+    private long sent;
+    private long lost;
+    private long received;
+
+    /**
+     * Construct an island.
+     *
+     * @param id the index of the island.
+     * @param islands the number of islands.
+     * @param environment the neuroevolution environment of the island.
+     * @param transport the endpoint of the island.
+     * @throws IllegalArgumentException if {@code id} is not in {@code [0, islands)}.
+     */
+    public Island(int id, int islands, NeuroEvolution<T> environment, MigrationTransport transport) {
+        if (id < 0 || id >= islands) {
+            throw new IllegalArgumentException("The island " + id + " is not in [0, " + islands + ")");
+        }
+        this.id = id;
+        this.islands = islands;
+        this.environment = environment;
+        this.transport = transport;
+    }
+
+    /**
+     * Set how the elements migrate. By default, the best element of each island is
+     * sent to the next one every 10 generations.
+     *
+     * @param interval the number of generations between migrations.
+     * @param migrants the number of elements sent to each destination.
+     * @param topology the islands to which the elements are sent.
+     * @throws IllegalArgumentException if {@code interval} is not positive or {@code migrants} is negative.
+     */
+    public void setMigration(int interval, int migrants, MigrationTopology topology) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The migration interval must be positive: " + interval);
+        }
+        if (migrants < 0) {
+            throw new IllegalArgumentException("The number of migrants cannot be negative: " + migrants);
+        }
+        this.interval = interval;
+        this.migrants = migrants;
+        this.topology = topology;
+    }
+
+    /**
+     * Returns the index of the island.
+     *
+     * @return the index of the island.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the neuroevolution environment of the island.
+     *
+     * @return the neuroevolution environment of the island.
+     */
+    public NeuroEvolution<T> getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Returns the number of networks sent to other islands.
+     *
+     * @return the number of networks sent.
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Returns the number of networks that could not be sent because their
+     * destination could not be reached.
+     *
+     * @return the number of networks lost.
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    /**
+     * Returns the number of networks received from other islands.
+     *
+     * @return the number of networks received.
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Evolve the island one generation: score the population, exchange migrants if
+     * it is time to, and continue to the next generation.
+     *
+     * @param fitnessFunction the function that computes the score of an element.
+     * @throws UncheckedIOException if the transport fails.
+     */
+    public void evolve(ToDoubleFunction<? super T> fitnessFunction) {
+        environment.evaluate(fitnessFunction);
+        if ((environment.getGeneration() + 1) % interval == 0) {
+            try {
+                migrate(fitnessFunction);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Migration failed on island " + id, e);
+            }
+        }
+        environment.nextGeneration();
+    }
+
+    /**
+     * Send the best elements and replace the worst ones with the networks that arrived.
+     */
+    private void migrate(ToDoubleFunction<? super T> fitnessFunction) throws IOException {
+        final List<T> population = environment.getPopulation();
+        if (population.isEmpty()) {
+            return;
+        }
+
+        final double[] scores = new double[population.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = population.get(i).getScore();
+        }
+        final int[] order = Ranking.ascending(scores);
+
+        final int count = Math.min(migrants, order.length);
+        if (count > 0) {
+            List<NeuralNetwork> best = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                best.add(population.get(order[order.length - 1 - i]).getBrain());
+            }
+
+            final Random random = ThreadLocalRandom.current();
+            for (int destination : topology.destinations(id, islands, random)) {
+                try {
+                    transport.send(destination, best);
+                    sent += count;
+                } catch (IOException e) {
+                    // The transport reconnects on the next migration
+                    lost += count;
+                }
+            }
+        }
+
+        final List<NeuralNetwork> arrived = transport.receive();
+        received += arrived.size();
+
+        // The worst elements are replaced, but never the best ones that were just sent
+        final int replaced = Math.min(arrived.size(), order.length - count);
+        for (int i = 0; i < replaced; i++) {
+            T worst = population.get(order[i]);
+            T migrant = worst.createChild(arrived.get(i));
+            migrant.setScore(fitnessFunction.applyAsDouble(migrant));
+            population.set(order[i], migrant);
+        }
+    }
+}
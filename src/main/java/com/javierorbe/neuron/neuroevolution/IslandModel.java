@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs the islands of the same process concurrently, each one in its own task.
+ * Islands of other processes are run by an {@link IslandModel} in each process,
+ * and only meet through their {@link MigrationTransport}.
+ *
+ * @param <T> the type of the elements of the population.
+ *
+ * @author Javier Orbe
+ * @see Island
+ */
+public class IslandModel<T extends Evolvable<T>> {
+
+    private final List<Island<T>> islands;
+    private final ExecutorService executor;
+
+    /**
+     * Construct an island model.
+     *
+     * @param islands the islands of this process.
+     * @param executor the executor, with a thread for every island, or {@code null}
+     *                 to evolve the islands in turns on the calling thread.
+     */
+    public IslandModel(List<Island<T>> islands, ExecutorService executor) {
+        this.islands = new ArrayList<>(islands);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the islands of this process.
+     *
+     * @return the islands of this process.
+     */
+    public List<Island<T>> getIslands() {
+        return islands;
+    }
+
+    /**
+     * Evolve every island a number of generations.
+     *
+     * @param generations the number of generations.
+     * @param fitnessFunction the function that computes the score of an element.
+     */
+    public void run(int generations, ToDoubleFunction<? super T> fitnessFunction) {
+        if (executor == null) {
+            for (int g = 0; g < generations; g++) {
+                for (Island<T> island : islands) {
+                    island.evolve(fitnessFunction);
+                }
+            }
+            return;
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>(islands.size());
+        for (Island<T> island : islands) {
+            callables.add(() -> {
+                for (int g = 0; g < generations; g++) {
+                    island.evolve(fitnessFunction);
+                }
+                return null;
+            });
+        }
+
+        Tasks.invokeAll(executor, callables);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.ModelFormat;
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transport between islands that run in processes of the same host, through
+ * memory-mapped files in a shared directory.
+ *
+ * <p>Each island has a mailbox directory. A batch of migrants is written in
+ * {@link ModelFormat} into a mapped file, which is then renamed into the mailbox
+ * of the destination, so the receiver never sees a half-written batch. The receiver
+ * maps the file, reads the networks with a bulk copy of their parameters and deletes it.
+ * A file that cannot be read is renamed with the suffix {@value #BAD_SUFFIX}, so it is
+ * kept for inspection but does not stop the migrations that follow.
+ *
+ * @author Javier Orbe
+ */
+public final class MappedFileTransport implements MigrationTransport {
+
+    private static final String SUFFIX = ".mig";
+
+    /**
+     * Suffix added to the files of the mailbox that do not hold networks in {@link ModelFormat}.
+     */
+    private static final String BAD_SUFFIX = ".bad";
+
+    private final Path directory;
+    private final int island;
+    private final AtomicLong sequence = new AtomicLong(System.nanoTime());
+
+    /**
+     * Construct the endpoint of an island.
+     *
+     * @param directory the directory shared by every island.
+     * @param island the index of the island.
+     * @throws IOException if the mailbox of the island cannot be created.
+     */
+    public MappedFileTransport(Path directory, int island) throws IOException {
+        this.directory = directory;
+        this.island = island;
+        Files.createDirectories(mailbox(island));
+    }
+
+    @Override
+    public void send(int island, List<NeuralNetwork> migrants) throws IOException {
+        if (migrants.isEmpty()) {
+            return;
+        }
+
+        long size = 0;
+        for (NeuralNetwork migrant : migrants) {
+            size += ModelFormat.size(migrant);
+        }
+
+        Path mailbox = mailbox(island);
+        Files.createDirectories(mailbox);
+        String name = this.island + "-" + sequence.getAndIncrement();
+        Path temp = mailbox.resolve(name + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (NeuralNetwork migrant : migrants) {
+                ModelFormat.write(migrant, buffer);
+            }
+        }
+        Files.move(temp, mailbox.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<NeuralNetwork> receive() throws IOException {
+        List<NeuralNetwork> migrants = new ArrayList<>();
+        List<Path> read = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(mailbox(island), "*" + SUFFIX)) {
+            for (Path file : files) {
+                IllegalArgumentException malformed = null;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    while (buffer.hasRemaining()) {
+                        migrants.add(ModelFormat.read(buffer));
+                    }
+                } catch (IllegalArgumentException e) {
+                    malformed = e;
+                }
+
+                if (malformed != null) {
+                    // Out of the way of the next receive; the files read so far are left for it
+                    Path bad = file.resolveSibling(file.getFileName() + BAD_SUFFIX);
+                    Files.move(file, bad, StandardCopyOption.REPLACE_EXISTING);
+                    throw new IOException("Malformed migration file, moved to " + bad, malformed);
+                }
+                read.add(file);
+            }
+        }
+
+        for (Path file : read) {
+            Files.delete(file);
+        }
+        return migrants;
+    }
+
+    private Path mailbox(int island) {
+        return directory.resolve("island-" + island);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import java.util.Random;
+
+/**
+ * The islands to which each island of an island model sends its migrants.
+ *
+ * @author Javier Orbe
+ */
+public enum MigrationTopology {
+
+    /**
+     * Each island sends to the next one, and the last one to the first one.
+     */
+    RING {
+        @Override
+        public int[] destinations(int island, int islands, Random random) {
+            return (islands > 1) ? new int[] {(island + 1) % islands} : new int[0];
+        }
+    },
+
+    /**
+     * Each island sends to every other island.
+     */
+    FULLY_CONNECTED {
+        @Override
+        public int[] destinations(int island, int islands, Random random) {
+            int[] destinations = new int[Math.max(0, islands - 1)];
+            for (int i = 0, n = 0; i < islands; i++) {
+                if (i != island) {
+                    destinations[n++] = i;
+                }
+            }
+            return destinations;
+        }
+    },
+
+    /**
+     * Each island sends to another island chosen at random every time.
+     */
+    RANDOM {
+        @Override
+        public int[] destinations(int island, int islands, Random random) {
+            if (islands <= 1) {
+                return new int[0];
+            }
+            int destination = random.nextInt(islands - 1);
+            return new int[] {(destination < island) ? destination : destination + 1};
+        }
+    };
+
+    /**
+     * Returns the islands to which an island sends its migrants.
+     *
+     * @param island the index of the island.
+     * @param islands the number of islands.
+     * @param random the random number generator.
+     * @return the indices of the destination islands.
+     */
+    public abstract int[] destinations(int island, int islands, Random random);
+}
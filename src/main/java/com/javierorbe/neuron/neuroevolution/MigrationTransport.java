@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Carries the networks of migrating elements between the islands of an island model.
+ * Each island has its own endpoint.
+ *
+ * @author Javier Orbe
+ * @see Island
+ */
+public interface MigrationTransport extends Closeable {
+
+    /**
+     * Send networks to another island. The networks are copied, so they can change
+     * afterwards. This method does not wait for the other island.
+     *
+     * @param island the index of the destination island.
+     * @param migrants the networks.
+     * @throws IOException if an I/O error occurs.
+     */
+    void send(int island, List<NeuralNetwork> migrants) throws IOException;
+
+    /**
+     * Take the networks that arrived at this island since the last call,
+     * without waiting for more.
+     *
+     * @return the networks, which may be an empty list.
+     * @throws IOException if an I/O error occurs.
+     */
+    List<NeuralNetwork> receive() throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
@@ -22,12 +22,31 @@
 
 package com.javierorbe.neuron.neuroevolution;
 
+import com.javierorbe.neuron.Crossover;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.ParameterArena;
+import com.javierorbe.neuron.Tasks;
+import com.javierorbe.neuron.metrics.EvolutionListener;
+import com.javierorbe.neuron.metrics.GenerationStatistics;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Represents a neuroevolution environment.
  *
+ * <p>By default every step runs on the calling thread. When an executor is given,
+ * the population is scored and the offspring are created on its threads, so
+ * {@link Evolvable#getMutatedCopy()} and the fitness function must be safe to call
+ * concurrently on different elements.
+ *
  * @param <T> The type of the elements of the population.
  *
  * @author Javier Orbe
@@ -35,13 +54,43 @@ import java.util.List;
  */
 public abstract class NeuroEvolution<T extends Evolvable<T>> {
 
+    /**
+     * Number of tasks per available processor when work is split among the executor threads.
+     */
+    private static final int TASKS_PER_PROCESSOR = 4;
+
     private List<T> population = new ArrayList<>();
     private int generation = 0;
 
+    private final ExecutorService executor;
+
+    private SelectionStrategy selectionStrategy = new RouletteSelection();
+    private int elitism = 0;
+
+    private EvolutionListener listener;
+
+    private double mutationRate = Double.NaN;
+    private ParameterArena arena;
+
+    private Crossover crossover;
+    private double crossoverRate;
+    private Speciation speciation;
+
     /**
      * Construct a neuroevolution environment.
      */
-    public NeuroEvolution() {}
+    public NeuroEvolution() {
+        this(null);
+    }
+
+    /**
+     * Construct a neuroevolution environment that runs on the given executor.
+     *
+     * @param executor the executor, or {@code null} to run on the calling thread.
+     */
+    public NeuroEvolution(ExecutorService executor) {
+        this.executor = executor;
+    }
 
     /**
      * Returns a list with the population elements.
@@ -61,13 +110,158 @@ public abstract class NeuroEvolution<T extends Evolvable<T>> {
         return generation;
     }
 
+    /**
+     * Set the strategy that selects the parents of each generation.
+     * By default, parents are selected proportionally to their fitness.
+     *
+     * @param selectionStrategy the selection strategy.
+     */
+    public void setSelectionStrategy(SelectionStrategy selectionStrategy) {
+        this.selectionStrategy = selectionStrategy;
+    }
+
+    /**
+     * Set the number of elements with the biggest fitness that are carried over
+     * to the next generation without being mutated. Their score is reset.
+     *
+     * @param elitism the number of elements carried over.
+     * @throws IllegalArgumentException if {@code elitism} is negative.
+     */
+    public void setElitism(int elitism) {
+        if (elitism < 0) {
+            throw new IllegalArgumentException("The number of elite elements cannot be negative: " + elitism);
+        }
+        this.elitism = elitism;
+    }
+
+    /**
+     * Keep the parameters of the population in a {@link ParameterArena}, reused between
+     * generations. The offspring are created by copying the parameters of the parent
+     * into the arena, mutating them in place like {@link NeuralNetwork#mutate(double)},
+     * and calling {@link Evolvable#createChild(NeuralNetwork)} instead of
+     * {@link Evolvable#getMutatedCopy()}. Every element must have a brain with the same layers.
+     *
+     * <p>The networks of a generation are overwritten two generations later,
+     * so keep a {@link NeuralNetwork#copy()} of those that are needed for longer.
+     *
+     * @param mutationRate the probability of mutating each parameter.
+     * @throws IllegalArgumentException if {@code mutationRate} is not in {@code [0, 1]}.
+     */
+    public void useParameterArena(double mutationRate) {
+        if (!(mutationRate >= 0 && mutationRate <= 1)) {
+            throw new IllegalArgumentException("The mutation rate must be in [0, 1]: " + mutationRate);
+        }
+        this.mutationRate = mutationRate;
+    }
+
+    /**
+     * Create part of the offspring by crossing two parents. The second parent is selected
+     * like the first one, or among the elements of the same species if speciation is enabled.
+     * The child is created with {@link Evolvable#createChild(NeuralNetwork)} on the first parent,
+     * and its network is mutated at the rate given to {@link #useParameterArena(double)}, if any.
+     *
+     * @param crossover the crossover operator, or {@code null} to only create mutated copies.
+     * @param rate the probability of creating each child by crossover.
+     * @throws IllegalArgumentException if {@code rate} is not in {@code [0, 1]}.
+     */
+    public void setCrossover(Crossover crossover, double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("The crossover rate must be in [0, 1]: " + rate);
+        }
+        this.crossover = crossover;
+        this.crossoverRate = rate;
+    }
+
+    /**
+     * Group the population into species by the distance between the parameters of
+     * their networks, and share the fitness of each element among its species, so
+     * that a species cannot take over the population before others have improved.
+     * Every element must have a brain with the same layers.
+     *
+     * @param threshold the maximum distance between an element and the representative
+     *                  of its species, or zero to disable speciation.
+     * @throws IllegalArgumentException if {@code threshold} is negative.
+     * @see NeuralNetwork#distance(NeuralNetwork)
+     */
+    public void setSpeciation(double threshold) {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException("The speciation threshold cannot be negative: " + threshold);
+        }
+        this.speciation = (threshold > 0) ? new Speciation(threshold) : null;
+    }
+
+    /**
+     * Returns the number of species of the last generation.
+     *
+     * @return the number of species, or zero if speciation is disabled.
+     */
+    public int getSpeciesCount() {
+        return (speciation != null) ? speciation.getSpeciesCount() : 0;
+    }
+
+    /**
+     * Set the listener that receives the statistics of every generation.
+     *
+     * @param listener the listener, or {@code null} to stop computing statistics.
+     */
+    public void setListener(EvolutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Score every element of the population, replacing its current score.
+     *
+     * @param fitnessFunction the function that computes the score of an element.
+     */
+    public void evaluate(ToDoubleFunction<? super T> fitnessFunction) {
+        final List<T> pop = population;
+        forEachIndex(pop.size(), i -> {
+            T elem = pop.get(i);
+            elem.setScore(fitnessFunction.applyAsDouble(elem));
+        });
+    }
+
     /**
      * Continue to the next generation.
      */
     public void nextGeneration() {
+        final EvolutionListener l = listener;
+        if (l == null) {
+            normalizeFitness();
+            population = generatePopulation();
+            generation++;
+            return;
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        double worst = Double.POSITIVE_INFINITY;
+        double sum = 0;
+        for (T elem : population) {
+            best = Math.max(best, elem.getScore());
+            worst = Math.min(worst, elem.getScore());
+            sum += elem.getScore();
+        }
+
         normalizeFitness();
-        population = generatePopulation();
+
+        double entropy = 0;
+        for (T elem : population) {
+            double fitness = elem.getFitness();
+            if (fitness > 0) {
+                entropy -= fitness * Math.log(fitness);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<T> newPopulation = generatePopulation();
+        long selectionNanos = System.nanoTime() - start;
+
+        GenerationStatistics statistics = new GenerationStatistics(generation, best,
+                population.isEmpty() ? 0 : sum / population.size(), worst, entropy, selectionNanos);
+
+        population = newPopulation;
         generation++;
+        l.generationCompleted(statistics);
     }
 
     /**
@@ -76,46 +270,174 @@ public abstract class NeuroEvolution<T extends Evolvable<T>> {
      * @return a list of the new elements of the population.
      */
     private List<T> generatePopulation() {
-        List<T> newPop = new ArrayList<>();
+        final List<T> pop = population;
+        @SuppressWarnings("unchecked")
+        final T[] newPop = (T[]) new Evolvable<?>[pop.size()];
 
-        for (int i = 0; i < population.size(); i++) {
-            newPop.add(poolSelection());
+        final double[] fitness = new double[pop.size()];
+        for (int i = 0; i < fitness.length; i++) {
+            fitness[i] = pop.get(i).getFitness();
         }
 
-        return newPop;
+        final ParameterArena parameters = prepareArena();
+
+        final int elite = Math.min(elitism, newPop.length);
+        if (elite > 0) {
+            int[] order = Ranking.ascending(fitness);
+            for (int i = 0; i < elite; i++) {
+                newPop[i] = pop.get(order[order.length - 1 - i]);
+                newPop[i].setScore(0);
+            }
+        }
+
+        if (parameters != null) {
+            // The elites are moved first, since they can be the parents of the other elements
+            for (int i = 0; i < elite; i++) {
+                parameters.relocate(newPop[i].getBrain(), i);
+            }
+        }
+
+        final SelectionStrategy.Selector selector = selectionStrategy.prepare(fitness);
+        final SelectionStrategy.Selector[] mates = (crossover != null && speciation != null)
+                ? prepareSpeciesSelectors(fitness) : null;
+        final Crossover cross = crossover;
+        final double crossRate = crossoverRate;
+        final double rate = mutationRate;
+
+        forEachIndex(newPop.length - elite, i -> {
+            final Random random = ThreadLocalRandom.current();
+            final int slot = elite + i;
+            final int first = selector.select(random);
+            final T parent = pop.get(first);
+
+            if (cross != null && random.nextDouble() < crossRate) {
+                int second;
+                if (mates != null) {
+                    int species = speciation.getSpecies(first);
+                    second = speciation.getMembers(species)[mates[species].select(random)];
+                } else {
+                    second = selector.select(random);
+                }
+
+                NeuralNetwork mate = pop.get(second).getBrain();
+                NeuralNetwork brain = (parameters != null)
+                        ? parameters.cross(parent.getBrain(), mate, cross, slot, random)
+                        : cross.apply(parent.getBrain(), mate, random);
+                if (!Double.isNaN(rate)) {
+                    brain.mutate(rate);
+                }
+                newPop[slot] = parent.createChild(brain);
+            } else if (parameters != null) {
+                newPop[slot] = parent.createChild(parameters.mutatedCopy(parent.getBrain(), slot, rate));
+            } else {
+                newPop[slot] = parent.getMutatedCopy();
+            }
+        });
+
+        return new ArrayList<>(Arrays.asList(newPop));
+    }
+
+    /**
+     * Prepare a selector for each species, over the fitness of its elements.
+     *
+     * @param fitness the fitness of every element of the population.
+     * @return the selector of each species, which returns the position of an element in the species.
+     */
+    private SelectionStrategy.Selector[] prepareSpeciesSelectors(double[] fitness) {
+        SelectionStrategy.Selector[] selectors = new SelectionStrategy.Selector[speciation.getSpeciesCount()];
+        for (int s = 0; s < selectors.length; s++) {
+            int[] members = speciation.getMembers(s);
+            double[] speciesFitness = new double[members.length];
+            for (int k = 0; k < members.length; k++) {
+                speciesFitness[k] = fitness[members[k]];
+            }
+            selectors[s] = selectionStrategy.prepare(speciesFitness);
+        }
+        return selectors;
+    }
+
+    /**
+     * Switch the arena to the buffer for the next generation, creating a new arena
+     * if there is none or if it does not fit the population.
+     *
+     * @return the arena, or {@code null} if the population does not use one.
+     */
+    private ParameterArena prepareArena() {
+        if (Double.isNaN(mutationRate) || population.isEmpty()) {
+            return null;
+        }
+
+        final NeuralNetwork template = population.get(0).getBrain();
+        if (arena == null || arena.getCapacity() != population.size() || !arena.accepts(template)) {
+            arena = new ParameterArena(template, population.size());
+        } else {
+            arena.swap();
+        }
+        return arena;
     }
 
     /**
      * Normalize the fitness for every element of the population.
      * First, the score is reevaluated.
      * The fitness of each element is calculated dividing the score by the
-     * sum of the scores of every element.
+     * sum of the scores of every element. If every score is zero, all the
+     * elements get the same fitness. With speciation, the score of each
+     * element is divided by the size of its species before normalizing.
      */
     private void normalizeFitness() {
+        final List<T> pop = population;
+        if (speciation != null) {
+            speciation.assign(pop, this::forEachIndex);
+        }
+
         // Score is exponentially better
-        double scoreSum = population.stream().mapToDouble((elem) -> {
+        double scoreSum = 0;
+        for (int i = 0; i < pop.size(); i++) {
+            T elem = pop.get(i);
             double score = elem.getScore() * elem.getScore();
             elem.setScore(score);
-            return score;
-        }).sum();
 
-        population.forEach((elem) -> elem.setFitness(elem.getScore() / scoreSum));
+            if (speciation != null) {
+                score /= speciation.getMembers(speciation.getSpecies(i)).length;
+            }
+            elem.setFitness(score);
+            scoreSum += score;
+        }
+
+        for (T elem : pop) {
+            elem.setFitness((scoreSum > 0) ? elem.getFitness() / scoreSum : 1.0 / pop.size());
+        }
     }
 
     /**
-     * Select a random population element, based on its fitness.
-     * Elements with bigger fitness have more chances of being selected.
+     * Run an action for every index in {@code [0, size)}, on the executor if there is one.
      *
-     * @return the selected population element.
+     * @param size the number of indices.
+     * @param action the action.
      */
-    private T poolSelection() {
-        int index = 0;
-        double rand = Math.random();
-        while (rand > 0) {
-            rand -= population.get(index).getFitness();
-            index += 1;
+    private void forEachIndex(int size, IntConsumer action) {
+        if (executor == null || size <= 1) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+            return;
+        }
+
+        final int tasks = Math.min(size, TASKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+        final int chunk = (size + tasks - 1) / tasks;
+
+        List<Callable<Void>> callables = new ArrayList<>(tasks);
+        for (int from = 0; from < size; from += chunk) {
+            final int start = from;
+            final int end = Math.min(size, from + chunk);
+            callables.add(() -> {
+                for (int i = start; i < end; i++) {
+                    action.accept(i);
+                }
+                return null;
+            });
         }
-        index -= 1;
-        return population.get(index).getMutatedCopy();
+
+        Tasks.invokeAll(executor, callables);
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+/**
+ * Linear rank selection. The elements are sorted by fitness and each one is
+ * selected with a probability proportional to its rank, from 1 for the worst
+ * to {@code n} for the best, regardless of how far apart their fitness are.
+ *
+ * <p>The ranks are computed once per generation, and every selection takes
+ * constant time by inverting the cumulative distribution of the ranks.
+ *
+ * @author Javier Orbe
+ */
+public class RankSelection implements SelectionStrategy {
+
+    @Override
+    public Selector prepare(double[] fitness) {
+        final int[] order = Ranking.ascending(fitness);
+        final double total = (double) order.length * (order.length + 1) / 2;
+
+        return random -> {
+            // The first r ranks add up to r * (r + 1) / 2
+            double value = random.nextDouble() * total;
+            int rank = (int) ((Math.sqrt(8 * value + 1) - 1) / 2);
+            return order[Math.min(rank, order.length - 1)];
+        };
+    }
+}
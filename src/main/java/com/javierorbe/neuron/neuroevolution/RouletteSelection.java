@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import java.util.Arrays;
+
+/**
+ * Fitness-proportionate selection. Each element is selected with a probability
+ * equal to its fitness.
+ *
+ * <p>The cumulative fitness is computed once per generation and every selection
+ * is a binary search on it, so selecting a whole population takes {@code O(n log(n))}.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://en.wikipedia.org/wiki/Fitness_proportionate_selection" target="_top">Fitness proportionate selection in Wikipedia</a>
+ */
+public class RouletteSelection implements SelectionStrategy {
+
+    @Override
+    public Selector prepare(double[] fitness) {
+        final double[] cumulative = new double[fitness.length];
+        double sum = 0;
+        for (int i = 0; i < fitness.length; i++) {
+            sum += fitness[i];
+            cumulative[i] = sum;
+        }
+
+        final double total = sum;
+        if (!(total > 0)) {
+            return random -> random.nextInt(fitness.length);
+        }
+
+        return random -> {
+            // Scaled by the actual total, so rounding errors cannot run past the last element
+            double value = random.nextDouble() * total;
+            int index = Arrays.binarySearch(cumulative, value);
+            index = (index >= 0) ? index + 1 : -index - 1;
+            return Math.min(index, cumulative.length - 1);
+        };
+    }
+}
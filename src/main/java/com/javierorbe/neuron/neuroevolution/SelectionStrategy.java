@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import java.util.Random;
+
+/**
+ * Strategy that chooses the parents of the next generation.
+ *
+ * <p>The strategy is prepared once per generation with the fitness of every
+ * element of the population, and the returned {@link Selector} is then used
+ * to draw every parent. Selectors are only read after they are built, so they
+ * can be shared by the threads that create the offspring.
+ *
+ * @author Javier Orbe
+ */
+@FunctionalInterface
+public interface SelectionStrategy {
+
+    /**
+     * Prepare the selection of a generation.
+     *
+     * @param fitness the fitness of each element of the population, which add up to 1.
+     * @return the selector of the generation.
+     */
+    Selector prepare(double[] fitness);
+
+    /**
+     * Draws elements of a population.
+     */
+    @FunctionalInterface
+    interface Selector {
+
+        /**
+         * Select an element of the population.
+         *
+         * @param random the random number generator.
+         * @return the index of the selected element.
+         */
+        int select(Random random);
+    }
+}
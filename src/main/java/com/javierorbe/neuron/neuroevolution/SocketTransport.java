@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.ModelFormat;
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A transport between islands that run in different processes, over TCP sockets.
+ *
+ * <p>Every island listens on its own address. A batch of migrants is sent as a frame
+ * with its length followed by the networks in {@link ModelFormat}, written straight
+ * into a direct buffer. Neither side blocks: {@link #send(int, List)} writes as much
+ * of the frame as the socket accepts and queues the rest, which is flushed by the
+ * following calls to {@link #receive()} and sends to the same island, so islands that
+ * send before receiving never wait on each other, whatever the size of the frames.
+ * {@link #receive()} also accepts new connections and decodes the frames that have
+ * arrived completely. Only opening a connection to another island blocks, until the
+ * operating system of that island accepts it.
+ *
+ * <p>If a connection fails, its queued frames are dropped and the next migration to
+ * that island opens a new one. An incoming connection that fails or sends a malformed
+ * frame, or one larger than {@link #setMaxFrameSize(int) the maximum}, is closed; the
+ * migrants decoded before from it are kept.
+ *
+ * @author Javier Orbe
+ */
+public final class SocketTransport implements MigrationTransport {
+
+    /**
+     * Initial size of the buffer of each incoming connection.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default maximum size of the networks of a frame, in bytes.
+     */
+    private static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    private final List<InetSocketAddress> addresses;
+    private final Connection[] connections;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+
+    private int maxFrameSize = MAX_FRAME_SIZE;
+
+    /**
+     * Construct the endpoint of an island, listening on its address.
+     *
+     * @param island the index of the island.
+     * @param addresses the address of every island.
+     * @throws IOException if the address of the island cannot be bound.
+     */
+    public SocketTransport(int island, List<InetSocketAddress> addresses) throws IOException {
+        this.addresses = new ArrayList<>(addresses);
+        this.connections = new Connection[addresses.size()];
+        this.selector = Selector.open();
+
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(addresses.get(island));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the address on which this island listens, which has the actual port
+     * if the given address had port zero.
+     *
+     * @return the local address.
+     * @throws IOException if an I/O error occurs.
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Set the maximum size of the networks of an incoming frame. A larger frame closes its
+     * connection, so a peer cannot make this island allocate a buffer of any size.
+     * The default is 256 MiB.
+     *
+     * @param maxFrameSize the maximum size in bytes.
+     * @throws IllegalArgumentException if {@code maxFrameSize} is not positive.
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        if (maxFrameSize <= 0 || maxFrameSize > Integer.MAX_VALUE - Integer.BYTES) {
+            throw new IllegalArgumentException("Invalid maximum frame size: " + maxFrameSize);
+        }
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public void send(int island, List<NeuralNetwork> migrants) throws IOException {
+        if (migrants.isEmpty()) {
+            return;
+        }
+
+        int size = 0;
+        for (NeuralNetwork migrant : migrants) {
+            size += ModelFormat.size(migrant);
+        }
+
+        ByteBuffer frame = ByteBuffer.allocateDirect(Integer.BYTES + size).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(size);
+        for (NeuralNetwork migrant : migrants) {
+            ModelFormat.write(migrant, frame);
+        }
+        frame.flip();
+
+        Connection connection = connect(island);
+        connection.pending.add(frame);
+        try {
+            flush(connection);
+        } catch (IOException e) {
+            drop(connection);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<NeuralNetwork> receive() throws IOException {
+        List<NeuralNetwork> migrants = new ArrayList<>();
+        selector.selectNow();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                SocketChannel channel;
+                while ((channel = server.accept()) != null) {
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ,
+                            ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+                }
+            } else if (key.attachment() instanceof Connection) {
+                Connection connection = (Connection) key.attachment();
+                try {
+                    flush(connection);
+                } catch (IOException e) {
+                    // Reconnect on the next migration
+                    drop(connection);
+                }
+            } else if (key.isReadable()) {
+                try {
+                    read(key, migrants);
+                } catch (IOException e) {
+                    // The frames of this connection can no longer be delimited
+                    key.cancel();
+                    key.channel().close();
+                }
+            }
+        }
+        return migrants;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Connection connection : connections) {
+            if (connection != null) {
+                connection.channel.close();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        server.close();
+    }
+
+    private Connection connect(int island) throws IOException {
+        Connection connection = connections[island];
+        if (connection == null) {
+            // The operating system completes it without the other island calling receive
+            SocketChannel channel = SocketChannel.open(addresses.get(island));
+            try {
+                channel.configureBlocking(false);
+                connection = new Connection(island, channel);
+                connection.key = channel.register(selector, 0, connection);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            connections[island] = connection;
+        }
+        return connection;
+    }
+
+    /**
+     * Write the queued frames of a connection until the socket stops accepting bytes,
+     * and wait for it to become writable if any are left.
+     */
+    private static void flush(Connection connection) throws IOException {
+        Deque<ByteBuffer> pending = connection.pending;
+        while (!pending.isEmpty()) {
+            ByteBuffer frame = pending.peek();
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                break;
+            }
+            pending.poll();
+        }
+        connection.key.interestOps(pending.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+    }
+
+    private void drop(Connection connection) throws IOException {
+        if (connections[connection.island] == connection) {
+            connections[connection.island] = null;
+        }
+        connection.channel.close();
+    }
+
+    /**
+     * Read the available bytes of a connection and decode the frames that are complete.
+     */
+    private void read(SelectionKey key, List<NeuralNetwork> migrants) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            buffer.flip();
+            decode(buffer, migrants);
+
+            if (buffer.remaining() >= Integer.BYTES) {
+                // decode checked the size against the maximum, so this does not overflow
+                int needed = Integer.BYTES + buffer.getInt(buffer.position());
+                if (needed > buffer.capacity()) {
+                    buffer = ByteBuffer.allocateDirect(needed).order(ByteOrder.LITTLE_ENDIAN).put(buffer);
+                    key.attach(buffer);
+                    continue;
+                }
+            }
+            buffer.compact();
+        }
+
+        if (read < 0) {
+            key.cancel();
+            channel.close();
+        }
+    }
+
+    private void decode(ByteBuffer buffer, List<NeuralNetwork> migrants) throws IOException {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int size = buffer.getInt(buffer.position());
+            if (size < 0 || size > maxFrameSize) {
+                throw new IOException("Malformed migration frame of " + size + " bytes");
+            }
+            if (buffer.remaining() - Integer.BYTES < size) {
+                return;
+            }
+
+            int end = buffer.position() + Integer.BYTES + size;
+            ByteBuffer frame = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            frame.position(buffer.position() + Integer.BYTES).limit(end);
+            // The networks of a frame are kept only if all of them can be read
+            List<NeuralNetwork> networks = new ArrayList<>();
+            try {
+                while (frame.hasRemaining()) {
+                    networks.add(ModelFormat.read(frame));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed migration frame", e);
+            }
+            migrants.addAll(networks);
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * An outgoing connection to another island, with the frames not written yet.
+     */
+    private static final class Connection {
+
+        private final int island;
+        private final SocketChannel channel;
+        private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+        private SelectionKey key;
+
+        private Connection(int island, SocketChannel channel) {
+            this.island = island;
+            this.channel = channel;
+        }
+    }
+}
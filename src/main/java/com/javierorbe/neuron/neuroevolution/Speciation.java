@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.NeuralNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Groups the elements of a population into species by the distance between
+ * the parameters of their networks.
+ *
+ * <p>Each species has a representative, taken from the previous generation. An element
+ * belongs to the first species whose representative is closer than the threshold, and
+ * elements that are far from every representative start new species. The species and
+ * the distance of every element to its representative are kept until the next generation.
+ *
+ * @author Javier Orbe
+ */
+class Speciation {
+
+    private final double threshold;
+
+    private List<NeuralNetwork> representatives = new ArrayList<>();
+    private int[] species = new int[0];
+    private double[] distances = new double[0];
+    private int[][] members = new int[0][];
+
+    /**
+     * Construct a speciation.
+     *
+     * @param threshold the maximum distance between an element and the representative of its species.
+     */
+    Speciation(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Assign every element of a population to a species.
+     *
+     * @param population the population.
+     * @param forEachIndex runs an action for every index of the population, possibly in parallel.
+     */
+    void assign(List<? extends Evolvable<?>> population, BiConsumer<Integer, IntConsumer> forEachIndex) {
+        final int size = population.size();
+        final List<NeuralNetwork> previous = representatives;
+        final int[] assigned = new int[size];
+        final double[] distance = new double[size];
+
+        // Distances to the representatives of the previous generation, which do not change
+        forEachIndex.accept(size, i -> {
+            NeuralNetwork brain = population.get(i).getBrain();
+            assigned[i] = -1;
+            for (int s = 0; s < previous.size(); s++) {
+                double d = brain.distance(previous.get(s));
+                if (d < threshold) {
+                    assigned[i] = s;
+                    distance[i] = d;
+                    break;
+                }
+            }
+        });
+
+        // The remaining elements start new species, in order
+        List<NeuralNetwork> candidates = new ArrayList<>(previous);
+        for (int i = 0; i < size; i++) {
+            if (assigned[i] >= 0) {
+                continue;
+            }
+
+            NeuralNetwork brain = population.get(i).getBrain();
+            for (int s = previous.size(); s < candidates.size(); s++) {
+                double d = brain.distance(candidates.get(s));
+                if (d < threshold) {
+                    assigned[i] = s;
+                    distance[i] = d;
+                    break;
+                }
+            }
+            if (assigned[i] < 0) {
+                assigned[i] = candidates.size();
+                candidates.add(brain);
+            }
+        }
+
+        // Drop the species without elements and pick the new representatives
+        int[] counts = new int[candidates.size()];
+        for (int s : assigned) {
+            counts[s]++;
+        }
+        int[] renumber = new int[candidates.size()];
+        int count = 0;
+        for (int s = 0; s < counts.length; s++) {
+            renumber[s] = (counts[s] > 0) ? count++ : -1;
+        }
+
+        int[][] newMembers = new int[count][];
+        for (int s = 0; s < counts.length; s++) {
+            if (renumber[s] >= 0) {
+                newMembers[renumber[s]] = new int[counts[s]];
+            }
+        }
+        int[] filled = new int[count];
+        List<NeuralNetwork> newRepresentatives = new ArrayList<>(count);
+        for (int i = 0; i < size; i++) {
+            int s = renumber[assigned[i]];
+            assigned[i] = s;
+            if (filled[s] == 0) {
+                // A copy, since the network can be reused for a later generation
+                newRepresentatives.add(population.get(i).getBrain().copy());
+            }
+            newMembers[s][filled[s]++] = i;
+        }
+
+        species = assigned;
+        distances = distance;
+        members = newMembers;
+        representatives = newRepresentatives;
+    }
+
+    /**
+     * Returns the number of species.
+     *
+     * @return the number of species.
+     */
+    int getSpeciesCount() {
+        return members.length;
+    }
+
+    /**
+     * Returns the species of an element.
+     *
+     * @param element the index of the element in the population.
+     * @return the species of the element.
+     */
+    int getSpecies(int element) {
+        return species[element];
+    }
+
+    /**
+     * Returns the distance between an element and the representative of its species,
+     * or zero if the element started the species.
+     *
+     * @param element the index of the element in the population.
+     * @return the distance to the representative of its species.
+     */
+    double getDistance(int element) {
+        return distances[element];
+    }
+
+    /**
+     * Returns the elements of a species.
+     *
+     * @param species the species.
+     * @return the indices of the elements of the species, in ascending order.
+     */
+    int[] getMembers(int species) {
+        return members[species];
+    }
+}
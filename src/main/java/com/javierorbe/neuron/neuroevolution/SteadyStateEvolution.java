@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.Crossover;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A steady-state neuroevolution environment, with no generations.
+ *
+ * <p>Each worker thread repeatedly selects a parent by tournament among the current
+ * scores, creates a child, scores it and writes it over the worst element of another
+ * tournament if the child is at least as good. Workers never wait for each other: the
+ * population is an array of immutable scored entries that is read without locks and
+ * updated with compare-and-set, so a slow evaluation only delays its own worker.
+ *
+ * <p>The fitness function is called on each element by a single thread, but on different
+ * elements concurrently, and {@link Evolvable#getMutatedCopy()} and
+ * {@link Evolvable#createChild(NeuralNetwork)} may be called concurrently on the same element.
+ *
+ * @param <T> The type of the elements of the population.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://en.wikipedia.org/wiki/Evolutionary_algorithm#Steady-state_evolutionary_algorithms" target="_top">Evolutionary algorithm in Wikipedia</a>
+ */
+public class SteadyStateEvolution<T extends Evolvable<T>> {
+
+    /**
+     * Number of evaluations that a worker claims from the budget at once.
+     */
+    private static final int CLAIM = 16;
+
+    private final AtomicReferenceArray<Entry<T>> population;
+    private final ToDoubleFunction<? super T> fitnessFunction;
+    private final ExecutorService executor;
+
+    private int selectionSize = 2;
+    private int replacementSize = 2;
+
+    private Crossover crossover;
+    private double crossoverRate;
+    private double mutationRate;
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder replacements = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * Construct a steady-state environment. The elements are scored when it runs for the first time.
+     *
+     * @param population the initial population.
+     * @param fitnessFunction the function that computes the score of an element.
+     * @param executor the executor that runs the workers, or {@code null} to run a single worker on the calling thread.
+     * @throws IllegalArgumentException if the population is empty.
+     */
+    public SteadyStateEvolution(List<T> population, ToDoubleFunction<? super T> fitnessFunction, ExecutorService executor) {
+        if (population.isEmpty()) {
+            throw new IllegalArgumentException("The population cannot be empty");
+        }
+
+        this.population = new AtomicReferenceArray<>(population.size());
+        for (int i = 0; i < population.size(); i++) {
+            this.population.set(i, new Entry<>(population.get(i), Double.NaN));
+        }
+        this.fitnessFunction = fitnessFunction;
+        this.executor = executor;
+    }
+
+    /**
+     * Set the number of elements of the tournament that selects each parent. The default is 2.
+     *
+     * @param size the number of elements of each tournament.
+     * @throws IllegalArgumentException if {@code size} is not positive.
+     */
+    public void setSelectionSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The tournament size must be positive: " + size);
+        }
+        this.selectionSize = size;
+    }
+
+    /**
+     * Set the number of elements of the tournament that chooses the element replaced by
+     * each child. The default is 2; bigger tournaments replace worse elements.
+     *
+     * @param size the number of elements of each tournament.
+     * @throws IllegalArgumentException if {@code size} is not positive.
+     */
+    public void setReplacementSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The tournament size must be positive: " + size);
+        }
+        this.replacementSize = size;
+    }
+
+    /**
+     * Create part of the children by crossing two parents, selected independently. The child is
+     * created with {@link Evolvable#createChild(NeuralNetwork)} on the first parent, and its network
+     * is mutated like {@link NeuralNetwork#mutate(double)} at the given rate.
+     *
+     * @param crossover the crossover operator, or {@code null} to only create mutated copies.
+     * @param rate the probability of creating each child by crossover.
+     * @param mutationRate the probability of mutating each parameter of a crossed child.
+     * @throws IllegalArgumentException if a rate is not in {@code [0, 1]}.
+     */
+    public void setCrossover(Crossover crossover, double rate, double mutationRate) {
+        if (!(rate >= 0 && rate <= 1) || !(mutationRate >= 0 && mutationRate <= 1)) {
+            throw new IllegalArgumentException("The rates must be in [0, 1]: " + rate + ", " + mutationRate);
+        }
+        this.crossover = crossover;
+        this.crossoverRate = rate;
+        this.mutationRate = mutationRate;
+    }
+
+    /**
+     * Run until a number of children have been evaluated, without counting
+     * the evaluation of the elements that had no score yet.
+     *
+     * @param children the number of children to evaluate.
+     * @param workers the number of workers.
+     * @throws IllegalArgumentException if {@code workers} is not positive.
+     */
+    public void run(long children, int workers) {
+        final AtomicLong budget = new AtomicLong(children);
+        run(workers, () -> {
+            long claimed = budget.getAndAdd(-CLAIM);
+            return (claimed > 0) ? (int) Math.min(CLAIM, claimed) : 0;
+        });
+    }
+
+    /**
+     * Run for some time.
+     *
+     * @param millis the number of milliseconds to run.
+     * @param workers the number of workers.
+     * @throws IllegalArgumentException if {@code workers} is not positive.
+     */
+    public void runFor(long millis, int workers) {
+        final long deadline = System.nanoTime() + millis * 1_000_000;
+        run(workers, () -> (System.nanoTime() - deadline < 0) ? 1 : 0);
+    }
+
+    /**
+     * Returns the current elements of the population.
+     *
+     * @return a new list with the elements.
+     */
+    public List<T> getPopulation() {
+        List<T> elements = new ArrayList<>(population.length());
+        for (int i = 0; i < population.length(); i++) {
+            elements.add(population.get(i).element);
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the current score of each element of the population.
+     *
+     * @return the scores, in the order of {@link #getPopulation()}, with {@code NaN} for elements not scored yet.
+     */
+    public double[] getScores() {
+        double[] scores = new double[population.length()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = population.get(i).score;
+        }
+        return scores;
+    }
+
+    /**
+     * Returns the element with the biggest score.
+     *
+     * @return the best element, or the first one if none has been scored.
+     */
+    public T getBest() {
+        Entry<T> best = population.get(0);
+        for (int i = 1; i < population.length(); i++) {
+            Entry<T> entry = population.get(i);
+            if (entry.score > best.score || Double.isNaN(best.score)) {
+                best = entry;
+            }
+        }
+        return best.element;
+    }
+
+    /**
+     * Returns the number of evaluations, the initial ones included.
+     *
+     * @return the number of evaluations.
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Returns the number of children that replaced an element of the population.
+     *
+     * @return the number of replacements.
+     */
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    /**
+     * Returns the number of evaluations per second of wall-clock time while running.
+     *
+     * @return the throughput, or zero if the environment has not run.
+     */
+    public double getEvaluationsPerSecond() {
+        long elapsed = nanos.sum();
+        return (elapsed > 0) ? evaluations.sum() * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * Run the workers until {@code claims} returns zero.
+     *
+     * @param workers the number of workers.
+     * @param claims returns the number of children that a worker may create next, or zero to stop.
+     */
+    private void run(int workers, Claims claims) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The number of workers must be positive: " + workers);
+        }
+
+        final long start = System.nanoTime();
+        final AtomicLong unscored = new AtomicLong();
+        if (executor == null) {
+            work(unscored, claims);
+            nanos.add(System.nanoTime() - start);
+            return;
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            callables.add(() -> {
+                work(unscored, claims);
+                return null;
+            });
+        }
+
+        try {
+            Tasks.invokeAll(executor, callables);
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The loop of a worker: first score the elements that have no score, then create children.
+     */
+    private void work(AtomicLong unscored, Claims claims) {
+        for (long i = unscored.getAndIncrement(); i < population.length(); i = unscored.getAndIncrement()) {
+            final int slot = (int) i;
+            final Entry<T> entry = population.get(slot);
+            if (Double.isNaN(entry.score)) {
+                population.compareAndSet(slot, entry, new Entry<>(entry.element, score(entry.element)));
+            }
+        }
+
+        final Random random = ThreadLocalRandom.current();
+        for (int claimed = claims.next(); claimed > 0; claimed = claims.next()) {
+            for (int c = 0; c < claimed; c++) {
+                final T child = createChild(random);
+                final double score = score(child);
+                replace(new Entry<>(child, score), random);
+            }
+        }
+    }
+
+    private T createChild(Random random) {
+        final T parent = select(random).element;
+        if (crossover != null && random.nextDouble() < crossoverRate) {
+            NeuralNetwork brain = crossover.apply(parent.getBrain(), select(random).element.getBrain(), random);
+            brain.mutate(mutationRate);
+            return parent.createChild(brain);
+        }
+        return parent.getMutatedCopy();
+    }
+
+    private double score(T element) {
+        final double score = fitnessFunction.applyAsDouble(element);
+        evaluations.increment();
+        return score;
+    }
+
+    /**
+     * Returns the entry with the biggest score of a tournament. Elements not scored yet lose.
+     */
+    private Entry<T> select(Random random) {
+        Entry<T> best = population.get(random.nextInt(population.length()));
+        for (int i = 1; i < selectionSize; i++) {
+            Entry<T> candidate = population.get(random.nextInt(population.length()));
+            if (candidate.score > best.score || Double.isNaN(best.score)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Write a child over the entry with the smallest score of a tournament, if the child
+     * is at least as good. If another worker replaced that entry in the meantime, a new
+     * tournament is held.
+     */
+    private void replace(Entry<T> child, Random random) {
+        while (true) {
+            int worst = random.nextInt(population.length());
+            Entry<T> worstEntry = population.get(worst);
+            for (int i = 1; i < replacementSize; i++) {
+                int candidate = random.nextInt(population.length());
+                Entry<T> entry = population.get(candidate);
+                if (entry.score < worstEntry.score) {
+                    worst = candidate;
+                    worstEntry = entry;
+                }
+            }
+
+            if (!(child.score >= worstEntry.score)) {
+                return;
+            }
+            if (population.compareAndSet(worst, worstEntry, child)) {
+                replacements.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands out the work of the workers.
+     */
+    @FunctionalInterface
+    private interface Claims {
+
+        /**
+         * Returns the number of children that a worker may create next.
+         *
+         * @return the number of children, or zero to stop.
+         */
+        int next();
+    }
+
+    /**
+     * An element with its score. Entries are never modified, so they can be read without locks.
+     */
+    private static final class Entry<T> {
+
+        final T element;
+        final double score;
+
+        Entry(T element, double score) {
+            this.element = element;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+/**
+ * Tournament selection. A number of elements are drawn uniformly at random
+ * and the one with the biggest fitness is selected.
+ *
+ * @author Javier Orbe
+ * @see <a href="https://en.wikipedia.org/wiki/Tournament_selection" target="_top">Tournament selection in Wikipedia</a>
+ */
+public class TournamentSelection implements SelectionStrategy {
+
+    private final int size;
+
+    /**
+     * Construct a tournament selection.
+     *
+     * @param size the number of elements of each tournament.
+     * @throws IllegalArgumentException if {@code size} is not positive.
+     */
+    public TournamentSelection(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The tournament size must be positive: " + size);
+        }
+        this.size = size;
+    }
+
+    @Override
+    public Selector prepare(double[] fitness) {
+        return random -> {
+            int best = random.nextInt(fitness.length);
+            for (int i = 1; i < size; i++) {
+                int candidate = random.nextInt(fitness.length);
+                if (fitness[candidate] > fitness[best]) {
+                    best = candidate;
+                }
+            }
+            return best;
+        };
+    }
+}
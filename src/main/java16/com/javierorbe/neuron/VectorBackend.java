@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Dense layer kernels written with the Vector API, which processes as many
+ * {@code double} values per instruction as the preferred vector size of the CPU.
+ * Loaded by {@link ComputeBackends} when it is available.
+ *
+ * <p>The dot products of the forward pass keep one partial sum per lane and add
+ * them at the end. The gradients and the propagated error are updated with fused
+ * multiply-adds along the rows of the weights, so the transpose of the weights is never built.
+ *
+ * @author Javier Orbe
+ */
+final class VectorBackend implements ComputeBackend {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void forward(double[] parameters, int offset, int rows, int cols, double[] in, double[] out, int batch) {
+        final int biasOffset = offset + rows * cols;
+        final int bound = SPECIES.loopBound(cols);
+        int b = 0;
+
+        // Two samples at a time, so that each vector of weights is loaded once for both
+        for (; b + 2 <= batch; b += 2) {
+            final int x0 = b * cols;
+            final int x1 = x0 + cols;
+            final int o0 = b * rows;
+            final int o1 = o0 + rows;
+
+            for (int j = 0; j < rows; j++) {
+                final int row = offset + j * cols;
+                DoubleVector sum0 = DoubleVector.zero(SPECIES);
+                DoubleVector sum1 = DoubleVector.zero(SPECIES);
+                int k = 0;
+                for (; k < bound; k += SPECIES.length()) {
+                    DoubleVector w = DoubleVector.fromArray(SPECIES, parameters, row + k);
+                    sum0 = w.fma(DoubleVector.fromArray(SPECIES, in, x0 + k), sum0);
+                    sum1 = w.fma(DoubleVector.fromArray(SPECIES, in, x1 + k), sum1);
+                }
+                double s0 = sum0.reduceLanes(VectorOperators.ADD);
+                double s1 = sum1.reduceLanes(VectorOperators.ADD);
+                for (; k < cols; k++) {
+                    s0 += parameters[row + k] * in[x0 + k];
+                    s1 += parameters[row + k] * in[x1 + k];
+                }
+                out[o0 + j] = s0 + parameters[biasOffset + j];
+                out[o1 + j] = s1 + parameters[biasOffset + j];
+            }
+        }
+
+        for (; b < batch; b++) {
+            final int x = b * cols;
+            final int o = b * rows;
+            for (int j = 0; j < rows; j++) {
+                out[o + j] = dot(parameters, offset + j * cols, in, x, cols, bound) + parameters[biasOffset + j];
+            }
+        }
+    }
+
+    @Override
+    public void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int rows, int cols, int batch) {
+        final int biasOffset = offset + rows * cols;
+
+        for (int j = 0; j < rows; j++) {
+            final int row = offset + j * cols;
+            for (int b = 0; b < batch; b++) {
+                final double value = delta[b * rows + j];
+                axpy(value, in, b * cols, gradients, row, cols);
+                gradients[biasOffset + j] += value;
+            }
+        }
+    }
+
+    @Override
+    public void backpropagate(double[] parameters, int offset, int rows, int cols, double[] delta, double[] error, int batch) {
+        Arrays.fill(error, 0, batch * cols, 0);
+
+        for (int b = 0; b < batch; b++) {
+            final int e = b * cols;
+            final int d = b * rows;
+            for (int j = 0; j < rows; j++) {
+                axpy(delta[d + j], parameters, offset + j * cols, error, e, cols);
+            }
+        }
+    }
+
+    /**
+     * Returns the dot product of two ranges of {@code length} values.
+     */
+    private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length, int bound) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            sum = DoubleVector.fromArray(SPECIES, a, aOffset + k)
+                    .fma(DoubleVector.fromArray(SPECIES, b, bOffset + k), sum);
+        }
+        double s = sum.reduceLanes(VectorOperators.ADD);
+        for (; k < length; k++) {
+            s += a[aOffset + k] * b[bOffset + k];
+        }
+        return s;
+    }
+
+    /**
+     * Compute {@code y += a * x} over ranges of {@code length} values.
+     */
+    private static void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        final DoubleVector scale = DoubleVector.broadcast(SPECIES, a);
+        final int bound = SPECIES.loopBound(length);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, xOffset + k)
+                    .fma(scale, DoubleVector.fromArray(SPECIES, y, yOffset + k))
+                    .intoArray(y, yOffset + k);
+        }
+        for (; k < length; k++) {
+            y[yOffset + k] += a * x[xOffset + k];
+        }
+    }
+}
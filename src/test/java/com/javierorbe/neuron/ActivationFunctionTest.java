@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class ActivationFunctionTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(ActivationFunction.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void bulkMatchesScalar() {
+        double[] src = new double[64];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = (i - 32) / 4.0;
+        }
+
+        for (ActivationFunction function : ActivationFunction.values()) {
+            if (!function.isElementWise()) {
+                continue;
+            }
+
+            double[] dst = new double[src.length];
+            function.apply(src, dst, 0, src.length);
+            for (int i = 0; i < src.length; i++) {
+                Assert.assertEquals(function.apply(src[i]), dst[i], 0);
+            }
+
+            function.derivative(dst, dst, 0, dst.length);
+            for (int i = 0; i < src.length; i++) {
+                Assert.assertEquals(function.derivative(function.apply(src[i])), dst[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void softmaxIsDistribution() {
+        double[] values = {1000, 1001, 1002, 5, -3};
+        ActivationFunction.SOFTMAX.apply(values, values, 0, values.length);
+
+        double sum = 0;
+        for (double value : values) {
+            Assert.assertTrue(value >= 0);
+            sum += value;
+        }
+        Assert.assertEquals(1, sum, 1e-12);
+        Assert.assertTrue(values[2] > values[1] && values[1] > values[0]);
+    }
+
+    @Test
+    public void fastApproximationsWithinBound() {
+        for (double x = -30; x < 30; x += 0.001) {
+            Assert.assertEquals(ActivationFunction.SIGMOID.apply(x), ActivationFunction.FAST_SIGMOID.apply(x), 1e-6);
+            Assert.assertEquals(ActivationFunction.TANH.apply(x), ActivationFunction.FAST_TANH.apply(x), 2e-6);
+        }
+    }
+}
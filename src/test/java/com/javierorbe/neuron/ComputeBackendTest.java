@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class ComputeBackendTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(ComputeBackends.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void fallsBackToScalar() {
+        Assert.assertNotNull(ComputeBackends.vector());
+        Assert.assertEquals(ComputeBackends.isVectorAvailable(), ComputeBackends.vector() != ComputeBackends.scalar());
+        Assert.assertEquals("scalar", ComputeBackends.scalar().getName());
+    }
+
+    @Test
+    public void vectorKernelsMatchScalar() {
+        Assume.assumeTrue(ComputeBackends.isVectorAvailable());
+        ComputeBackend scalar = ComputeBackends.scalar();
+        ComputeBackend vector = ComputeBackends.vector();
+        Random random = new Random(1);
+
+        for (int cols = 1; cols <= 19; cols += 3) {
+            for (int rows = 1; rows <= 9; rows += 4) {
+                for (int batch = 1; batch <= 5; batch++) {
+                    double[] parameters = random(random, 3 + rows * cols + rows);
+                    double[] in = random(random, batch * cols);
+                    double[] delta = random(random, batch * rows);
+
+                    double[] expected = new double[batch * rows];
+                    double[] actual = new double[batch * rows];
+                    scalar.forward(parameters, 3, rows, cols, in, expected, batch);
+                    vector.forward(parameters, 3, rows, cols, in, actual, batch);
+                    Assert.assertArrayEquals(expected, actual, 1e-12);
+
+                    double[] single = new double[rows];
+                    vector.forward(parameters, 3, rows, cols, in, single, 1);
+                    for (int j = 0; j < rows; j++) {
+                        Assert.assertEquals(actual[j], single[j], 0);
+                    }
+
+                    double[] expectedGradients = random(new Random(rows), parameters.length);
+                    double[] actualGradients = expectedGradients.clone();
+                    scalar.accumulateGradients(delta, in, expectedGradients, 3, rows, cols, batch);
+                    vector.accumulateGradients(delta, in, actualGradients, 3, rows, cols, batch);
+                    Assert.assertArrayEquals(expectedGradients, actualGradients, 1e-12);
+
+                    double[] expectedError = new double[batch * cols];
+                    double[] actualError = random(random, batch * cols);
+                    scalar.backpropagate(parameters, 3, rows, cols, delta, expectedError, batch);
+                    vector.backpropagate(parameters, 3, rows, cols, delta, actualError, batch);
+                    Assert.assertArrayEquals(expectedError, actualError, 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void trainWithVectorBackend() {
+        final double[][] inputs = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+        final double[][] targets = {{0}, {1}, {1}, {0}};
+
+        ComputeBackend previous = ComputeBackends.getDefault();
+        ComputeBackends.setDefault(ComputeBackends.vector());
+        try {
+            NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.SIGMOID, 1, new Random(2));
+            for (int epoch = 0; epoch < 5000; epoch++) {
+                nn.train(inputs, targets, 4);
+            }
+            for (int n = 0; n < inputs.length; n++) {
+                Assert.assertEquals(targets[n][0], nn.evaluate(inputs[n])[0], 0.1);
+            }
+        } finally {
+            ComputeBackends.setDefault(previous);
+        }
+    }
+
+    private static double[] random(Random random, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble() * 2 - 1;
+        }
+        return values;
+    }
+}
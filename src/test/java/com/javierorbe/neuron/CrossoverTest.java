@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class CrossoverTest {
+
+    private static final int[] LAYERS = {5, 7, 3};
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(Crossover.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void uniformTakesEachParameterFromAParent() {
+        NeuralNetwork first = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        NeuralNetwork second = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(2));
+        double[] a = first.getParameters();
+        double[] b = second.getParameters();
+        double[] child = Crossover.UNIFORM.apply(first, second, new Random(3)).getParameters();
+
+        int fromFirst = 0;
+        for (int i = 0; i < child.length; i++) {
+            Assert.assertTrue(child[i] == a[i] || child[i] == b[i]);
+            if (child[i] == a[i]) {
+                fromFirst++;
+            }
+        }
+        Assert.assertTrue(fromFirst > 0 && fromFirst < child.length);
+    }
+
+    @Test
+    public void singlePointSplitsEveryLayer() {
+        NeuralNetwork first = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        NeuralNetwork second = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(2));
+        double[] a = first.getParameters();
+        double[] b = second.getParameters();
+        int[] offsets = NeuralNetwork.computeOffsets(LAYERS);
+
+        for (int seed = 0; seed < 20; seed++) {
+            double[] child = Crossover.SINGLE_POINT.apply(first, second, new Random(seed)).getParameters();
+            for (int layer = 0; layer < LAYERS.length - 1; layer++) {
+                int k = offsets[layer];
+                while (k < offsets[layer + 1] && child[k] == a[k]) {
+                    k++;
+                }
+                for (; k < offsets[layer + 1]; k++) {
+                    Assert.assertEquals(b[k], child[k], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void blendIsBetweenParents() {
+        NeuralNetwork first = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        NeuralNetwork second = new NeuralNetwork(LAYERS, ActivationFunction.SIGMOID, 0.1, new Random(2));
+        NeuralNetwork child = Crossover.BLEND.apply(first, second, new Random(3));
+
+        Assert.assertEquals(first.distance(second), first.distance(child) + child.distance(second), 1e-9);
+
+        ParameterArena arena = new ParameterArena(LAYERS, 2);
+        NeuralNetwork inArena = arena.cross(first, second, Crossover.BLEND, 1, new Random(3));
+        Assert.assertArrayEquals(child.getParameters(), inArena.getParameters(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDifferentLayers() {
+        Crossover.UNIFORM.apply(new NeuralNetwork(new int[] {2, 2}), new NeuralNetwork(new int[] {2, 3}), new Random());
+    }
+}
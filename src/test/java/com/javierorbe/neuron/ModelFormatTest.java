@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class ModelFormatTest {
+
+    private static final byte[] TANH = "TANH".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(ModelFormat.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {3, 3000, 2}, ActivationFunction.TANH, 0.25, new Random(1));
+        Path path = folder.getRoot().toPath().resolve("model.bin");
+
+        ModelFormat.save(nn, path);
+        NeuralNetwork loaded = ModelFormat.load(path);
+
+        assertSameNetwork(nn, loaded);
+        Assert.assertEquals(ModelFormat.size(nn), path.toFile().length());
+    }
+
+    @Test
+    public void streamAndBuffer() throws IOException {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.LEAKY_RELU, 0.1, new Random(2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ModelFormat.write(nn, out);
+
+        ByteBuffer buffer = ByteBuffer.allocate(ModelFormat.size(nn));
+        ModelFormat.write(nn, buffer);
+
+        Assert.assertArrayEquals(out.toByteArray(), buffer.array());
+
+        buffer.flip();
+        assertSameNetwork(nn, ModelFormat.read(buffer));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void heterogeneousLayers() throws IOException {
+        NeuralNetwork nn = new NeuralNetwork(new Layer[] {
+                new DenseLayer(3, 4, ActivationFunction.RELU),
+                SparseLayer.of(4, 2, new boolean[] {true, false, false, true, false, true, true, false},
+                        ActivationFunction.SOFTMAX),
+        }, 0.05, new Random(3));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ModelFormat.write(nn, out);
+        Assert.assertEquals(ModelFormat.size(nn), out.size());
+
+        NeuralNetwork read = ModelFormat.read(ByteBuffer.wrap(out.toByteArray()));
+        assertSameNetwork(nn, read);
+        Assert.assertArrayEquals(nn.getActivationFunctions(), read.getActivationFunctions());
+        Assert.assertEquals(nn.getLayer(1), read.getLayer(1));
+        Assert.assertArrayEquals(nn.evaluate(new double[] {1, -2, 3}), read.evaluate(new double[] {1, -2, 3}), 0);
+    }
+
+    @Test
+    public void readsVersion1() {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(ModelFormat.MAGIC).putInt(1).putInt(2).putInt(4);
+        buffer.putInt(1).putInt(1);
+        buffer.put("TANH".getBytes(StandardCharsets.US_ASCII)).putInt(0);
+        buffer.putDouble(0.5).putLong(2).putDouble(0.75).putDouble(-0.25);
+        buffer.flip();
+
+        NeuralNetwork nn = ModelFormat.read(buffer);
+        Assert.assertArrayEquals(new int[] {1, 1}, nn.getLayers());
+        Assert.assertEquals(ActivationFunction.TANH, nn.getActivationFunction());
+        Assert.assertEquals(0.5, nn.getLearningRate(), 0);
+        Assert.assertArrayEquals(new double[] {0.75, -0.25}, nn.getParameters(), 0);
+    }
+
+    @Test
+    public void rejectsSizesLargerThanTheData() {
+        // A dense layer of 20000x20000 whose parameters are missing
+        ByteBuffer dense = header(1).putInt(0).putInt(20000).putInt(20000).putInt(4).put(TANH);
+        dense.putInt(0).putDouble(0.1).putLong(20000L * 20000 + 20000);
+        assertRejected(dense);
+
+        // A sparse layer with more connections than bytes
+        ByteBuffer sparse = header(1).putInt(1).putInt(2).putInt(1).putInt(4).put(TANH);
+        sparse.putInt(0).putInt(Integer.MAX_VALUE);
+        assertRejected(sparse);
+
+        // More layers than bytes
+        assertRejected(header(Integer.MAX_VALUE));
+
+        // Dense layers whose number of parameters does not fit in an int
+        ByteBuffer overflow = header(2);
+        for (int i = 0; i < 2; i++) {
+            overflow.putInt(0).putInt(65536).putInt(65536).putInt(4).put(TANH).putInt(0);
+        }
+        // The count that 32-bit arithmetic gives for them
+        overflow.putDouble(0.1).putLong(2 * 65536);
+        assertRejected(overflow);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherData() {
+        ModelFormat.read(ByteBuffer.wrap(new byte[64]));
+    }
+
+    private static void assertSameNetwork(NeuralNetwork expected, NeuralNetwork actual) {
+        Assert.assertArrayEquals(expected.getLayers(), actual.getLayers());
+        Assert.assertArrayEquals(expected.getActivationFunctions(), actual.getActivationFunctions());
+        Assert.assertEquals(expected.getLearningRate(), actual.getLearningRate(), 0);
+        Assert.assertArrayEquals(expected.getParameterArray(), actual.getParameterArray(), 0);
+    }
+
+    private static ByteBuffer header(int layerCount) {
+        ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        return buffer.putInt(ModelFormat.MAGIC).putInt(2).putInt(layerCount).putInt(0);
+    }
+
+    private static void assertRejected(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            ModelFormat.read(buffer);
+            Assert.fail("Expected the model to be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
@@ -22,7 +22,9 @@
 
 package com.javierorbe.neuron;
 
+import com.javierorbe.math.Matrix;
 import com.javierorbe.math.util.MathUtils;
+import com.javierorbe.neuron.metrics.NetworkMetrics;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -32,6 +34,11 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @RunWith(Arquillian.class)
 public class NeuralNetworkTest {
 
@@ -133,4 +140,280 @@ public class NeuralNetworkTest {
         Assert.assertTrue(nn.evaluate(new double[]{1, 0})[0] < 0.5);
         Assert.assertTrue(nn.evaluate(new double[]{1, 1})[0] > 0.5);
     }
+
+    @Test
+    public void evaluateMatchesMatrixPath() {
+        final int[] layers = {3, 7, 4, 2};
+        Matrix[] weights = new Matrix[layers.length - 1];
+        Matrix[] biases = new Matrix[layers.length - 1];
+        for (int i = 0; i < layers.length - 1; i++) {
+            weights[i] = new Matrix(layers[i + 1], layers[i]);
+            weights[i].randomize();
+            biases[i] = new Matrix(layers[i + 1], 1);
+            biases[i].randomize();
+        }
+
+        NeuralNetwork nn = new NeuralNetwork(layers, ActivationFunction.TANH, 0.1, weights, biases);
+        double[] output = new double[2];
+
+        for (int n = 0; n < 100; n++) {
+            double[] input = {Math.random(), Math.random(), Math.random()};
+
+            Matrix expected = Matrix.getColumnMatrix(input);
+            for (int i = 0; i < layers.length - 1; i++) {
+                expected = Matrix.multiply(weights[i], expected);
+                expected.add(biases[i]);
+                expected.map(ActivationFunction.TANH::apply);
+            }
+
+            nn.evaluate(input, output);
+            Assert.assertArrayEquals(expected.toArray(), output, 0);
+            Assert.assertArrayEquals(expected.toArray(), nn.evaluate(input), 0);
+        }
+    }
+
+    @Test
+    public void batchEvaluationMatchesSingle() {
+        Random random = new Random(4);
+        double[][] inputs = new double[150][6];
+        for (double[] input : inputs) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2 - 1;
+            }
+        }
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {6, 300, 17, 3}, ActivationFunction.SOFTPLUS, 0.1, random);
+        double[][] outputs = nn.evaluate(inputs);
+
+        double[] flat = new double[inputs.length * 3];
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        nn.evaluate(inputs, flat, executor);
+        executor.shutdown();
+
+        for (int n = 0; n < inputs.length; n++) {
+            double[] expected = nn.evaluate(inputs[n]);
+            Assert.assertArrayEquals(expected, outputs[n], 0);
+            for (int j = 0; j < expected.length; j++) {
+                Assert.assertEquals(expected[j], flat[n * 3 + j], 0);
+            }
+        }
+    }
+
+    @Test
+    public void batchGradientsMatchFiniteDifferences() {
+        final double[][] inputs = {{0.1, 0.7}, {0.9, 0.3}, {0.5, 0.5}};
+        final double[][] targets = {{1, 0}, {0, 1}, {0.5, 0.5}};
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 4, 2}, ActivationFunction.TANH, 0.1);
+        assertGradientsMatchFiniteDifferences(nn, inputs, targets);
+    }
+
+    @Test
+    public void softmaxGradientsMatchFiniteDifferences() {
+        final double[][] inputs = {{0.1, 0.7}, {0.9, 0.3}, {0.5, 0.5}};
+        final double[][] targets = {{1, 0, 0}, {0, 1, 0}, {0.2, 0.3, 0.5}};
+
+        NeuralNetwork output = new NeuralNetwork(new int[] {2, 4, 3},
+                new ActivationFunction[] {ActivationFunction.TANH, ActivationFunction.SOFTMAX}, 0.1, new Random(5));
+        assertGradientsMatchFiniteDifferences(output, inputs, targets);
+
+        NeuralNetwork hidden = new NeuralNetwork(new int[] {2, 4, 3},
+                new ActivationFunction[] {ActivationFunction.SOFTMAX, ActivationFunction.SIGMOID}, 0.1, new Random(5));
+        assertGradientsMatchFiniteDifferences(hidden, inputs, targets);
+    }
+
+    @Test
+    public void softmaxPerSampleTrainingMatchesBatch() {
+        final double[] input = {0.3, 0.8};
+        final double[] target = {0, 1, 0};
+        final ActivationFunction[] functions = {ActivationFunction.TANH, ActivationFunction.SOFTMAX};
+
+        NeuralNetwork single = new NeuralNetwork(new int[] {2, 4, 3}, functions, 0.1, new Random(9));
+        NeuralNetwork batch = new NeuralNetwork(new int[] {2, 4, 3}, functions, 0.1, new Random(9));
+        single.train(input, target);
+        batch.train(new double[][] {input}, new double[][] {target}, 1);
+
+        Assert.assertArrayEquals(batch.getParameterArray(), single.getParameterArray(), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void perSampleTrainingChecksTargetLength() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1});
+        nn.train(new double[] {0, 1}, new double[] {1, 0});
+    }
+
+    @Test
+    public void logicGateXORMiniBatch() {
+        final double[][] inputs = {{0, 0}, {1, 0}, {0, 1}, {1, 1}};
+        final double[][] targets = {{0}, {1}, {1}, {0}};
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.SIGMOID, 2);
+        for (int epoch = 0; epoch < 10000; epoch++) {
+            nn.train(inputs, targets, 2);
+        }
+
+        Assert.assertTrue(nn.evaluate(new double[]{0, 0})[0] < 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{0, 1})[0] > 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{1, 0})[0] > 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{1, 1})[0] < 0.5);
+    }
+
+    @Test
+    public void metricsListener() {
+        final double[][] inputs = {{0, 0}, {1, 0}, {0, 1}, {1, 1}};
+        final double[][] targets = {{0}, {1}, {1}, {1}};
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 3, 1});
+        NetworkMetrics metrics = new NetworkMetrics(4);
+        nn.setListener(metrics);
+
+        for (int i = 0; i < 10; i++) {
+            nn.evaluate(inputs[i % 4]);
+        }
+        Assert.assertEquals(10, metrics.getEvaluateLatency().getCount());
+        Assert.assertEquals(10, metrics.getLayerLatency(2).getCount());
+        Assert.assertTrue(metrics.getEvaluateLatency().getPercentile(99) > 0);
+
+        nn.train(inputs, targets, 4);
+        double initialLoss = metrics.getMeanLoss();
+        for (int epoch = 0; epoch < 2000; epoch++) {
+            nn.train(inputs, targets, 4);
+        }
+        metrics.resetLoss();
+        nn.train(inputs, targets, 4);
+
+        Assert.assertEquals(2002, metrics.getTrainLatency().getCount());
+        Assert.assertTrue(metrics.getMeanLoss() < initialLoss);
+    }
+
+    @Test
+    public void mutationRate() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {100, 100}, ActivationFunction.SIGMOID, 0.1, new Random(4));
+        double[] before = nn.getParameters();
+
+        nn.mutate(0);
+        Assert.assertArrayEquals(before, nn.getParameters(), 0);
+
+        nn.mutate(0.1);
+        double[] after = nn.getParameters();
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) {
+                changed++;
+            }
+        }
+        Assert.assertEquals(0.1, (double) changed / before.length, 0.015);
+    }
+
+    @Test
+    public void arenaNetworksMatchCopies() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1}, ActivationFunction.TANH, 0.2, new Random(5));
+        ParameterArena arena = new ParameterArena(nn.getLayers(), 3);
+        NeuralNetwork first = arena.copy(nn, 0);
+        NeuralNetwork second = arena.copy(nn, 2);
+        NeuralNetwork copy = nn.copy();
+
+        double[] input = {0.4, -0.3};
+        for (int i = 0; i < 50; i++) {
+            second.train(input, new double[] {0.5});
+            copy.train(input, new double[] {0.5});
+        }
+        Assert.assertArrayEquals(copy.getParameters(), second.getParameters(), 0);
+        Assert.assertArrayEquals(copy.evaluate(input), second.evaluate(input), 0);
+        Assert.assertArrayEquals(nn.getParameters(), first.getParameters(), 0);
+
+        arena.swap();
+        arena.relocate(second, 1);
+        arena.swap();
+        arena.copy(nn, 2);
+        Assert.assertArrayEquals(copy.getParameters(), second.getParameters(), 0);
+    }
+
+    @Test
+    public void mixedActivationGradientsMatchFiniteDifferences() {
+        final double[][] inputs = {{0.1, 0.7, -0.2}, {0.9, 0.3, 0.4}};
+        final double[][] targets = {{1, -0.5}, {0, 2}};
+
+        Layer[] layers = {
+                new DenseLayer(3, 4, ActivationFunction.TANH),
+                SparseLayer.of(4, 3, new boolean[] {
+                        true, false, true, true,
+                        false, true, false, false,
+                        true, true, false, true}, ActivationFunction.SOFTPLUS),
+                new DenseLayer(3, 2, ActivationFunction.LINEAR),
+        };
+        NeuralNetwork nn = new NeuralNetwork(layers, 0.1, new Random(8));
+        Assert.assertArrayEquals(new int[] {3, 4, 3, 2}, nn.getLayers());
+        Assert.assertEquals(12 + 4 + 7 + 3 + 6 + 2, nn.getParameterCount());
+        assertGradientsMatchFiniteDifferences(nn, inputs, targets);
+    }
+
+    @Test
+    public void softmaxOutputLayer() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 3},
+                new ActivationFunction[] {ActivationFunction.RELU, ActivationFunction.SOFTMAX}, 0.1, new Random(3));
+        Assert.assertArrayEquals(new ActivationFunction[] {ActivationFunction.RELU, ActivationFunction.SOFTMAX},
+                nn.getActivationFunctions());
+
+        double[][] inputs = {{0.2, 0.8}, {-1, 0.5}};
+        double[][] outputs = nn.evaluate(inputs);
+        for (int n = 0; n < inputs.length; n++) {
+            Assert.assertEquals(1, outputs[n][0] + outputs[n][1] + outputs[n][2], 1e-12);
+            Assert.assertArrayEquals(nn.evaluate(inputs[n]), outputs[n], 0);
+            Assert.assertArrayEquals(nn.snapshot().evaluate(inputs[n]), outputs[n], 0);
+        }
+    }
+
+    @Test
+    public void fullSparseLayersMatchDenseLayers() {
+        final double[][] inputs = {{0.1, 0.7}, {0.9, 0.3}, {0.5, 0.5}, {0, 1}};
+        final double[][] targets = {{1, 0}, {0, 1}, {0.5, 0.5}, {1, 1}};
+
+        NeuralNetwork dense = new NeuralNetwork(new int[] {2, 6, 2}, ActivationFunction.TANH, 0.3, new Random(4));
+        boolean[] first = new boolean[12];
+        boolean[] second = new boolean[12];
+        Arrays.fill(first, true);
+        Arrays.fill(second, true);
+        NeuralNetwork sparse = new NeuralNetwork(new Layer[] {
+                SparseLayer.of(2, 6, first, ActivationFunction.TANH),
+                SparseLayer.of(6, 2, second, ActivationFunction.TANH),
+        }, 0.3, dense.getParameters());
+
+        for (int epoch = 0; epoch < 20; epoch++) {
+            dense.train(inputs, targets, 2);
+            sparse.train(inputs, targets, 2);
+        }
+        Assert.assertArrayEquals(dense.getParameters(), sparse.getParameters(), 0);
+        Assert.assertArrayEquals(dense.evaluate(inputs[1]), sparse.evaluate(inputs[1]), 0);
+    }
+
+    private static void assertGradientsMatchFiniteDifferences(NeuralNetwork nn, double[][] inputs, double[][] targets) {
+        TrainingWorkspace ws = nn.getWorkspace(inputs.length);
+        ws.clearGradients();
+        nn.computeGradients(inputs, targets, 0, inputs.length, ws);
+
+        double[] parameters = nn.getParameterArray();
+        final double h = 1e-6;
+        for (int i = 0; i < parameters.length; i++) {
+            double value = parameters[i];
+            parameters[i] = value + h;
+            double lossPlus = loss(nn, inputs, targets);
+            parameters[i] = value - h;
+            double lossMinus = loss(nn, inputs, targets);
+            parameters[i] = value;
+
+            Assert.assertEquals((lossPlus - lossMinus) / (2 * h), ws.getGradients()[i], 1e-6);
+        }
+    }
+
+    private static double loss(NeuralNetwork nn, double[][] inputs, double[][] targets) {
+        double loss = 0;
+        for (int n = 0; n < inputs.length; n++) {
+            double[] output = nn.evaluate(inputs[n]);
+            for (int j = 0; j < output.length; j++) {
+                loss += (targets[n][j] - output[j]) * (targets[n][j] - output[j]) / 2;
+            }
+        }
+        return loss;
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class OptimizerTest {
+
+    private static final double[][] INPUTS = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+    private static final double[][] TARGETS = {{0}, {1}, {1}, {0}};
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(Optimizer.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void sgdMatchesDefaultUpdate() {
+        NeuralNetwork plain = new NeuralNetwork(new int[] {2, 4, 1}, ActivationFunction.SIGMOID, 0.5, new Random(1));
+        NeuralNetwork optimized = plain.copy();
+        optimized.setOptimizer(Optimizer.sgd());
+
+        for (int epoch = 0; epoch < 100; epoch++) {
+            plain.train(INPUTS, TARGETS, 2);
+            optimized.train(INPUTS, TARGETS, 2);
+        }
+        Assert.assertArrayEquals(plain.getParameters(), optimized.getParameters(), 1e-12);
+        Assert.assertEquals(200, optimized.getOptimizer().getStep());
+    }
+
+    @Test
+    public void adamFirstStepMovesByLearningRate() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1}, ActivationFunction.TANH, 0.01, new Random(2));
+        double[] before = nn.getParameters();
+        nn.setOptimizer(Optimizer.adam());
+        nn.train(INPUTS, TARGETS, 4);
+
+        // The bias corrected moments of the first step are g and g^2
+        double[] after = nn.getParameters();
+        for (int i = 0; i < before.length; i++) {
+            Assert.assertEquals(0.01, Math.abs(after[i] - before[i]), 1e-6);
+        }
+    }
+
+    @Test
+    public void gradientClippingBoundsTheStep() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 8, 1}, ActivationFunction.SIGMOID, 1, new Random(3));
+        double[] before = nn.getParameters();
+        Optimizer optimizer = Optimizer.sgd();
+        optimizer.setGradientClipping(1e-3);
+        nn.setOptimizer(optimizer);
+        nn.train(INPUTS, TARGETS, 4);
+
+        double norm = 0;
+        double[] after = nn.getParameters();
+        for (int i = 0; i < before.length; i++) {
+            norm += (after[i] - before[i]) * (after[i] - before[i]);
+        }
+        Assert.assertEquals(1e-3, Math.sqrt(norm), 1e-9);
+    }
+
+    @Test
+    public void schedules() {
+        Assert.assertEquals(0.1, LearningRateSchedule.constant().learningRate(0.1, 50), 0);
+        Assert.assertEquals(0.1, LearningRateSchedule.stepDecay(0.5, 10).learningRate(0.1, 9), 0);
+        Assert.assertEquals(0.025, LearningRateSchedule.stepDecay(0.5, 10).learningRate(0.1, 25), 1e-15);
+        Assert.assertEquals(0.05, LearningRateSchedule.inverseTimeDecay(0.1).learningRate(0.1, 10), 1e-15);
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1}, ActivationFunction.SIGMOID, 0.5, new Random(4));
+        NeuralNetwork frozen = nn.copy();
+        Optimizer optimizer = Optimizer.momentum(0.9);
+        optimizer.setSchedule((learningRate, step) -> 0);
+        frozen.setOptimizer(optimizer);
+        frozen.train(INPUTS, TARGETS, 1);
+        Assert.assertArrayEquals(nn.getParameters(), frozen.getParameters(), 0);
+    }
+
+    @Test
+    public void adaptiveOptimizersConvergeInFewerEpochs() {
+        int plain = epochsToConverge(null, 1);
+        Assert.assertTrue(epochsToConverge(Optimizer.momentum(0.9), 1) < plain);
+        Assert.assertTrue(epochsToConverge(Optimizer.adam(), 0.05) < plain);
+        Assert.assertTrue(epochsToConverge(Optimizer.rmsProp(0.9, 1e-8), 0.01) < plain);
+    }
+
+    private static int epochsToConverge(Optimizer optimizer, double learningRate) {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 4, 1}, ActivationFunction.SIGMOID, learningRate, new Random(5));
+        nn.setOptimizer(optimizer);
+
+        for (int epoch = 1; epoch <= 20000; epoch++) {
+            nn.train(INPUTS, TARGETS, 4);
+
+            double loss = 0;
+            for (int n = 0; n < INPUTS.length; n++) {
+                double error = TARGETS[n][0] - nn.evaluate(INPUTS[n])[0];
+                loss += error * error;
+            }
+            if (loss < 0.01) {
+                return epoch;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+@RunWith(Arquillian.class)
+public class ParallelTrainerTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(ParallelTrainer.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void reproducibleRegardlessOfThreadCount() {
+        Random random = new Random(7);
+        double[][] inputs = new double[200][3];
+        double[][] targets = new double[200][2];
+        for (int n = 0; n < inputs.length; n++) {
+            for (int i = 0; i < 3; i++) {
+                inputs[n][i] = random.nextDouble();
+            }
+            targets[n][0] = inputs[n][0] * inputs[n][1];
+            targets[n][1] = 1 - inputs[n][2];
+        }
+
+        double[] single = train(new ForkJoinPool(1), inputs, targets);
+        double[] multiple = train(new ForkJoinPool(4), inputs, targets);
+
+        Assert.assertArrayEquals(single, multiple, 0);
+    }
+
+    @Test
+    public void logicGateXOR() {
+        final double[][] inputs = {{0, 0}, {1, 0}, {0, 1}, {1, 1}};
+        final double[][] targets = {{0}, {1}, {1}, {0}};
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.SIGMOID, 2, new Random(3));
+        ParallelTrainer trainer = new ParallelTrainer(nn, ForkJoinPool.commonPool(), 1);
+        Random random = new Random(3);
+        for (int epoch = 0; epoch < 10000; epoch++) {
+            trainer.train(inputs, targets, 4, random);
+        }
+
+        Assert.assertTrue(nn.evaluate(new double[]{0, 0})[0] < 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{0, 1})[0] > 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{1, 0})[0] > 0.5);
+        Assert.assertTrue(nn.evaluate(new double[]{1, 1})[0] < 0.5);
+    }
+
+    private static double[] train(ForkJoinPool pool, double[][] inputs, double[][] targets) {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {3, 8, 2}, ActivationFunction.TANH, 0.1, new Random(11));
+        ParallelTrainer trainer = new ParallelTrainer(nn, pool, 8);
+        Random random = new Random(5);
+        for (int epoch = 0; epoch < 20; epoch++) {
+            trainer.train(inputs, targets, 64, random);
+        }
+        pool.shutdown();
+        return nn.getParameterArray();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class PruningTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(Pruning.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void thresholdKeepsLargeWeights() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {4, 6, 3}, ActivationFunction.TANH, 0.1, new Random(1));
+        NeuralNetwork pruned = Pruning.threshold(0.5).apply(nn);
+
+        double[] parameters = nn.getParameters();
+        int[] offsets = NeuralNetwork.computeOffsets(nn.getLayers());
+        double[] zeroed = parameters.clone();
+        for (int i = 0; i < 2; i++) {
+            int end = offsets[i + 1] - nn.getLayers()[i + 1];
+            for (int n = offsets[i]; n < end; n++) {
+                if (Math.abs(parameters[n]) < 0.5) {
+                    zeroed[n] = 0;
+                }
+            }
+        }
+        NeuralNetwork reference = new NeuralNetwork(nn.getLayers(), ActivationFunction.TANH, 0.1, zeroed);
+
+        Assert.assertEquals(Pruning.sparsity(reference), Pruning.sparsity(pruned), 0);
+        Assert.assertTrue(Pruning.sparsity(pruned) > 0.3);
+        double[] input = {0.3, -0.8, 0.5, 0.1};
+        Assert.assertArrayEquals(reference.evaluate(input), pruned.evaluate(input), 0);
+    }
+
+    @Test
+    public void topKPerLayer() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {5, 8, 2}, ActivationFunction.SIGMOID, 0.1, new Random(2));
+        NeuralNetwork pruned = Pruning.topK(6).apply(nn);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(6, ((SparseLayer) pruned.getLayer(i)).getConnectionCount());
+        }
+        Assert.assertEquals(1 - 12.0 / 56, Pruning.sparsity(pruned), 1e-12);
+
+        NeuralNetwork again = Pruning.topK(3).apply(pruned);
+        Assert.assertEquals(3, ((SparseLayer) again.getLayer(0)).getConnectionCount());
+        Assert.assertArrayEquals(nn.getParameters(), new NeuralNetwork(nn.getLayers(), ActivationFunction.SIGMOID,
+                0.1, Pruning.topK(1000).apply(nn).getParameters()).getParameters(), 0);
+    }
+
+    @Test
+    public void fineTuningKeepsSparsity() {
+        final double[][] inputs = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+        final double[][] targets = {{0}, {1}, {1}, {0}};
+
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 16, 1}, ActivationFunction.SIGMOID, 1, new Random(3));
+        for (int epoch = 0; epoch < 5000; epoch++) {
+            nn.train(inputs, targets, 4);
+        }
+
+        Pruning pruning = Pruning.density(0.5);
+        double before = loss(pruning.apply(nn), inputs, targets);
+        pruning.setFineTuning(inputs, targets, 4, 2000);
+        NeuralNetwork tuned = pruning.apply(nn);
+
+        Assert.assertTrue(loss(tuned, inputs, targets) < before);
+        Assert.assertTrue(loss(tuned, inputs, targets) < 0.05);
+        Assert.assertEquals(0.5, Pruning.sparsity(tuned), 0.05);
+    }
+
+    private static double loss(NeuralNetwork nn, double[][] inputs, double[][] targets) {
+        double loss = 0;
+        for (int n = 0; n < inputs.length; n++) {
+            double error = targets[n][0] - nn.evaluate(inputs[n])[0];
+            loss += error * error;
+        }
+        return loss;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(Arquillian.class)
+public class SharedNetworkTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(SharedNetwork.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void snapshotMatchesNetwork() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {4, 16, 8, 3}, ActivationFunction.TANH, 0.1, new Random(3));
+        NetworkSnapshot snapshot = nn.snapshot();
+        double[] input = {0.1, -0.4, 0.7, 0.2};
+        double[] expected = nn.evaluate(input);
+
+        nn.train(input, new double[] {1, 0, 0});
+        Assert.assertArrayEquals(expected, snapshot.evaluate(input), 0);
+        Assert.assertArrayEquals(expected, snapshot.toNetwork().evaluate(input), 0);
+    }
+
+    @Test
+    public void layersMayEvaluateOtherSnapshots() {
+        NetworkSnapshot inner = new NeuralNetwork(new int[] {3, 16, 3}, ActivationFunction.TANH, 0.1, new Random(4))
+                .snapshot();
+        double[] innerInput = {0.5, -0.5, 0.25};
+        double[] innerExpected = inner.evaluate(innerInput);
+
+        // A layer that evaluates another snapshot while the outer hidden layers are in the buffers
+        Layer dense = new DenseLayer(16, 16, ActivationFunction.TANH);
+        Layer reentrant = new Layer() {
+            @Override
+            public int getInputSize() {
+                return dense.getInputSize();
+            }
+
+            @Override
+            public int getOutputSize() {
+                return dense.getOutputSize();
+            }
+
+            @Override
+            public int getParameterCount() {
+                return dense.getParameterCount();
+            }
+
+            @Override
+            public ActivationFunction getActivationFunction() {
+                return dense.getActivationFunction();
+            }
+
+            @Override
+            public void forward(double[] parameters, int offset, double[] in, double[] out, int batch) {
+                Assert.assertArrayEquals(innerExpected, inner.evaluate(innerInput), 0);
+                dense.forward(parameters, offset, in, out, batch);
+            }
+
+            @Override
+            public void accumulateGradients(double[] delta, double[] in, double[] gradients, int offset, int batch) {
+                dense.accumulateGradients(delta, in, gradients, offset, batch);
+            }
+
+            @Override
+            public void backpropagate(double[] parameters, int offset, double[] delta, double[] error, int batch) {
+                dense.backpropagate(parameters, offset, delta, error, batch);
+            }
+        };
+
+        NeuralNetwork nn = new NeuralNetwork(new Layer[] {
+                new DenseLayer(4, 16, ActivationFunction.TANH),
+                reentrant,
+                new DenseLayer(16, 2, ActivationFunction.SIGMOID),
+        }, 0.1, new Random(5));
+        double[] input = {0.1, -0.4, 0.7, 0.2};
+        Assert.assertArrayEquals(nn.evaluate(input), nn.snapshot().evaluate(input), 0);
+    }
+
+    @Test
+    public void readersNeverSeePartialUpdates() throws Exception {
+        int[] layers = {3, 32, 2};
+        NeuralNetwork trainer = new NeuralNetwork(layers, ActivationFunction.SIGMOID, 0.5, new Random(1));
+        NeuralNetwork other = new NeuralNetwork(layers, ActivationFunction.SIGMOID, 0.5, new Random(2));
+        double[] input = {0.3, 0.6, 0.9};
+        double[] first = trainer.evaluate(input);
+        double[] second = other.evaluate(input);
+
+        SharedNetwork shared = new SharedNetwork(trainer);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger torn = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] readers = new Future<?>[4];
+            for (int t = 0; t < readers.length; t++) {
+                readers[t] = executor.submit(() -> {
+                    double[] output = new double[2];
+                    while (running.get()) {
+                        shared.evaluate(input, output);
+                        if (!equals(output, first) && !equals(output, second)) {
+                            torn.incrementAndGet();
+                        }
+                    }
+                });
+            }
+
+            for (int i = 0; i < 2000; i++) {
+                shared.publish((i & 1) == 0 ? other : trainer);
+            }
+            running.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(0, torn.get());
+    }
+
+    private static boolean equals(double[] a, double[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (Double.compare(a[i], b[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
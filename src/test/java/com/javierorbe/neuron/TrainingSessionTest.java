@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import com.javierorbe.neuron.metrics.TrainingListener;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(Arquillian.class)
+public class TrainingSessionTest {
+
+    private static final double[][] INPUTS = {{0, 0}, {1, 0}, {0, 1}, {1, 1}};
+    private static final double[][] TARGETS = {{0}, {1}, {1}, {0}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(TrainingSession.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void trainReturnsLossBeforeUpdate() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 4, 1}, ActivationFunction.SIGMOID, 0.5, new Random(1));
+
+        double expected = 0;
+        for (int i = 0; i < INPUTS.length; i++) {
+            double error = TARGETS[i][0] - nn.evaluate(INPUTS[i])[0];
+            expected += error * error / 2;
+        }
+        Assert.assertEquals(expected, nn.train(INPUTS, TARGETS, 4), 1e-12);
+
+        double error = TARGETS[1][0] - nn.evaluate(INPUTS[1])[0];
+        Assert.assertEquals(error * error / 2, nn.train(INPUTS[1], TARGETS[1]), 1e-12);
+    }
+
+    @Test
+    public void validationAndCheckpoint() throws IOException {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.SIGMOID, 2, new Random(3));
+        Path file = folder.getRoot().toPath().resolve("best.model");
+        AtomicInteger epochs = new AtomicInteger();
+        AtomicInteger validations = new AtomicInteger();
+
+        TrainingSession session = new TrainingSession(nn, INPUTS, TARGETS);
+        session.setBatchSize(4);
+        session.setShuffle(new Random(3));
+        session.setValidation(INPUTS, TARGETS, 100);
+        session.setCheckpoint(TrainingSession.Checkpoint.toFile(file));
+        session.setListener(new TrainingListener() {
+            @Override
+            public void epochCompleted(int epoch, double loss) {
+                epochs.incrementAndGet();
+            }
+
+            @Override
+            public void validated(int epoch, double loss, boolean improved) {
+                validations.incrementAndGet();
+            }
+        });
+
+        Assert.assertEquals(5000, session.run(5000));
+        Assert.assertEquals(5000, epochs.get());
+        Assert.assertEquals(50, validations.get());
+        Assert.assertFalse(session.isStopped());
+        Assert.assertTrue(session.getBestLoss() < 0.05);
+
+        // Every checkpoint replaced the file, and no temporary file is left
+        Assert.assertArrayEquals(new String[] {"best.model"}, folder.getRoot().list());
+        NeuralNetwork saved = ModelFormat.load(file);
+        Assert.assertArrayEquals(session.getBest().toNetwork().getParameters(), saved.getParameters(), 0);
+        Assert.assertTrue(saved.evaluate(new double[] {0, 1})[0] > 0.5);
+        Assert.assertTrue(saved.evaluate(new double[] {1, 1})[0] < 0.5);
+    }
+
+    @Test
+    public void stopsEarlyOnPlateau() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1}, ActivationFunction.SIGMOID, 0, new Random(4));
+
+        TrainingSession session = new TrainingSession(nn, INPUTS, TARGETS);
+        session.setValidation(INPUTS, TARGETS, 1);
+        session.setEarlyStopping(3, 0);
+
+        int trained = session.run(100000);
+        Assert.assertTrue(session.isStopped());
+        Assert.assertTrue(trained < 100000);
+        Assert.assertEquals(1, session.getBestEpoch());
+        Assert.assertEquals(trained, session.getEpoch());
+    }
+}
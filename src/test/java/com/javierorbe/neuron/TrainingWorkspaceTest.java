@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class TrainingWorkspaceTest {
+
+    private static final int[] LAYERS = {8, 32, 32, 32, 32, 32, 32, 32, 4};
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(TrainingWorkspace.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void checkpointingGivesIdenticalParameters() {
+        Random random = new Random(1);
+        double[][] inputs = new double[40][LAYERS[0]];
+        double[][] targets = new double[40][LAYERS[LAYERS.length - 1]];
+        for (int n = 0; n < inputs.length; n++) {
+            for (int i = 0; i < inputs[n].length; i++) {
+                inputs[n][i] = random.nextDouble();
+            }
+            for (int j = 0; j < targets[n].length; j++) {
+                targets[n][j] = random.nextDouble();
+            }
+        }
+
+        NeuralNetwork reference = new NeuralNetwork(LAYERS, ActivationFunction.TANH, 0.1, new Random(2));
+        double referenceLoss = 0;
+        for (int epoch = 0; epoch < 5; epoch++) {
+            referenceLoss = reference.train(inputs, targets, 16);
+        }
+
+        long full = new TrainingWorkspace(reference, 16).getWorkingSetBytes();
+        for (int interval : new int[] {1, 2, 3, 4}) {
+            NeuralNetwork nn = new NeuralNetwork(LAYERS, ActivationFunction.TANH, 0.1, new Random(2));
+            TrainingWorkspace ws = new TrainingWorkspace(nn, 16, interval);
+            nn.setTrainingWorkspace(ws);
+
+            double loss = 0;
+            for (int epoch = 0; epoch < 5; epoch++) {
+                loss = nn.train(inputs, targets, 16);
+            }
+
+            Assert.assertArrayEquals(reference.getParameters(), nn.getParameters(), 0);
+            Assert.assertEquals(referenceLoss, loss, 0);
+            Assert.assertSame(ws, nn.getWorkspace(16));
+            Assert.assertTrue(interval == 1 || ws.getWorkingSetBytes() < full);
+        }
+    }
+
+    @Test
+    public void workingSetBytes() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {4, 10, 10, 2});
+        int parameters = 10 * 5 + 10 * 11 + 2 * 11;
+
+        // Every layer, two delta buffers of the widest layer and the gradients
+        TrainingWorkspace full = new TrainingWorkspace(nn, 8);
+        Assert.assertEquals((8 * (4 + 10 + 10 + 2) + 2 * 8 * 10 + parameters) * 8L, full.getWorkingSetBytes());
+
+        // The input, layer 2 and the output are kept, and layer 1 takes the only segment buffer
+        TrainingWorkspace checkpointed = new TrainingWorkspace(nn, 8, 2);
+        Assert.assertEquals(full.getWorkingSetBytes(), checkpointed.getWorkingSetBytes());
+
+        // The input and the output are kept, and layers 1 and 2 take one segment buffer each
+        TrainingWorkspace sparse = new TrainingWorkspace(nn, 8, 3);
+        Assert.assertEquals(full.getWorkingSetBytes(), sparse.getWorkingSetBytes());
+    }
+
+    @Test
+    public void perSampleTrainingReusesWorkspace() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1}, ActivationFunction.SIGMOID, 0.5, new Random(3));
+        NeuralNetwork checkpointed = nn.copy();
+        checkpointed.setTrainingWorkspace(new TrainingWorkspace(checkpointed, 1, 2));
+
+        TrainingWorkspace ws = new TrainingWorkspace(nn, 4);
+        nn.setTrainingWorkspace(ws);
+        for (int i = 0; i < 100; i++) {
+            nn.train(new double[] {1, 0}, new double[] {1});
+            checkpointed.train(new double[] {1, 0}, new double[] {1});
+        }
+
+        Assert.assertSame(ws, nn.getWorkspace(1));
+        Assert.assertTrue(nn.evaluate(new double[] {1, 0})[0] > 0.9);
+        Assert.assertTrue(checkpointed.evaluate(new double[] {1, 0})[0] > 0.9);
+    }
+
+    @Test
+    public void perSampleCheckpointingGivesIdenticalParameters() {
+        Random random = new Random(4);
+        double[][] inputs = new double[20][LAYERS[0]];
+        double[][] targets = new double[20][LAYERS[LAYERS.length - 1]];
+        for (int n = 0; n < inputs.length; n++) {
+            for (int i = 0; i < inputs[n].length; i++) {
+                inputs[n][i] = random.nextDouble();
+            }
+            for (int j = 0; j < targets[n].length; j++) {
+                targets[n][j] = random.nextDouble();
+            }
+        }
+
+        NeuralNetwork reference = new NeuralNetwork(LAYERS, ActivationFunction.TANH, 0.1, new Random(5));
+        for (int n = 0; n < inputs.length; n++) {
+            reference.train(inputs[n], targets[n]);
+        }
+
+        for (int interval : new int[] {2, 3, 4}) {
+            NeuralNetwork nn = new NeuralNetwork(LAYERS, ActivationFunction.TANH, 0.1, new Random(5));
+            nn.setTrainingWorkspace(new TrainingWorkspace(nn, 1, interval));
+            for (int n = 0; n < inputs.length; n++) {
+                nn.train(inputs[n], targets[n]);
+            }
+
+            Assert.assertArrayEquals(reference.getParameters(), nn.getParameters(), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void workspaceMustFitNetwork() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 5, 1});
+        nn.setTrainingWorkspace(new TrainingWorkspace(new NeuralNetwork(new int[] {2, 4, 1}), 4));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.data;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class DatasetTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(BatchPrefetcher.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void shuffledPassReadsEverySample() throws IOException {
+        Path file = Files.createTempFile("neuron", ".ndat");
+        try {
+            write(file, 1000);
+            MappedDataset dataset = MappedDataset.open(file);
+            dataset.setBlockSize(64);
+            Assert.assertEquals(1000, dataset.getSize());
+
+            double[] input = new double[3];
+            double[] target = new double[1];
+            int[] seen = new int[1000];
+            boolean ordered = true;
+            try (Dataset.Cursor cursor = dataset.open(new Random(1))) {
+                for (int n = 0; cursor.next(input, target); n++) {
+                    int index = (int) input[0];
+                    Assert.assertEquals(index * 2.0, input[1], 0);
+                    Assert.assertEquals(-index, target[0], 0);
+                    seen[index]++;
+                    ordered &= (index == n);
+                }
+            }
+
+            for (int count : seen) {
+                Assert.assertEquals(1, count);
+            }
+            Assert.assertFalse(ordered);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void prefetchedTrainingMatchesInMemoryTraining() throws IOException {
+        Path file = Files.createTempFile("neuron", ".ndat");
+        try {
+            double[][][] samples = write(file, 203);
+            NeuralNetwork expected = new NeuralNetwork(new int[] {3, 5, 1}, ActivationFunction.TANH, 0.001, new Random(2));
+            NeuralNetwork actual = expected.copy();
+
+            expected.train(samples[0], samples[1], 16);
+            BatchPrefetcher.train(actual, MappedDataset.open(file), 16, null);
+
+            Assert.assertArrayEquals(expected.getParameters(), actual.getParameters(), 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void csvDataset() throws IOException {
+        Path file = Files.createTempFile("neuron", ".csv");
+        try {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("a,b,target\n");
+                for (int n = 0; n < 50; n++) {
+                    writer.write(n + ", " + (n * 0.5) + "," + (-n) + "\n");
+                }
+            }
+
+            CsvDataset dataset = new CsvDataset(file, 2, 1);
+            dataset.setHeader(true);
+            dataset.setBlockSize(8);
+
+            double[] sums = new double[3];
+            int count = 0;
+            try (BatchPrefetcher prefetcher = new BatchPrefetcher(dataset, 16, new Random(3))) {
+                BatchPrefetcher.Batch batch;
+                while ((batch = prefetcher.next()) != null) {
+                    for (int i = 0; i < batch.getSize(); i++) {
+                        sums[0] += batch.getInputs()[i][0];
+                        sums[1] += batch.getInputs()[i][1];
+                        sums[2] += batch.getTargets()[i][0];
+                        count++;
+                    }
+                }
+            }
+
+            Assert.assertEquals(50, count);
+            Assert.assertArrayEquals(new double[] {1225, 612.5, -1225}, sums, 0);
+
+            Files.write(file, Arrays.asList("1,2,3", "4,5"), StandardCharsets.UTF_8);
+            try (BatchPrefetcher prefetcher = new BatchPrefetcher(new CsvDataset(file, 2, 1), 4, null)) {
+                prefetcher.next();
+                Assert.fail("Expected a malformed line");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getCause().getMessage().startsWith("Line 2"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Write samples {@code n} with inputs {@code {n, 2n, 1}} and target {@code -n}.
+     */
+    private static double[][][] write(Path file, int size) throws IOException {
+        double[][] inputs = new double[size][];
+        double[][] targets = new double[size][];
+        try (MappedDataset.Writer writer = new MappedDataset.Writer(file, 3, 1)) {
+            for (int n = 0; n < size; n++) {
+                inputs[n] = new double[] {n, 2 * n, 1};
+                targets[n] = new double[] {-n};
+                writer.add(inputs[n], targets[n]);
+            }
+        }
+        return new double[][][] {inputs, targets};
+    }
+}
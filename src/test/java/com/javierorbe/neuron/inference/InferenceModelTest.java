@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.Pruning;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class InferenceModelTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(InferenceModel.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void floatModelDeviation() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {16, 32, 8}, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        FloatModel model = FloatModel.of(nn);
+
+        Assert.assertEquals(16, model.getInputSize());
+        Assert.assertEquals(8, model.getOutputSize());
+        Assert.assertTrue(InferenceModel.maxDeviation(model, nn, samples(16)) < 1e-5);
+    }
+
+    @Test
+    public void quantizedModelDeviation() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {16, 32, 8}, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        QuantizedModel model = QuantizedModel.of(nn);
+
+        double deviation = InferenceModel.maxDeviation(model, nn, samples(16));
+        Assert.assertTrue(deviation > 0);
+        Assert.assertTrue(deviation < 0.05);
+    }
+
+    @Test
+    public void sparseModelMatchesPrunedNetwork() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {16, 32, 8},
+                new ActivationFunction[] {ActivationFunction.TANH, ActivationFunction.SIGMOID}, 0.1, new Random(1));
+        NeuralNetwork pruned = Pruning.density(0.25).apply(nn);
+        SparseModel model = SparseModel.of(pruned);
+
+        Assert.assertEquals(0.25, model.getDensity(), 0.01);
+        Assert.assertEquals(0, InferenceModel.maxDeviation(model, pruned, samples(16)), 0);
+        Assert.assertEquals(0, InferenceModel.maxDeviation(SparseModel.of(nn), nn, samples(16)), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void floatModelWrongInputSize() {
+        FloatModel.of(new NeuralNetwork(new int[] {4, 3, 1})).evaluate(new double[3], new double[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantizedModelWrongOutputSize() {
+        QuantizedModel.of(new NeuralNetwork(new int[] {4, 3, 1})).evaluate(new double[4], new double[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sparseModelWrongInputSize() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {4, 3, 1});
+        SparseModel.of(Pruning.density(0.25).apply(nn)).evaluate(new double[3], new double[1]);
+    }
+
+    private static double[][] samples(int size) {
+        Random random = new Random(2);
+        double[][] samples = new double[100][size];
+        for (double[] sample : samples) {
+            for (int i = 0; i < size; i++) {
+                sample[i] = random.nextDouble() * 2 - 1;
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.inference;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.Pruning;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(Arquillian.class)
+public class ModelCompilerTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(ModelCompiler.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void identicalToInterpretedPath() {
+        Random random = new Random(1);
+        for (ActivationFunction activationFunction : ActivationFunction.values()) {
+            ActivationFunction[] activationFunctions = {activationFunction, ActivationFunction.RELU, activationFunction};
+            NeuralNetwork nn = new NeuralNetwork(new int[] {16, 32, 12, 8}, activationFunctions, 0.1, random);
+            InferenceModel model = ModelCompiler.compile(nn);
+
+            Assert.assertEquals(16, model.getInputSize());
+            Assert.assertEquals(8, model.getOutputSize());
+            assertIdentical(nn, model, random);
+        }
+    }
+
+    @Test
+    public void wideLayersAndFoldedWeights() {
+        Random random = new Random(2);
+        NeuralNetwork nn = new NeuralNetwork(new int[] {700, 40, 3}, ActivationFunction.TANH, 0.1, random);
+
+        // Zero weights are dropped and the weights 1 and -1 are not multiplied
+        int[] index = {0};
+        nn.mutate(value -> {
+            int i = index[0]++;
+            return (i % 3 == 0) ? 0 : (i % 7 == 0) ? 1 : (i % 11 == 0) ? -1 : value;
+        });
+
+        assertIdentical(nn, ModelCompiler.compile(nn), random);
+    }
+
+    @Test
+    public void layerWiderThanShortConstants() {
+        Random random = new Random(4);
+        NeuralNetwork nn = new NeuralNetwork(new int[] {40000, 1}, ActivationFunction.LINEAR, 0.1, random);
+
+        // The sizes and column indices do not fit in sipush, and the weights take no constants
+        int[] index = {0};
+        nn.mutate(value -> (index[0]++ % 2 == 0) ? 1.0 : -1.0);
+
+        InferenceModel model = ModelCompiler.compile(nn);
+        Assert.assertEquals(40000, model.getInputSize());
+        assertIdentical(nn, model, random);
+    }
+
+    @Test
+    public void modelDoesNotFollowTraining() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1}, ActivationFunction.SIGMOID, 1, new Random(3));
+        InferenceModel model = ModelCompiler.compile(nn);
+        double[] before = model.evaluate(new double[] {1, 0});
+
+        nn.train(new double[] {1, 0}, new double[] {1});
+        Assert.assertArrayEquals(before, model.evaluate(new double[] {1, 0}), 0);
+        Assert.assertNotEquals(before[0], nn.evaluate(new double[] {1, 0})[0], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongInputSize() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {2, 3, 1});
+        ModelCompiler.compile(nn).evaluate(new double[3], new double[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sparseNetworksAreNotCompiled() {
+        NeuralNetwork nn = new NeuralNetwork(new int[] {4, 4, 1}, ActivationFunction.SIGMOID, 0.1, new Random(4));
+        ModelCompiler.compile(Pruning.density(0.5).apply(nn));
+    }
+
+    private static void assertIdentical(NeuralNetwork nn, InferenceModel model, Random random) {
+        double[] expected = new double[model.getOutputSize()];
+        double[] actual = new double[model.getOutputSize()];
+        for (int n = 0; n < 50; n++) {
+            double[] input = new double[model.getInputSize()];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 4 - 2;
+            }
+
+            nn.evaluate(input, expected);
+            model.evaluate(input, actual);
+            Assert.assertArrayEquals(expected, actual, 0);
+        }
+    }
+}
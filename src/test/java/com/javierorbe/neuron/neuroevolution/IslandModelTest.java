@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.ModelFormat;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.neuroevolution.NeuroEvolutionTest.Agent;
+import com.javierorbe.neuron.neuroevolution.NeuroEvolutionTest.Environment;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(Arquillian.class)
+public class IslandModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(IslandModel.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void islandsExchangeMigrants() throws IOException {
+        List<MigrationTransport> transports = InMemoryTransport.create(3);
+        List<Island<Agent>> islands = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Island<Agent> island = new Island<>(i, 3, new Environment(null, 20), transports.get(i));
+            island.setMigration(2, 2, MigrationTopology.FULLY_CONNECTED);
+            islands.add(island);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            new IslandModel<>(islands, executor).run(10, Agent::score);
+        } finally {
+            executor.shutdown();
+        }
+
+        // The migrants sent after the last migration of their destination are still queued
+        long delivered = 0;
+        for (Island<Agent> island : islands) {
+            Assert.assertEquals(10, island.getEnvironment().getGeneration());
+            Assert.assertEquals(20, island.getEnvironment().getPopulation().size());
+            Assert.assertEquals(5 * 2 * 2, island.getSent());
+            delivered += island.getReceived() + transports.get(island.getId()).receive().size();
+        }
+        Assert.assertEquals(3 * 5 * 2 * 2, delivered);
+    }
+
+    @Test
+    public void migrantsReplaceWorstElements() {
+        List<MigrationTransport> transports = InMemoryTransport.create(2);
+        Island<Agent> first = new Island<>(0, 2, new Environment(null, 10), transports.get(0));
+        Island<Agent> second = new Island<>(1, 2, new Environment(null, 10), transports.get(1));
+        first.setMigration(1, 3, MigrationTopology.RING);
+        second.setMigration(1, 3, MigrationTopology.RING);
+
+        first.evolve(Agent::score);
+        second.evolve(Agent::score);
+        Assert.assertEquals(3, second.getReceived());
+        Assert.assertEquals(0, first.getReceived());
+
+        first.evolve(Agent::score);
+        Assert.assertEquals(3, first.getReceived());
+    }
+
+    @Test
+    public void topologies() {
+        Assert.assertArrayEquals(new int[] {0}, MigrationTopology.RING.destinations(3, 4, null));
+        Assert.assertArrayEquals(new int[] {0, 2, 3}, MigrationTopology.FULLY_CONNECTED.destinations(1, 4, null));
+        Assert.assertEquals(0, MigrationTopology.RING.destinations(0, 1, null).length);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            int[] destinations = MigrationTopology.RANDOM.destinations(2, 4, random);
+            Assert.assertEquals(1, destinations.length);
+            Assert.assertNotEquals(2, destinations[0]);
+        }
+    }
+
+    @Test
+    public void socketTransportRoundTrip() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (SocketTransport receiver = new SocketTransport(0, Arrays.asList(
+                new InetSocketAddress(loopback, 0), null))) {
+            try (SocketTransport sender = new SocketTransport(1, Arrays.asList(
+                    receiver.getLocalAddress(), new InetSocketAddress(loopback, 0)))) {
+                List<NeuralNetwork> migrants = migrants();
+                sender.send(0, migrants);
+                sender.send(0, Collections.singletonList(migrants.get(0)));
+
+                List<NeuralNetwork> received = new ArrayList<>();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (received.size() < 3 && System.currentTimeMillis() < deadline) {
+                    received.addAll(receiver.receive());
+                }
+
+                assertSame(migrants, received.subList(0, 2));
+                assertSame(migrants.subList(0, 1), received.subList(2, 3));
+            }
+        }
+    }
+
+    @Test
+    public void socketTransportExchangesLargeFrames() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        List<InetSocketAddress> addresses = Arrays.asList(
+                new InetSocketAddress(loopback, freePort()), new InetSocketAddress(loopback, freePort()));
+        // Several megabytes, far more than the socket buffers hold
+        final NeuralNetwork network = new NeuralNetwork(new int[] {700, 700});
+
+        final CountDownLatch arrived = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (SocketTransport first = new SocketTransport(0, addresses);
+             SocketTransport second = new SocketTransport(1, addresses)) {
+            List<Future<List<NeuralNetwork>>> results = new ArrayList<>();
+            for (SocketTransport transport : Arrays.asList(first, second)) {
+                final int other = transport == first ? 1 : 0;
+                results.add(executor.submit(() -> {
+                    // Like Island.migrate, send before receiving
+                    transport.send(other, Collections.singletonList(network));
+                    List<NeuralNetwork> received = new ArrayList<>();
+                    long deadline = System.currentTimeMillis() + 20000;
+                    // Keep flushing until the other island has its migrant too
+                    while (arrived.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                        boolean empty = received.isEmpty();
+                        received.addAll(transport.receive());
+                        if (empty && !received.isEmpty()) {
+                            arrived.countDown();
+                        }
+                    }
+                    return received;
+                }));
+            }
+
+            for (Future<List<NeuralNetwork>> result : results) {
+                assertSame(Collections.singletonList(network), result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void socketTransportClosesMalformedConnections() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (SocketTransport receiver = new SocketTransport(0, Collections.singletonList(
+                new InetSocketAddress(loopback, 0)))) {
+            NeuralNetwork network = migrants().get(0);
+            ByteBuffer frames = ByteBuffer.allocate(64 + ModelFormat.size(network)).order(ByteOrder.LITTLE_ENDIAN);
+            frames.putInt(ModelFormat.size(network));
+            ModelFormat.write(network, frames);
+            frames.putInt(8).putLong(0);
+            frames.flip();
+
+            try (SocketChannel malformed = SocketChannel.open(receiver.getLocalAddress());
+                 SocketChannel oversized = SocketChannel.open(receiver.getLocalAddress())) {
+                malformed.write(frames);
+                oversized.write((ByteBuffer) ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(Integer.MAX_VALUE).flip());
+                malformed.configureBlocking(false);
+                oversized.configureBlocking(false);
+
+                // The network before the malformed frame is kept, and the connections are closed
+                List<NeuralNetwork> received = new ArrayList<>();
+                ByteBuffer end = ByteBuffer.allocate(1);
+                long deadline = System.currentTimeMillis() + 5000;
+                while ((received.isEmpty() || malformed.read(end) >= 0 || oversized.read(end) >= 0)
+                        && System.currentTimeMillis() < deadline) {
+                    received.addAll(receiver.receive());
+                }
+
+                assertSame(Collections.singletonList(network), received);
+                Assert.assertEquals(-1, malformed.read(end));
+                Assert.assertEquals(-1, oversized.read(end));
+            }
+        }
+    }
+
+    @Test
+    public void unreachableDestinationsAreSkipped() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (SocketTransport transport = new SocketTransport(0, Arrays.asList(
+                new InetSocketAddress(loopback, 0), new InetSocketAddress(loopback, freePort())))) {
+            Island<Agent> island = new Island<>(0, 2, new Environment(null, 10), transport);
+            island.setMigration(1, 2, MigrationTopology.RING);
+
+            island.evolve(Agent::score);
+            island.evolve(Agent::score);
+            Assert.assertEquals(2, island.getEnvironment().getGeneration());
+            Assert.assertEquals(0, island.getSent());
+            Assert.assertEquals(2 * 2, island.getLost());
+        }
+    }
+
+    @Test
+    public void mappedFileTransportRoundTrip() throws IOException {
+        MappedFileTransport first = new MappedFileTransport(folder.getRoot().toPath(), 0);
+        MappedFileTransport second = new MappedFileTransport(folder.getRoot().toPath(), 1);
+
+        List<NeuralNetwork> migrants = migrants();
+        first.send(1, migrants);
+        Assert.assertTrue(first.receive().isEmpty());
+
+        assertSame(migrants, second.receive());
+        Assert.assertTrue(second.receive().isEmpty());
+    }
+
+    @Test
+    public void mappedFileTransportMovesMalformedFilesAside() throws IOException {
+        MappedFileTransport first = new MappedFileTransport(folder.getRoot().toPath(), 0);
+        MappedFileTransport second = new MappedFileTransport(folder.getRoot().toPath(), 1);
+        Path mailbox = folder.getRoot().toPath().resolve("island-1");
+        Files.write(mailbox.resolve("0-0.mig"), new byte[] {1, 2, 3, 4});
+
+        try {
+            second.receive();
+            Assert.fail("Expected the malformed file to be reported");
+        } catch (IOException e) {
+            Assert.assertTrue(Files.exists(mailbox.resolve("0-0.mig.bad")));
+            Assert.assertFalse(Files.exists(mailbox.resolve("0-0.mig")));
+        }
+
+        List<NeuralNetwork> migrants = migrants();
+        first.send(1, migrants);
+        assertSame(migrants, second.receive());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<NeuralNetwork> migrants() {
+        return Arrays.asList(new NeuralNetwork(new int[] {2, 4, 1}), new NeuralNetwork(new int[] {3, 5, 2}));
+    }
+
+    private static void assertSame(List<NeuralNetwork> expected, List<NeuralNetwork> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.get(i).getLayers(), actual.get(i).getLayers());
+            Assert.assertArrayEquals(expected.get(i).getParameters(), actual.get(i).getParameters(), 0);
+        }
+    }
+}
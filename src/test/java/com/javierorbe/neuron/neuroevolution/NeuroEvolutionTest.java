@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.ActivationFunction;
+import com.javierorbe.neuron.Crossover;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.metrics.GenerationStatistics;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(Arquillian.class)
+public class NeuroEvolutionTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(NeuroEvolution.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void parallelEvolutionImprovesMeanScore() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Environment environment = new Environment(executor, 200);
+
+        environment.evaluate(Agent::score);
+        double initial = mean(environment);
+
+        for (int i = 0; i < 30; i++) {
+            environment.nextGeneration();
+            environment.evaluate(Agent::score);
+        }
+
+        executor.shutdown();
+        Assert.assertEquals(30, environment.getGeneration());
+        Assert.assertEquals(200, environment.getPopulation().size());
+        Assert.assertTrue(mean(environment) > initial);
+    }
+
+    @Test
+    public void selectionStrategiesFollowFitness() {
+        final double[] fitness = {0.1, 0.0, 0.6, 0.3};
+        SelectionStrategy[] strategies = {new RouletteSelection(), new RankSelection(), new TournamentSelection(3)};
+
+        for (SelectionStrategy strategy : strategies) {
+            SelectionStrategy.Selector selector = strategy.prepare(fitness);
+            Random random = new Random(1);
+            int[] counts = new int[fitness.length];
+            for (int i = 0; i < 100000; i++) {
+                counts[selector.select(random)]++;
+            }
+
+            Assert.assertTrue(counts[2] > counts[3]);
+            Assert.assertTrue(counts[3] > counts[0]);
+            Assert.assertTrue(counts[0] > counts[1]);
+        }
+
+        int[] counts = new int[fitness.length];
+        SelectionStrategy.Selector roulette = new RouletteSelection().prepare(fitness);
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            counts[roulette.select(random)]++;
+        }
+        Assert.assertEquals(0, counts[1]);
+        Assert.assertEquals(0.6, counts[2] / 100000.0, 0.01);
+    }
+
+    @Test
+    public void roulettePastRoundingErrors() {
+        // Adds up to slightly less than 1
+        final double[] fitness = {0.1, 0.2, 0.3, 0.39999999};
+        SelectionStrategy.Selector selector = new RouletteSelection().prepare(fitness);
+        Random random = new Random() {
+            @Override
+            public double nextDouble() {
+                return Math.nextDown(1.0);
+            }
+        };
+        Assert.assertEquals(3, selector.select(random));
+    }
+
+    @Test
+    public void elitismKeepsBestElements() {
+        Environment environment = new Environment(null, 50);
+        environment.setElitism(2);
+        environment.setSelectionStrategy(new TournamentSelection(2));
+        environment.evaluate(Agent::score);
+
+        Agent[] best = environment.getPopulation().stream()
+                .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
+                .limit(2)
+                .toArray(Agent[]::new);
+
+        environment.nextGeneration();
+        Assert.assertSame(best[0], environment.getPopulation().get(0));
+        Assert.assertSame(best[1], environment.getPopulation().get(1));
+        Assert.assertEquals(50, environment.getPopulation().size());
+    }
+
+    @Test
+    public void parameterArenaEvolution() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Environment environment = new Environment(executor, 200);
+        environment.useParameterArena(0.1);
+        environment.setElitism(1);
+
+        environment.evaluate(Agent::score);
+        double initial = mean(environment);
+
+        Agent elite = null;
+        double[] eliteParameters = null;
+        for (int i = 0; i < 30; i++) {
+            environment.nextGeneration();
+            if (elite != null) {
+                Assert.assertArrayEquals(eliteParameters, elite.getBrain().getParameters(), 0);
+            }
+            elite = environment.getPopulation().get(0);
+            eliteParameters = elite.getBrain().getParameters();
+            environment.evaluate(Agent::score);
+        }
+
+        executor.shutdown();
+        Assert.assertEquals(200, environment.getPopulation().size());
+        Assert.assertTrue(mean(environment) > initial);
+    }
+
+    @Test
+    public void crossoverAndSpeciationImproveMeanScore() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Environment environment = new Environment(executor, 200);
+        environment.useParameterArena(0.1);
+        environment.setCrossover(Crossover.UNIFORM, 0.5);
+        environment.setSpeciation(3);
+
+        environment.evaluate(Agent::score);
+        double initial = mean(environment);
+
+        for (int i = 0; i < 30; i++) {
+            environment.nextGeneration();
+            Assert.assertTrue(environment.getSpeciesCount() > 0);
+            environment.evaluate(Agent::score);
+        }
+
+        executor.shutdown();
+        Assert.assertEquals(200, environment.getPopulation().size());
+        Assert.assertTrue(mean(environment) > initial);
+    }
+
+    @Test
+    public void speciationGroupsCloseNetworks() {
+        List<Agent> population = new ArrayList<>();
+        NeuralNetwork a = new NeuralNetwork(new int[] {2, 4, 1}, ActivationFunction.SIGMOID, 0.1, new Random(1));
+        NeuralNetwork b = a.copy();
+        b.mutate(x -> x + 10);
+        for (int i = 0; i < 6; i++) {
+            NeuralNetwork brain = ((i & 1) == 0 ? a : b).copy();
+            brain.mutate(x -> x + 0.01);
+            population.add(new Agent(brain));
+        }
+
+        Speciation speciation = new Speciation(1);
+        speciation.assign(population, (size, action) -> {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        });
+
+        Assert.assertEquals(2, speciation.getSpeciesCount());
+        Assert.assertArrayEquals(new int[] {0, 2, 4}, speciation.getMembers(speciation.getSpecies(0)));
+        Assert.assertArrayEquals(new int[] {1, 3, 5}, speciation.getMembers(speciation.getSpecies(1)));
+        Assert.assertEquals(0, speciation.getDistance(3), 1e-9);
+    }
+
+    @Test
+    public void generationStatistics() {
+        Environment environment = new Environment(null, 20);
+        List<GenerationStatistics> statistics = new ArrayList<>();
+        environment.setListener(statistics::add);
+
+        environment.evaluate(Agent::score);
+        double mean = mean(environment);
+        environment.nextGeneration();
+
+        Assert.assertEquals(1, statistics.size());
+        GenerationStatistics first = statistics.get(0);
+        Assert.assertEquals(0, first.getGeneration());
+        Assert.assertEquals(mean, first.getMeanScore(), 1e-12);
+        Assert.assertTrue(first.getWorstScore() <= first.getMeanScore());
+        Assert.assertTrue(first.getMeanScore() <= first.getBestScore());
+        Assert.assertTrue(first.getFitnessEntropy() > 0 && first.getFitnessEntropy() <= Math.log(20) + 1e-12);
+    }
+
+    private static double mean(Environment environment) {
+        return environment.getPopulation().stream().mapToDouble(Evolvable::getScore).average().orElse(0);
+    }
+
+    /**
+     * An agent that scores better the closer its output is to 1 for the input {1, 1}.
+     */
+    static class Agent extends Evolvable<Agent> {
+
+        Agent(NeuralNetwork brain) {
+            super(brain);
+        }
+
+        double score() {
+            return 1 / (1 + Math.abs(1 - getBrain().evaluate(new double[] {1, 1})[0]));
+        }
+
+        @Override
+        protected Agent getMutatedCopy() {
+            NeuralNetwork brain = getBrain().copy();
+            brain.mutate(0.1);
+            return new Agent(brain);
+        }
+
+        @Override
+        protected Agent createChild(NeuralNetwork brain) {
+            return new Agent(brain);
+        }
+    }
+
+    static class Environment extends NeuroEvolution<Agent> {
+
+        Environment(ExecutorService executor, int size) {
+            super(executor);
+            for (int i = 0; i < size; i++) {
+                getPopulation().add(new Agent(new NeuralNetwork(new int[] {2, 4, 1})));
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Javier Orbe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.javierorbe.neuron.neuroevolution;
+
+import com.javierorbe.neuron.Crossover;
+import com.javierorbe.neuron.NeuralNetwork;
+import com.javierorbe.neuron.neuroevolution.NeuroEvolutionTest.Agent;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(Arquillian.class)
+public class SteadyStateEvolutionTest {
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        return ShrinkWrap.create(JavaArchive.class)
+                .addClass(SteadyStateEvolution.class)
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Test
+    public void concurrentWorkersImproveScores() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SteadyStateEvolution<Agent> evolution = new SteadyStateEvolution<>(population(100), Agent::score, executor);
+
+            evolution.run(0, 4);
+            Assert.assertEquals(100, evolution.getEvaluations());
+            double initial = mean(evolution.getScores());
+            double initialBest = evolution.getBest().score();
+
+            evolution.run(5000, 4);
+            Assert.assertEquals(5100, evolution.getEvaluations());
+            Assert.assertTrue(evolution.getReplacements() > 0);
+            Assert.assertTrue(mean(evolution.getScores()) > initial);
+            Assert.assertTrue(evolution.getBest().score() >= initialBest);
+            Assert.assertTrue(evolution.getEvaluationsPerSecond() > 0);
+            Assert.assertEquals(100, evolution.getPopulation().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void crossoverOnCallingThread() {
+        SteadyStateEvolution<Agent> evolution = new SteadyStateEvolution<>(population(50), Agent::score, null);
+        evolution.setCrossover(Crossover.UNIFORM, 0.5, 0.05);
+        evolution.setSelectionSize(3);
+        evolution.setReplacementSize(3);
+
+        evolution.runFor(200, 1);
+        double[] scores = evolution.getScores();
+        for (double score : scores) {
+            Assert.assertFalse(Double.isNaN(score));
+        }
+        Assert.assertTrue(evolution.getEvaluations() > 50);
+        Assert.assertTrue(mean(scores) > 0.5);
+    }
+
+    private static List<Agent> population(int size) {
+        List<Agent> population = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            population.add(new Agent(new NeuralNetwork(new int[] {2, 4, 1})));
+        }
+        return population;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+}